@@ -15,8 +15,10 @@ import static client.BoardPrinter.*;
 
 public class ChessClient implements ServerMessageHandler {
 
+    private final String serverUrl;
     private final ServerFacade server;
     private final WebSocketFacade ws;
+    private LobbyFacade lobby = null;
     private final Scanner scanner;
 
     private ClientState state;
@@ -32,6 +34,7 @@ public class ChessClient implements ServerMessageHandler {
     private ArrayList<UIOption> inGameOptions;
 
     public ChessClient(String serverUrl) throws ResponseException {
+        this.serverUrl = serverUrl;
         server = new ServerFacade(serverUrl);
         ws = new WebSocketFacade(serverUrl, this);
         scanner = new Scanner(System.in);
@@ -66,10 +69,33 @@ public class ChessClient implements ServerMessageHandler {
 
                 displayGame(currentTeam, origin, highlightPositions, currentBoard);
             }
+            case CLOCK -> printClock((ClockMessage)message);
+            case MOVE_RESULT -> {
+                MoveResultMessage moveResult = (MoveResultMessage)message;
+                currentBoard = moveResult.getGameBoard();
+                displayGame(currentTeam, currentBoard);
+                System.out.println(moveResult.getMessage());
+                if (moveResult.getStateMessage() != null) {
+                    System.out.println(moveResult.getStateMessage());
+                }
+                if (moveResult.getClock() != null) {
+                    printClock(moveResult.getClock());
+                }
+            }
         }
 
     }
 
+    private static void printClock(ClockMessage clock) {
+        System.out.printf("white %s - black %s%n",
+                formatClock(clock.getWhiteMillis()), formatClock(clock.getBlackMillis()));
+    }
+
+    private static String formatClock(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
     public enum ClientState {
         DONE,
         LOGGED_OUT,
@@ -202,6 +228,7 @@ public class ChessClient implements ServerMessageHandler {
             result = server.login(new LoginRequest(username, password));
             authToken = result.authToken();
             state = ClientState.LOGGED_IN;
+            subscribeToLobby();
             System.out.println("Logged in as " + result.username());
         }
         catch (ResponseException e) {
@@ -224,6 +251,7 @@ public class ChessClient implements ServerMessageHandler {
             result = server.register(new RegisterRequest(username, password, email));
             authToken = result.authToken();
             state = ClientState.LOGGED_IN;
+            subscribeToLobby();
             System.out.println("Registered and logged in as " + result.username());
         }
         catch (ResponseException e) {
@@ -296,9 +324,25 @@ public class ChessClient implements ServerMessageHandler {
     private void createGame(){
         System.out.print("game name >> ");
         String gameName = scanner.nextLine();
+        System.out.print("minutes per player, blank for untimed >> ");
+        String minutes = scanner.nextLine();
+        Integer baseSeconds = null;
+        Integer incrementSeconds = null;
+        if (!minutes.isBlank()) {
+            System.out.print("seconds added per move >> ");
+            String increment = scanner.nextLine();
+            try {
+                baseSeconds = Integer.parseInt(minutes.trim()) * 60;
+                incrementSeconds = increment.isBlank() ? 0 : Integer.parseInt(increment.trim());
+            }
+            catch (NumberFormatException e) {
+                System.out.println("invalid");
+                return;
+            }
+        }
 
         try {
-            server.createGame(new CreateGameRequest(gameName), authToken);
+            server.createGame(new CreateGameRequest(gameName, baseSeconds, incrementSeconds), authToken);
             System.out.println("Game created.");
         }
         catch (ResponseException e) {
@@ -307,12 +351,26 @@ public class ChessClient implements ServerMessageHandler {
         }
     }
 
+    /**
+     * Keeps a copy of the lobby from the server's feed. Without it, games are listed by asking the server.
+     */
+    private void subscribeToLobby() {
+        try {
+            lobby = new LobbyFacade(serverUrl, authToken);
+        }
+        catch (ResponseException e) {
+            lobby = null;
+        }
+    }
+
     private void listGames(){
-        ListGamesResult result;
         try {
-            result = server.listGames(new ListGamesRequest(), authToken);
-            availableGames = (ArrayList<ListGameData>) result.games();
-            for (int i = 1; i <= result.games().size(); i++) {
+            ArrayList<ListGameData> games = lobby == null ? null : lobby.getGames();
+            if (games == null) {
+                games = fetchGames();
+            }
+            availableGames = games;
+            for (int i = 1; i <= availableGames.size(); i++) {
                 ListGameData game = availableGames.get(i - 1);
                 System.out.println(i + " - " + game.gameName());
                 System.out.println("\twhite: " + game.whiteUsername());
@@ -325,6 +383,20 @@ public class ChessClient implements ServerMessageHandler {
         }
     }
 
+    /**
+     * @return Every game, asking the server for each page until the last
+     */
+    private ArrayList<ListGameData> fetchGames() throws ResponseException {
+        ArrayList<ListGameData> games = new ArrayList<>();
+        Integer cursor = null;
+        do {
+            ListGamesResult page = server.listGames(new ListGamesRequest(cursor, null, null, null, null), authToken);
+            games.addAll(page.games());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return games;
+    }
+
     private void observeGame(){
         System.out.print("game number >> ");
         String line = scanner.nextLine();
@@ -355,6 +427,10 @@ public class ChessClient implements ServerMessageHandler {
         try {
             server.logout(new LogoutRequest(), authToken);
             authToken = null;
+            if (lobby != null) {
+                lobby.close();
+                lobby = null;
+            }
             state = ClientState.LOGGED_OUT;
             System.out.println("Logged out.");
         }
@@ -0,0 +1,123 @@
+package client;
+
+import com.google.gson.GsonBuilder;
+import exception.ResponseException;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import serviceobjects.ListGameData;
+import websocket.messages.LobbyEventMessage;
+import websocket.messages.LobbySnapshotMessage;
+import websocket.messages.MessageDeserializer;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps a copy of the lobby current by subscribing to the server's lobby feed, so
+ * listing games does not download every game again
+ */
+public class LobbyFacade extends Endpoint {
+
+    private final String url;
+    private final String authToken;
+    private Session session;
+
+    // The lobby as of the last event received, keyed by game ID
+    private final Map<Integer, ListGameData> games = new TreeMap<>();
+    private String epoch = null;
+    private long sequence = 0;
+    private boolean loaded = false;
+
+    public LobbyFacade(String url, String authToken) throws ResponseException {
+        this.url = url.replace("http", "ws") + "/ws/lobby";
+        this.authToken = authToken;
+        connect();
+    }
+
+    //Endpoint requires this method, but you don't have to do anything
+    @Override
+    public void onOpen(Session session, EndpointConfig endpointConfig) {
+    }
+
+    /**
+     * Reconnects first if the connection dropped, resuming from the last event received
+     *
+     * @return The games in the lobby in order of ID, or null if the lobby has not been received yet
+     */
+    public synchronized ArrayList<ListGameData> getGames() throws ResponseException {
+        if (!session.isOpen()) {
+            connect();
+        }
+        return loaded ? new ArrayList<>(games.values()) : null;
+    }
+
+    public void close() throws ResponseException {
+        try {
+            session.close();
+        } catch (IOException ex) {
+            throw new ResponseException(ex.getMessage());
+        }
+    }
+
+    private synchronized void connect() throws ResponseException {
+        try {
+            String query = epoch == null ? "" :
+                    "?epoch=" + URLEncoder.encode(epoch, StandardCharsets.UTF_8) + "&since=" + sequence;
+            ClientEndpointConfig config = ClientEndpointConfig.Builder.create()
+                    .configurator(new ClientEndpointConfig.Configurator() {
+                        @Override
+                        public void beforeRequest(Map<String, List<String>> headers) {
+                            headers.put("Authorization", List.of(authToken));
+                        }
+                    })
+                    .build();
+            session = ContainerProvider.getWebSocketContainer().connectToServer(this, config, new URI(url + query));
+
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    receive(new GsonBuilder()
+                            .registerTypeAdapter(ServerMessage.class, new MessageDeserializer())
+                            .create()
+                            .fromJson(message, ServerMessage.class));
+                }
+            });
+        } catch (DeploymentException | IOException | URISyntaxException ex) {
+            throw new ResponseException(ex.getMessage());
+        }
+    }
+
+    private synchronized void receive(ServerMessage message) {
+        switch (message) {
+            case LobbySnapshotMessage snapshot -> {
+                games.clear();
+                for (ListGameData game : snapshot.getGames()) {
+                    games.put(game.gameID(), game);
+                }
+                epoch = snapshot.getEpoch();
+                sequence = snapshot.getSequence();
+                loaded = true;
+            }
+            case LobbyEventMessage event -> {
+                event.applyTo(games);
+                sequence = event.getSequence();
+            }
+            default -> {
+                // Errors leave the lobby as it was, and the REST listing is used until it loads
+            }
+        }
+    }
+}
@@ -15,58 +15,150 @@ import jakarta.websocket.EndpointConfig;
 import jakarta.websocket.MessageHandler;
 
 import jakarta.websocket.*;
+import websocket.BinaryProtocol;
 import websocket.ServerMessageHandler;
 import websocket.commands.GetValidMovesCommand;
 import websocket.commands.MakeMoveCommand;
+import websocket.commands.ResumeCommand;
 import websocket.commands.StandardGameCommand;
 import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
 import websocket.messages.MessageDeserializer;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 //need to extend Endpoint for websocket to work properly
 public class WebSocketFacade extends Endpoint {
 
+    private static final int RESUME_ATTEMPTS = 5;
+    private static final long RESUME_BACKOFF_MILLIS = 250;
+
     Session session;
     ServerMessageHandler serverMessageHandler;
+    boolean binary;
+    long sequence = 0;
+
+    private final URI socketURI;
+    private final ClientEndpointConfig config;
+    private volatile boolean closing = false;
+
+    // The game the session is connected to, resumed if the connection drops
+    private volatile String authToken = null;
+    private volatile Integer gameID = null;
+    private volatile long lastSequence = 0;
 
     public WebSocketFacade(String url, ServerMessageHandler serverMessageHandler) throws ResponseException {
+        this(url, serverMessageHandler, false);
+    }
+
+    /**
+     * @param useBinary whether to offer the binary subprotocol to the server.
+     *                  JSON text frames are used if the server does not accept it.
+     */
+    public WebSocketFacade(String url, ServerMessageHandler serverMessageHandler, boolean useBinary)
+            throws ResponseException {
         try {
             url = url.replace("http", "ws");
-            URI socketURI = new URI(url + "/ws");
+            this.socketURI = new URI(url + "/ws");
             this.serverMessageHandler = serverMessageHandler;
-
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            this.session = container.connectToServer(this, socketURI);
-
-            //set message handler
-            this.session.addMessageHandler(new MessageHandler.Whole<String>() {
-                @Override
-                public void onMessage(String message) {
-                    ServerMessage serverMessage = new GsonBuilder()
-                            .registerTypeAdapter(ServerMessage.class, new MessageDeserializer())
-                            .create()
-                            .fromJson(message, ServerMessage.class);
-                    serverMessageHandler.notify(serverMessage);
-                }
-            });
+            this.config = ClientEndpointConfig.Builder.create()
+                    .preferredSubprotocols(useBinary ? List.of(BinaryProtocol.SUBPROTOCOL) : List.of())
+                    .build();
+            connect();
         } catch (DeploymentException | IOException | URISyntaxException ex) {
             throw new ResponseException(ex.getMessage());
         }
     }
 
+    /**
+     * @return Whether the server accepted the binary subprotocol for this session
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    private void connect() throws DeploymentException, IOException {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        this.session = container.connectToServer(this, config, socketURI);
+        this.binary = BinaryProtocol.SUBPROTOCOL.equals(session.getNegotiatedSubprotocol());
+
+        //set message handler
+        this.session.addMessageHandler(new MessageHandler.Whole<String>() {
+            @Override
+            public void onMessage(String message) {
+                ServerMessage serverMessage = new GsonBuilder()
+                        .registerTypeAdapter(ServerMessage.class, new MessageDeserializer())
+                        .create()
+                        .fromJson(message, ServerMessage.class);
+                receive(serverMessage);
+            }
+        });
+        this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                try {
+                    receive(BinaryProtocol.decodeMessage(message));
+                } catch (IOException ex) {
+                    serverMessageHandler.notify(new ErrorMessage(ex.getMessage()));
+                }
+            }
+        });
+    }
+
+    private void receive(ServerMessage message) {
+        if (message.getSequence() != 0) {
+            lastSequence = message.getSequence();
+        }
+        serverMessageHandler.notify(message);
+    }
+
     //Endpoint requires this method, but you don't have to do anything
     @Override
     public void onOpen(Session session, EndpointConfig endpointConfig) {
     }
 
+    /**
+     * Reconnects in the background if the connection dropped while in a game, asking
+     * the server for only the messages missed
+     */
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        if (closing || gameID == null || session != this.session) {
+            return;
+        }
+        Thread resumer = new Thread(this::resume, "websocket-resume");
+        resumer.setDaemon(true);
+        resumer.start();
+    }
+
+    private void resume() {
+        for (int attempt = 0; attempt < RESUME_ATTEMPTS && !closing; attempt++) {
+            try {
+                Thread.sleep(RESUME_BACKOFF_MILLIS << attempt);
+                Integer resumeGameID = gameID;
+                if (resumeGameID == null) {
+                    return;
+                }
+                connect();
+                send(new ResumeCommand(authToken, resumeGameID, lastSequence));
+                return;
+            } catch (InterruptedException ex) {
+                return;
+            } catch (DeploymentException | IOException ex) {
+                // Tried again after a longer wait
+            }
+        }
+        serverMessageHandler.notify(new ErrorMessage("connection lost"));
+    }
+
     public void makeMove(String authToken, int gameID, ChessMove move) throws ResponseException {
         try {
-            var action = new MakeMoveCommand(authToken, gameID, move);
-            this.session.getBasicRemote().sendText(new Gson().toJson(action));
+            send(new MakeMoveCommand(authToken, gameID, move));
         } catch (IOException ex) {
             throw new ResponseException(ex.getMessage());
         }
@@ -75,8 +167,7 @@ public class WebSocketFacade extends Endpoint {
     public void getValidMoves(String authToken, int gameID, ChessPosition origin)
             throws ResponseException {
         try {
-            var action = new GetValidMovesCommand(authToken, gameID, origin);
-            this.session.getBasicRemote().sendText(new Gson().toJson(action));
+            send(new GetValidMovesCommand(authToken, gameID, origin));
         } catch (IOException ex) {
             throw new ResponseException(ex.getMessage());
         }
@@ -85,11 +176,35 @@ public class WebSocketFacade extends Endpoint {
     public void sendCommand(UserGameCommand.CommandType commandType, String authToken, int gameID, ChessGame.TeamColor team)
             throws ResponseException {
         try {
-            var action = new StandardGameCommand(commandType, authToken, gameID, team);
-            this.session.getBasicRemote().sendText(new Gson().toJson(action));
+            if (commandType == UserGameCommand.CommandType.CONNECT) {
+                this.authToken = authToken;
+                this.gameID = gameID;
+                this.lastSequence = 0;
+            }
+            else if (commandType == UserGameCommand.CommandType.LEAVE) {
+                this.gameID = null;
+            }
+            send(new StandardGameCommand(commandType, authToken, gameID, team));
         } catch (IOException ex) {
             throw new ResponseException(ex.getMessage());
         }
     }
 
-}
\ No newline at end of file
+    public void close() throws ResponseException {
+        try {
+            closing = true;
+            this.session.close();
+        } catch (IOException ex) {
+            throw new ResponseException(ex.getMessage());
+        }
+    }
+
+    private void send(UserGameCommand action) throws IOException {
+        if (binary) {
+            this.session.getBasicRemote().sendBinary(BinaryProtocol.encodeCommand(action, ++sequence));
+        }
+        else {
+            this.session.getBasicRemote().sendText(new Gson().toJson(action));
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package client;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import exception.ResponseException;
+import server.Server;
+import serviceobjects.*;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.ServerMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays many games at once against a chess server over websockets, then reports the
+ * round trip latency of moves and the overall move throughput.
+ * <p>
+ * Users and games are created through the REST endpoints in {@link ServerFacade}. Each
+ * game is then played by two websocket sessions, watched by any number of observer
+ * sessions, with random legal moves made at a fixed rate. A move's round trip lasts from
+ * sending the move until the mover receives the updated board. Games are drawn from a
+ * seeded random generator, so a run with the same seed plays the same moves.
+ * <p>
+ * Run {@link #main} with options such as {@code --games=1000 --observers=2 --moves=40
+ * --rate=1 --binary}. Without {@code --url}, an embedded {@link Server} is started on a
+ * random port.
+ */
+public class LoadGenerator {
+
+    private final Options options;
+    private final String url;
+    private final ServerFacade facade;
+    private final String runID;
+
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder observerMessages = new LongAdder();
+    private final LongAdder binarySessions = new LongAdder();
+    private CountDownLatch gamesFinished;
+    private ScheduledExecutorService scheduler;
+
+    public LoadGenerator(Options options, String url) {
+        this.options = options;
+        this.url = url;
+        this.facade = new ServerFacade(url);
+        // Keeps the names of users and games unique across runs against the same database
+        this.runID = "load-" + Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Server server = null;
+        String url = options.url();
+        if (url == null) {
+            server = new Server();
+            url = "http://localhost:" + server.run(0);
+            System.out.println("Started embedded server at " + url);
+        }
+
+        try {
+            System.out.println(new LoadGenerator(options, url).run());
+        }
+        finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Sets up every game, plays them all to the configured number of moves, and closes
+     * every session
+     *
+     * @return What was measured while the games were played
+     */
+    public Report run() throws ResponseException, InterruptedException {
+        List<GameDriver> games = setUp();
+        try {
+            gamesFinished = new CountDownLatch(games.size());
+            scheduler = Executors.newScheduledThreadPool(options.senderThreads());
+
+            long start = System.nanoTime();
+            for (GameDriver game : games) {
+                scheduler.execute(game::sendNextMove);
+            }
+
+            // Leave every game twice as long as its moves should take, plus some slack
+            long expectedNanos = (long) (options.moves() / options.movesPerSecond() * 1e9);
+            boolean completed = gamesFinished.await(2 * expectedNanos + TimeUnit.MINUTES.toNanos(1),
+                    TimeUnit.NANOSECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            return report(games, completed ? games.size() : games.size() - (int) gamesFinished.getCount(),
+                    Duration.ofNanos(elapsed));
+        }
+        finally {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+            for (GameDriver game : games) {
+                game.close();
+            }
+        }
+    }
+
+    /**
+     * Registers the users, creates and joins the games, and connects every session,
+     * spread over a pool of threads since password hashing makes registration slow
+     */
+    private List<GameDriver> setUp() throws ResponseException, InterruptedException {
+        String observerToken = facade.register(new RegisterRequest(
+                runID + "-observer", "password", "observer@example.com")).authToken();
+
+        ExecutorService setupPool = Executors.newFixedThreadPool(options.setupThreads());
+        try {
+            List<Future<GameDriver>> pending = new ArrayList<>();
+            for (int i = 0; i < options.games(); i++) {
+                int index = i;
+                pending.add(setupPool.submit(() -> setUpGame(index, observerToken)));
+            }
+
+            List<GameDriver> games = new ArrayList<>();
+            for (Future<GameDriver> future : pending) {
+                try {
+                    games.add(future.get());
+                }
+                catch (Exception e) {
+                    for (GameDriver game : games) {
+                        game.close();
+                    }
+                    throw new ResponseException("Error: unable to set up games: " + e.getMessage());
+                }
+            }
+            return games;
+        }
+        finally {
+            setupPool.shutdownNow();
+        }
+    }
+
+    private GameDriver setUpGame(int index, String observerToken) throws ResponseException, InterruptedException {
+        String name = runID + "-" + index;
+        String whiteToken = facade.register(
+                new RegisterRequest(name + "-white", "password", "white@example.com")).authToken();
+        String blackToken = facade.register(
+                new RegisterRequest(name + "-black", "password", "black@example.com")).authToken();
+        int gameID = facade.createGame(new CreateGameRequest(name), whiteToken).gameID();
+        facade.joinGame(new JoinGameRequest("WHITE", gameID), whiteToken);
+        facade.joinGame(new JoinGameRequest("BLACK", gameID), blackToken);
+
+        GameDriver game = new GameDriver(gameID, whiteToken, blackToken, new Random(options.seed() + index));
+        game.connect(observerToken);
+        return game;
+    }
+
+    private Report report(List<GameDriver> games, int completed, Duration elapsed) {
+        List<long[]> gameLatencies = new ArrayList<>();
+        int total = 0;
+        for (GameDriver game : games) {
+            long[] latencies = game.getLatencies();
+            gameLatencies.add(latencies);
+            total += latencies.length;
+        }
+
+        long[] latencies = new long[total];
+        int next = 0;
+        for (long[] gameLatency : gameLatencies) {
+            System.arraycopy(gameLatency, 0, latencies, next, gameLatency.length);
+            next += gameLatency.length;
+        }
+        Arrays.sort(latencies);
+
+        return new Report(games.size(), completed, latencies, errors.sum(), observerMessages.sum(),
+                binarySessions.sum(), elapsed);
+    }
+
+    /**
+     * Plays one game, keeping a copy of the game to choose legal moves from
+     */
+    private class GameDriver {
+        private final int gameID;
+        private final String whiteToken;
+        private final String blackToken;
+        private final Random random;
+        private final ChessGame game = new ChessGame();
+        private final long[] latencies;
+        private final CountDownLatch joined = new CountDownLatch(2);
+
+        private WebSocketFacade white;
+        private WebSocketFacade black;
+        private final List<WebSocketFacade> observers = new ArrayList<>();
+
+        private ChessMove pendingMove = null;
+        private ChessGame.TeamColor pendingTeam = null;
+        private ChessBoard expectedBoard = null;
+        private long sentAt;
+        private int moveCount = 0;
+        private boolean finished = false;
+
+        private GameDriver(int gameID, String whiteToken, String blackToken, Random random) {
+            this.gameID = gameID;
+            this.whiteToken = whiteToken;
+            this.blackToken = blackToken;
+            this.random = random;
+            this.latencies = new long[options.moves()];
+        }
+
+        /**
+         * Connects both players and every observer, waiting until both players have the board
+         */
+        private void connect(String observerToken) throws ResponseException, InterruptedException {
+            white = new WebSocketFacade(url, message -> onPlayerMessage(ChessGame.TeamColor.WHITE, message),
+                    options.binary());
+            black = new WebSocketFacade(url, message -> onPlayerMessage(ChessGame.TeamColor.BLACK, message),
+                    options.binary());
+            white.sendCommand(UserGameCommand.CommandType.CONNECT, whiteToken, gameID, ChessGame.TeamColor.WHITE);
+            black.sendCommand(UserGameCommand.CommandType.CONNECT, blackToken, gameID, ChessGame.TeamColor.BLACK);
+
+            for (int i = 0; i < options.observers(); i++) {
+                WebSocketFacade observer = new WebSocketFacade(url, message -> observerMessages.increment(),
+                        options.binary());
+                observer.sendCommand(UserGameCommand.CommandType.CONNECT, observerToken, gameID, null);
+                observers.add(observer);
+            }
+            for (WebSocketFacade session : sessions()) {
+                if (session.isBinary()) {
+                    binarySessions.increment();
+                }
+            }
+
+            if (!joined.await(30, TimeUnit.SECONDS)) {
+                throw new ResponseException("Error: players did not receive game " + gameID);
+            }
+        }
+
+        private synchronized void onPlayerMessage(ChessGame.TeamColor team, ServerMessage message) {
+            if (finished) {
+                return;
+            }
+
+            switch (message.getServerMessageType()) {
+                case LOAD_GAME -> {
+                    // Anything but the mover receiving the board after its move is either the
+                    // board sent on connecting, or a player's late view of an earlier move
+                    ChessBoard board = ((LoadGameMessage) message).getGameBoard();
+                    if (team != pendingTeam || !board.equals(expectedBoard)) {
+                        if (joined.getCount() > 0 && pendingTeam == null) {
+                            joined.countDown();
+                        }
+                        return;
+                    }
+                    latencies[moveCount] = System.nanoTime() - sentAt;
+                    try {
+                        game.makeMove(pendingMove);
+                    }
+                    catch (InvalidMoveException e) {
+                        fail();
+                        return;
+                    }
+                    moveCount++;
+                    pendingMove = null;
+                    pendingTeam = null;
+
+                    // Pace moves from when the last one was sent, not when it came back
+                    long interval = (long) (1e9 / options.movesPerSecond());
+                    long delay = Math.max(0, sentAt + interval - System.nanoTime());
+                    scheduler.schedule(this::sendNextMove, delay, TimeUnit.NANOSECONDS);
+                }
+                case ERROR -> {
+                    if (team == pendingTeam) {
+                        fail();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private synchronized void sendNextMove() {
+            if (finished) {
+                return;
+            }
+
+            List<ChessMove> legalMoves = legalMoves();
+            if (moveCount >= options.moves() || legalMoves.isEmpty()) {
+                finish();
+                return;
+            }
+
+            pendingMove = legalMoves.get(random.nextInt(legalMoves.size()));
+            pendingTeam = game.getTeamTurn();
+            ChessGame expected = game.copy();
+            try {
+                expected.makeMove(pendingMove);
+            }
+            catch (InvalidMoveException e) {
+                fail();
+                return;
+            }
+            expectedBoard = expected.getBoard();
+            String authToken = pendingTeam == ChessGame.TeamColor.WHITE ? whiteToken : blackToken;
+            WebSocketFacade mover = pendingTeam == ChessGame.TeamColor.WHITE ? white : black;
+            sentAt = System.nanoTime();
+            try {
+                mover.makeMove(authToken, gameID, pendingMove);
+            }
+            catch (ResponseException e) {
+                fail();
+            }
+        }
+
+        private List<ChessMove> legalMoves() {
+            List<ChessMove> moves = new ArrayList<>();
+            if (game.isOver()) {
+                return moves;
+            }
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    ChessPosition position = new ChessPosition(row, col);
+                    ChessPiece piece = game.getBoard().getPiece(position);
+                    if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                        moves.addAll(game.validMoves(position));
+                    }
+                }
+            }
+            return moves;
+        }
+
+        private void fail() {
+            errors.increment();
+            finish();
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                gamesFinished.countDown();
+            }
+        }
+
+        private synchronized long[] getLatencies() {
+            return Arrays.copyOf(latencies, moveCount);
+        }
+
+        private List<WebSocketFacade> sessions() {
+            List<WebSocketFacade> sessions = new ArrayList<>(observers);
+            sessions.add(white);
+            sessions.add(black);
+            return sessions;
+        }
+
+        private void close() {
+            for (WebSocketFacade session : sessions()) {
+                try {
+                    if (session != null) {
+                        session.close();
+                    }
+                }
+                catch (ResponseException e) {
+                    // The session is already gone
+                }
+            }
+        }
+    }
+
+    /**
+     * @param url the server to load, or null to start an embedded server
+     * @param games how many games to play at once
+     * @param observers how many observer sessions watch each game
+     * @param moves how many moves to make in each game, unless it ends first
+     * @param movesPerSecond how many moves to make per second in each game
+     * @param binary whether sessions use the binary subprotocol
+     * @param seed the seed the games' moves are drawn from
+     * @param setupThreads how many users and games to set up at once
+     * @param senderThreads how many threads send moves
+     */
+    public record Options(String url, int games, int observers, int moves, double movesPerSecond,
+                          boolean binary, long seed, int setupThreads, int senderThreads) {
+
+        public static Options parse(String[] args) {
+            String url = null;
+            int games = 100;
+            int observers = 1;
+            int moves = 40;
+            double movesPerSecond = 1;
+            boolean binary = false;
+            long seed = 1;
+            int setupThreads = 16;
+            int senderThreads = 4;
+
+            for (String arg : args) {
+                String[] option = arg.split("=", 2);
+                String value = option.length > 1 ? option[1] : "";
+                switch (option[0]) {
+                    case "--url" -> url = value;
+                    case "--games" -> games = Integer.parseInt(value);
+                    case "--observers" -> observers = Integer.parseInt(value);
+                    case "--moves" -> moves = Integer.parseInt(value);
+                    case "--rate" -> movesPerSecond = Double.parseDouble(value);
+                    case "--binary" -> binary = true;
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--setup-threads" -> setupThreads = Integer.parseInt(value);
+                    case "--sender-threads" -> senderThreads = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Error: unknown option " + arg);
+                }
+            }
+            return new Options(url, games, observers, moves, movesPerSecond,
+                    binary, seed, setupThreads, senderThreads);
+        }
+    }
+
+    /**
+     * @param latencies every move's round trip time in nanoseconds, sorted
+     * @param binarySessions how many sessions the server agreed to use binary frames on
+     */
+    public record Report(int games, int completedGames, long[] latencies, long errors,
+                         long observerMessages, long binarySessions, Duration elapsed) {
+
+        public long moves() {
+            return latencies.length;
+        }
+
+        public double movesPerSecond() {
+            return latencies.length / (elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return The round trip time in nanoseconds that the given percentage of moves beat
+         */
+        public long percentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("""
+                    games:             %d (%d completed)
+                    moves:             %d in %.1f s (%.1f moves/s)
+                    errors:            %d
+                    observer messages: %d
+                    binary sessions:   %d
+                    move round trip:   p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms""",
+                    games, completedGames,
+                    moves(), elapsed.toNanos() / 1e9, movesPerSecond(),
+                    errors,
+                    observerMessages,
+                    binarySessions,
+                    percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6,
+                    percentile(99.9) / 1e6, percentile(100) / 1e6);
+        }
+    }
+}
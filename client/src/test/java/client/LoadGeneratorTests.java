@@ -0,0 +1,50 @@
+package client;
+
+import exception.ResponseException;
+import org.junit.jupiter.api.*;
+import server.Server;
+
+public class LoadGeneratorTests {
+
+    private static Server server;
+    private static String url;
+
+    @BeforeAll
+    public static void init() {
+        server = new Server();
+        url = "http://localhost:" + server.run(0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void smallLoadCompletes() throws ResponseException, InterruptedException {
+        LoadGenerator.Options options = LoadGenerator.Options.parse(new String[]{
+                "--games=3", "--observers=2", "--moves=6", "--rate=50", "--seed=7"
+        });
+
+        LoadGenerator.Report report = new LoadGenerator(options, url).run();
+
+        Assertions.assertEquals(0, report.errors(), "Moves failed under load");
+        Assertions.assertEquals(3, report.completedGames(), "Not every game finished");
+        Assertions.assertEquals(18, report.moves(), "Not every move was acknowledged");
+        Assertions.assertTrue(report.observerMessages() > 0, "Observers received no messages");
+        Assertions.assertEquals(0, report.binarySessions(), "Binary frames were used without being offered");
+    }
+
+    @Test
+    public void smallBinaryLoadCompletes() throws ResponseException, InterruptedException {
+        LoadGenerator.Options options = LoadGenerator.Options.parse(new String[]{
+                "--games=3", "--observers=1", "--moves=6", "--rate=50", "--binary"
+        });
+
+        LoadGenerator.Report report = new LoadGenerator(options, url).run();
+
+        Assertions.assertEquals(0, report.errors(), "Moves failed under load");
+        Assertions.assertEquals(18, report.moves(), "Not every move was acknowledged");
+        Assertions.assertEquals(9, report.binarySessions(), "Server did not accept the binary subprotocol");
+    }
+}
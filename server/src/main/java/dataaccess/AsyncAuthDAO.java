@@ -0,0 +1,16 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link AuthDAO} whose calls return immediately. Each future fails with a
+ * {@link DataAccessException} where the blocking call would have thrown one.
+ */
+public interface AsyncAuthDAO {
+    public CompletableFuture<Void> createAuth(AuthData authData);
+    public CompletableFuture<AuthData> getAuth(String authToken);
+    public CompletableFuture<Void> deleteAuth(String authToken);
+    public CompletableFuture<Void> clear();
+}
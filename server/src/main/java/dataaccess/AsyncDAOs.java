@@ -0,0 +1,226 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import serviceobjects.CreateGameResult;
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapts the blocking DAOs to the asynchronous DAO interfaces
+ * <p>
+ * Each call runs on the given executor. DAOs that never block, such as the memory
+ * DAOs, use {@link #DIRECT}, so their futures are already complete when returned and no
+ * thread is handed off to. DAOs that block on the database use an executor with one
+ * thread per pooled connection, so callers are never parked waiting on it.
+ */
+public final class AsyncDAOs {
+    /**
+     * Runs each call on the thread making it
+     */
+    public static final Executor DIRECT = Runnable::run;
+
+    private AsyncDAOs() {
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataAccessException;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws DataAccessException;
+    }
+
+    public static AsyncAuthDAO auth(AuthDAO authDAO, Executor executor) {
+        return new BlockingAuthDAO(authDAO, executor);
+    }
+
+    public static AsyncGameDAO game(GameDAO gameDAO, Executor executor) {
+        return new BlockingGameDAO(gameDAO, executor);
+    }
+
+    public static AsyncUserDAO user(UserDAO userDAO, Executor executor) {
+        return new BlockingUserDAO(userDAO, executor);
+    }
+
+    /**
+     * Creates an executor for DAOs that block, with daemon threads named "dao-worker"
+     *
+     * @param threads how many calls may block at once, usually the size of the connection pool
+     */
+    public static ExecutorService newBlockingExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dao-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for a DAO call, for callers that must block
+     *
+     * @return The result of the call
+     * @throws DataAccessException if the call failed with one
+     */
+    public static <T> T await(CompletableFuture<T> future) throws DataAccessException {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof DataAccessException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> CompletableFuture<T> supply(Call<T> call, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call.call());
+                }
+                catch (DataAccessException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            result.completeExceptionally(new DataAccessException("Error: data access is shut down", e));
+        }
+        return result;
+    }
+
+    private static CompletableFuture<Void> run(Action action, Executor executor) {
+        return supply(() -> {
+            action.run();
+            return null;
+        }, executor);
+    }
+
+    private record BlockingAuthDAO(AuthDAO authDAO, Executor executor) implements AsyncAuthDAO {
+        @Override
+        public CompletableFuture<Void> createAuth(AuthData authData) {
+            return run(() -> authDAO.createAuth(authData), executor);
+        }
+
+        @Override
+        public CompletableFuture<AuthData> getAuth(String authToken) {
+            return supply(() -> authDAO.getAuth(authToken), executor);
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteAuth(String authToken) {
+            return run(() -> authDAO.deleteAuth(authToken), executor);
+        }
+
+        @Override
+        public CompletableFuture<Void> clear() {
+            return run(authDAO::clear, executor);
+        }
+    }
+
+    private record BlockingGameDAO(GameDAO gameDAO, Executor executor) implements AsyncGameDAO {
+        @Override
+        public CompletableFuture<CreateGameResult> createGame(String gameName) {
+            return supply(() -> gameDAO.createGame(gameName), executor);
+        }
+
+        @Override
+        public CompletableFuture<CreateGameResult> createGame(String gameName, ChessGame game) {
+            return supply(() -> gameDAO.createGame(gameName, game), executor);
+        }
+
+        @Override
+        public CompletableFuture<GameData> getGame(int gameID) {
+            return supply(() -> gameDAO.getGame(gameID), executor);
+        }
+
+        @Override
+        public CompletableFuture<ListGameData> getGameMetadata(int gameID) {
+            return supply(() -> gameDAO.getGameMetadata(gameID), executor);
+        }
+
+        @Override
+        public CompletableFuture<Collection<ListGameData>> listGames() {
+            return supply(gameDAO::listGames, executor);
+        }
+
+        @Override
+        public CompletableFuture<List<ListGameData>> listGames(ListGamesRequest request, int limit) {
+            return supply(() -> gameDAO.listGames(request, limit), executor);
+        }
+
+        @Override
+        public CompletableFuture<UpdateResult> updateGame(GameData newGameData) {
+            return supply(() -> gameDAO.updateGame(newGameData), executor);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> claimSeat(int gameID, ChessGame.TeamColor color, String username) {
+            return supply(() -> gameDAO.claimSeat(gameID, color, username), executor);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> releaseSeat(int gameID, ChessGame.TeamColor color, String username) {
+            return supply(() -> gameDAO.releaseSeat(gameID, color, username), executor);
+        }
+
+        @Override
+        public CompletableFuture<Void> updateGameStates(Map<Integer, ChessGame> games) {
+            return run(() -> gameDAO.updateGameStates(games), executor);
+        }
+
+        @Override
+        public CompletableFuture<Void> clear() {
+            return run(gameDAO::clear, executor);
+        }
+
+        @Override
+        public long getCatalogVersion() {
+            return gameDAO.getCatalogVersion();
+        }
+    }
+
+    private record BlockingUserDAO(UserDAO userDAO, Executor executor) implements AsyncUserDAO {
+        @Override
+        public CompletableFuture<Void> createUser(UserData user) {
+            return run(() -> userDAO.createUser(user), executor);
+        }
+
+        @Override
+        public CompletableFuture<UserData> getUser(String username) {
+            return supply(() -> userDAO.getUser(username), executor);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> updatePassword(String username, String hashedPassword) {
+            return supply(() -> userDAO.updatePassword(username, hashedPassword), executor);
+        }
+
+        @Override
+        public CompletableFuture<Void> clear() {
+            return run(userDAO::clear, executor);
+        }
+    }
+}
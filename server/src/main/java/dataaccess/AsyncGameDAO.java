@@ -0,0 +1,35 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import serviceobjects.CreateGameResult;
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link GameDAO} whose calls return immediately. Each future fails with a
+ * {@link DataAccessException} where the blocking call would have thrown one.
+ */
+public interface AsyncGameDAO {
+    public CompletableFuture<CreateGameResult> createGame(String gameName);
+    public CompletableFuture<CreateGameResult> createGame(String gameName, ChessGame game);
+    public CompletableFuture<GameData> getGame(int gameID);
+    public CompletableFuture<ListGameData> getGameMetadata(int gameID);
+    public CompletableFuture<Collection<ListGameData>> listGames();
+    public CompletableFuture<List<ListGameData>> listGames(ListGamesRequest request, int limit);
+    public CompletableFuture<UpdateResult> updateGame(GameData newGameData);
+    public CompletableFuture<Boolean> claimSeat(int gameID, ChessGame.TeamColor color, String username);
+    public CompletableFuture<Boolean> releaseSeat(int gameID, ChessGame.TeamColor color, String username);
+    public CompletableFuture<Void> updateGameStates(Map<Integer, ChessGame> games);
+    public CompletableFuture<Void> clear();
+
+    /**
+     * Never blocks, so is answered directly
+     */
+    public long getCatalogVersion();
+}
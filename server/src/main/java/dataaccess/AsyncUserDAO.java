@@ -0,0 +1,16 @@
+package dataaccess;
+
+import model.UserData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link UserDAO} whose calls return immediately. Each future fails with a
+ * {@link DataAccessException} where the blocking call would have thrown one.
+ */
+public interface AsyncUserDAO {
+    public CompletableFuture<Void> createUser(UserData user);
+    public CompletableFuture<UserData> getUser(String username);
+    public CompletableFuture<Boolean> updatePassword(String username, String hashedPassword);
+    public CompletableFuture<Void> clear();
+}
@@ -0,0 +1,141 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An AuthDAO that keeps recently looked up auth tokens in memory, so repeated
+ * lookups of the same token do not reach the underlying DAO.
+ * <p>
+ * The cache holds at most a fixed number of tokens, evicting the least recently
+ * used. Entries expire after a time to live, and tokens the underlying DAO does not
+ * know are remembered for a shorter time. Deleting a token or clearing the DAO
+ * invalidates the cache immediately.
+ */
+public class CachingAuthDAO implements AuthDAO {
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(5);
+
+    private final AuthDAO authDAO;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, CacheEntry> cache;
+
+    // Bumped by every invalidation, so a lookup that raced with one does not cache a stale result
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingAuthDAO(AuthDAO authDAO) {
+        this(authDAO, DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    public CachingAuthDAO(AuthDAO authDAO, int maxSize, Duration ttl, Duration negativeTtl) {
+        this.authDAO = authDAO;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void createAuth(AuthData authData) throws DataAccessException {
+        authDAO.createAuth(authData);
+        invalidate(authData.authToken());
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return authDAO.getAuth(null);
+        }
+
+        CacheEntry entry = cache.get(authToken);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.authData();
+        }
+        misses.increment();
+
+        long invalidationsBefore = invalidations.get();
+        AuthData authData = authDAO.getAuth(authToken);
+        long ttl = authData == null ? negativeTtlNanos : ttlNanos;
+
+        // Only cache the result if nothing was invalidated while it was being loaded
+        synchronized (cache) {
+            if (invalidations.get() == invalidationsBefore) {
+                cache.put(authToken, new CacheEntry(authData, System.nanoTime() + ttl));
+            }
+        }
+        return authData;
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        try {
+            authDAO.deleteAuth(authToken);
+        }
+        finally {
+            invalidate(authToken);
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        try {
+            authDAO.clear();
+        }
+        finally {
+            synchronized (cache) {
+                invalidations.incrementAndGet();
+                cache.clear();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    private void invalidate(String authToken) {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            cache.remove(authToken);
+        }
+    }
+
+    /**
+     * A cached lookup result. A null authData records that the token is unknown.
+     */
+    private record CacheEntry(AuthData authData, long expiresAt) {
+    }
+}
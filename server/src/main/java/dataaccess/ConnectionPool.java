@@ -0,0 +1,317 @@
+package dataaccess;
+
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps database connections open between uses, so a DAO call does not pay for a new
+ * connection handshake every time.
+ * <p>
+ * Connections handed out are wrappers whose {@code close} returns the connection to the
+ * pool. At most a maximum number are open at once, and callers wait up to a timeout for
+ * one to be returned. Connections idle for longer than the idle timeout are closed, down
+ * to the minimum size, which {@link #prewarm} opens ahead of the first caller, and a
+ * connection that sat idle for a while is validated before being handed out again.
+ */
+public class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MIN_SIZE = 2;
+    public static final int DEFAULT_MAX_SIZE = 20;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_ACQUIRE_TIMEOUT = Duration.ofSeconds(5);
+
+    // Connections used more recently than this are handed out without a validation round trip
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final Histogram ACQUIRE_TIME = MetricsRegistry.DEFAULT.histogram(
+            "chess_db_connection_acquire_seconds", "Time spent waiting for a pooled database connection");
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final long idleTimeoutNanos;
+    private final long acquireTimeoutNanos;
+
+    // Most recently returned connections are at the front, so idle ones collect at the back
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    /**
+     * Opens a new physical connection
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    public ConnectionPool(ConnectionFactory factory) {
+        this(factory, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT, DEFAULT_ACQUIRE_TIMEOUT);
+    }
+
+    /**
+     * @param minSize how many connections are opened by {@link #prewarm} and kept open when idle
+     * @param maxSize how many connections may be open at once
+     * @param idleTimeout how long a connection may sit unused before it is closed
+     * @param acquireTimeout how long a caller waits for a connection when all are in use
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize,
+                          Duration idleTimeout, Duration acquireTimeout) {
+        this.factory = factory;
+        this.minSize = minSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout.toMillis() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting if every connection is in use. Closing the
+     * connection returns it to the pool.
+     *
+     * @throws SQLTransientConnectionException if no connection became free in time
+     * @throws SQLException if a new connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException("Error: timed out waiting for a database connection");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Error: interrupted waiting for a database connection", e);
+        }
+
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = factory.connect();
+                open.incrementAndGet();
+                created.increment();
+            }
+            ACQUIRE_TIME.recordSince(start);
+            return wrap(physical);
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens connections until the minimum size are open, so the first callers do not
+     * each pay for a connection handshake
+     *
+     * @throws SQLException if a connection could not be opened
+     */
+    public synchronized void prewarm() throws SQLException {
+        while (open.get() < minSize) {
+            Connection physical = factory.connect();
+            open.incrementAndGet();
+            created.increment();
+            idle.offerLast(new IdleConnection(physical, System.nanoTime()));
+        }
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getClosed() {
+        return closed.sum();
+    }
+
+    public int getOpen() {
+        return open.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Stops evicting and closes every idle connection. Connections still borrowed are
+     * closed when they are returned.
+     */
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection.physical());
+        }
+    }
+
+    /**
+     * @return The most recently used idle connection that is still usable, or null if there is none
+     */
+    private Connection takeIdle() {
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (System.nanoTime() - connection.idleSince() < VALIDATION_INTERVAL_NANOS
+                    || isValid(connection.physical())) {
+                return connection.physical();
+            }
+            destroy(connection.physical());
+        }
+        return null;
+    }
+
+    /**
+     * Takes back a borrowed connection, closing it instead if it cannot be reset
+     *
+     * @param failed whether the borrower was thrown an SQLException by the connection, in
+     *               which case it is validated before being pooled again
+     */
+    private void release(Connection physical, boolean failed) {
+        try {
+            // A driver closes its connection itself once the server is lost mid-statement
+            if (evictor.isShutdown() || physical.isClosed() || failed && !isValid(physical)) {
+                destroy(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                // Undo anything left uncommitted, so the next borrower starts clean
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+        }
+        catch (SQLException e) {
+            destroy(physical);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout, keeping the minimum
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && open.get() > minSize) {
+            IdleConnection connection = oldestFirst.next();
+            if (now - connection.idleSince() < idleTimeoutNanos) {
+                return;
+            }
+            if (idle.removeLastOccurrence(connection)) {
+                destroy(connection.physical());
+            }
+        }
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(Connection physical) {
+        open.decrementAndGet();
+        closed.increment();
+        try {
+            physical.close();
+        }
+        catch (SQLException e) {
+            // The connection is being discarded anyway
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledConnection(physical));
+    }
+
+    private record IdleConnection(Connection physical, long idleSince) {
+    }
+
+    /**
+     * Passes calls through to a physical connection until it is closed, at which point
+     * the physical connection goes back to the pool
+     */
+    private class PooledConnection implements InvocationHandler {
+        private Connection physical;
+        private boolean failed = false;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (physical != null) {
+                        Connection returned = physical;
+                        physical = null;
+                        release(returned, failed);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return physical == null || physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    if (physical == null) {
+                        throw new SQLException("Error: connection already returned to the pool");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    }
+                    catch (InvocationTargetException e) {
+                        if (e.getCause() instanceof SQLException) {
+                            failed = true;
+                        }
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package dataaccess;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The DAOs for one storage backend
+ * <p>
+ * The backend is chosen with the {@code chess.storage} system property:
+ * <ul>
+ *     <li>{@code sql}, the default, stores everything in the MySQL database set up in db.properties</li>
+ *     <li>{@code file} stores everything in log files under the directory named by {@code chess.dataDir},
+ *     "data" by default, so a single server needs no database. Setting {@code chess.fileStore.sync}
+ *     to true forces each write to disk before it returns.</li>
+ *     <li>{@code memory} keeps everything in memory and loses it when the server stops</li>
+ * </ul>
+ *
+ * @param executor where calls to these DAOs run when made through the asynchronous DAO
+ *                 interfaces. The SQL DAOs block, so they get one thread per pooled
+ *                 connection. File DAOs forcing each write to disk block on it, so they
+ *                 get a few threads; the others answer from memory and run directly.
+ */
+public record DataAccess(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO, Executor executor)
+        implements AutoCloseable {
+    public static final String STORAGE_PROPERTY = "chess.storage";
+    public static final String DATA_DIRECTORY_PROPERTY = "chess.dataDir";
+    public static final String SYNC_PROPERTY = "chess.fileStore.sync";
+
+    // One per log file, since each file takes one write at a time
+    private static final int FILE_SYNC_THREADS = 3;
+
+    public static DataAccess fromConfiguration() throws DataAccessException {
+        String storage = System.getProperty(STORAGE_PROPERTY, "sql");
+        return switch (storage) {
+            case "sql" -> new DataAccess(new SQLAuthDAO(), new SQLGameDAO(), new SQLUserDAO(),
+                    AsyncDAOs.newBlockingExecutor(DatabaseManager.getMaxPoolSize()));
+            case "file" -> file(Path.of(System.getProperty(DATA_DIRECTORY_PROPERTY, "data")),
+                    Boolean.getBoolean(SYNC_PROPERTY));
+            case "memory" -> new DataAccess(new MemoryAuthDAO(), new MemoryGameDAO(), new MemoryUserDAO(),
+                    AsyncDAOs.DIRECT);
+            default -> throw new DataAccessException(String.format("Error: unknown storage backend %s", storage));
+        };
+    }
+
+    public static DataAccess file(Path dataDirectory, boolean syncWrites) throws DataAccessException {
+        return new DataAccess(
+                new FileAuthDAO(dataDirectory, syncWrites),
+                new FileGameDAO(dataDirectory, syncWrites),
+                new FileUserDAO(dataDirectory, syncWrites),
+                syncWrites ? AsyncDAOs.newBlockingExecutor(FILE_SYNC_THREADS) : AsyncDAOs.DIRECT);
+    }
+
+    /**
+     * Stops the executor's threads and closes the DAOs' files or database connections
+     */
+    @Override
+    public void close() throws DataAccessException {
+        if (executor instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+        if (authDAO instanceof FileAuthDAO fileAuthDAO) {
+            fileAuthDAO.close();
+        }
+        if (gameDAO instanceof FileGameDAO fileGameDAO) {
+            fileGameDAO.close();
+        }
+        if (userDAO instanceof FileUserDAO fileUserDAO) {
+            fileUserDAO.close();
+        }
+        // Only touched for the SQL backend, since loading DatabaseManager reads db.properties
+        if (authDAO instanceof SQLAuthDAO) {
+            DatabaseManager.closePool();
+        }
+    }
+}
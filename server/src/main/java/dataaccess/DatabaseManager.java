@@ -2,8 +2,10 @@ package dataaccess;
 
 import chess.ChessGame;
 import com.google.gson.Gson;
+import metrics.MetricsRegistry;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.Properties;
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
@@ -16,6 +18,10 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static Properties connectionProperties;
+    private static Properties poolProperties;
+    private static ConnectionPool pool;
+    private static int maxPoolSize;
 
     /*
      * Load the database information for the db.properties file.
@@ -38,10 +44,10 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
-     * The easiest way to do that is with a try-with-resource block.
+     * Borrows a connection to the database from the pool, with the catalog set based
+     * upon the properties specified in db.properties. Connections to the database should
+     * be short-lived, and you must close the connection when you are done with it, which
+     * returns it to the pool. The easiest way to do that is with a try-with-resource block.
      * <br/>
      * <code>
      * try (var conn = DatabaseManager.getConnection()) {
@@ -52,15 +58,58 @@ public class DatabaseManager {
     static Connection getConnection() throws DataAccessException {
         try {
             //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+            return pool().getConnection();
         } catch (SQLException ex) {
             throw new DataAccessException("Error: failed to get connection", ex);
         }
     }
 
-    private static void loadPropertiesFromResources() {
+    /**
+     * Closes the connection pool, if one was opened. Connections still borrowed are closed
+     * when they are returned, and the next connection requested opens a new pool.
+     */
+    static public synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Creates the connection pool the first time it is needed, so a server storing
+     * nothing in the database never opens one
+     */
+    private static synchronized ConnectionPool pool() {
+        if (pool != null) {
+            return pool;
+        }
+        pool = new ConnectionPool(DatabaseManager::connect,
+                intProperty(poolProperties, "db.pool.minSize", ConnectionPool.DEFAULT_MIN_SIZE),
+                maxPoolSize,
+                Duration.ofSeconds(intProperty(poolProperties, "db.pool.idleTimeoutSeconds",
+                        (int) ConnectionPool.DEFAULT_IDLE_TIMEOUT.toSeconds())),
+                Duration.ofMillis(intProperty(poolProperties, "db.pool.acquireTimeoutMillis",
+                        (int) ConnectionPool.DEFAULT_ACQUIRE_TIMEOUT.toMillis())));
+
+        MetricsRegistry metrics = MetricsRegistry.DEFAULT;
+        metrics.gauge("chess_db_connections_open", "Open database connections", pool::getOpen);
+        metrics.gauge("chess_db_connections_idle", "Idle pooled database connections", pool::getIdle);
+        metrics.counter("chess_db_connection_timeouts_total", "Requests that timed out waiting for a connection",
+                pool::getTimeouts);
+        metrics.counter("chess_db_connections_created_total", "Database connections opened", pool::getCreated);
+        return pool;
+    }
+
+    /**
+     * Opens a new physical connection for the pool
+     */
+    private static Connection connect() throws SQLException {
+        var conn = DriverManager.getConnection(connectionUrl, connectionProperties);
+        conn.setCatalog(databaseName);
+        return conn;
+    }
+
+    static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
                 throw new Exception("Error: Unable to load db.properties");
@@ -73,7 +122,12 @@ public class DatabaseManager {
         }
     }
 
-    private static void loadProperties(Properties props) {
+    /**
+     * Replaces the connection settings, closing the pool opened with the old ones so the
+     * next connection is made with the new ones
+     */
+    static synchronized void loadProperties(Properties props) {
+        closePool();
         databaseName = props.getProperty("db.name");
         dbUsername = props.getProperty("db.user");
         dbPassword = props.getProperty("db.password");
@@ -81,10 +135,42 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        // Pooled connections live long enough for the driver to reuse prepared statements
+        connectionProperties = new Properties();
+        connectionProperties.setProperty("user", dbUsername);
+        connectionProperties.setProperty("password", dbPassword);
+        connectionProperties.setProperty("cachePrepStmts", "true");
+        connectionProperties.setProperty("useServerPrepStmts", "true");
+        connectionProperties.setProperty("prepStmtCacheSize", props.getProperty("db.pool.statementCacheSize", "250"));
+        connectionProperties.setProperty("prepStmtCacheSqlLimit", "2048");
+
+        maxPoolSize = intProperty(props, "db.pool.maxSize", ConnectionPool.DEFAULT_MAX_SIZE);
+        poolProperties = props;
+    }
+
+    /**
+     * @return How many connections may be open at once, which bounds how many DAO calls can make progress
+     */
+    static public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    private static int intProperty(Properties props, String name, int defaultValue) {
+        var value = props.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
     }
 
+    /**
+     * Creates the database and its tables, then opens the pool's minimum connections
+     */
     static public void configureDatabase(String[] createStatements) throws DataAccessException {
         createDatabase();
+        try {
+            pool().prewarm();
+        } catch (SQLException ex) {
+            throw new DataAccessException(String.format("Error: Unable to open connections: %s", ex.getMessage()), ex);
+        }
         try (Connection conn = DatabaseManager.getConnection()) {
             for (String statement : createStatements) {
                 try (var preparedStatement = conn.prepareStatement(statement)) {
@@ -96,24 +182,38 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Executes a statement that changes the database
+     *
+     * @return The number of rows changed
+     */
     static public int executeUpdate(String statement, Object... params) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                setParameters(ps, params);
+                return ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(String.format(
+                    "Error: unable to update database: %s, %s", statement, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Executes an insert into a table with a generated key
+     *
+     * @return The key generated for the inserted row, or 0 if none was generated
+     */
+    static public int executeInsert(String statement, Object... params) throws DataAccessException {
         try (Connection conn = DatabaseManager.getConnection()) {
             try (PreparedStatement ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
-                for (int i = 0; i < params.length; i++) {
-                    Object param = params[i];
-                    switch (param) {
-                        case String p -> ps.setString(i + 1, p);
-                        case Integer p -> ps.setInt(i + 1, p);
-                        case ChessGame p -> ps.setString(i + 1, new Gson().toJson(p));
-                        case null -> ps.setNull(i + 1, NULL);
-                        default -> throw new IllegalStateException("Error: Unexpected value: " + param);
-                    }
-                }
+                setParameters(ps, params);
                 ps.executeUpdate();
 
-                ResultSet rs = ps.getGeneratedKeys();
-                if (rs.next()) {
-                    return rs.getInt(1);
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
                 }
 
                 return 0;
@@ -123,4 +223,18 @@ public class DatabaseManager {
                     "Error: unable to update database: %s, %s", statement, e.getMessage()), e);
         }
     }
+
+    private static void setParameters(PreparedStatement ps, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            switch (param) {
+                case String p -> ps.setString(i + 1, p);
+                case Integer p -> ps.setInt(i + 1, p);
+                case Boolean p -> ps.setBoolean(i + 1, p);
+                case ChessGame p -> ps.setString(i + 1, new Gson().toJson(p));
+                case null -> ps.setNull(i + 1, NULL);
+                default -> throw new IllegalStateException("Error: Unexpected value: " + param);
+            }
+        }
+    }
 }
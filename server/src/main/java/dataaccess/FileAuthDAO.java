@@ -0,0 +1,46 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.nio.file.Path;
+
+/**
+ * Stores auth tokens in a log file under the data directory, keyed by token
+ */
+public class FileAuthDAO implements AuthDAO, AutoCloseable {
+    private final FileStore<AuthData> authTable;
+
+    public FileAuthDAO(Path dataDirectory, boolean syncWrites) throws DataAccessException {
+        authTable = new FileStore<>(dataDirectory.resolve("auth.log"), AuthData.class, syncWrites);
+    }
+
+    @Override
+    public synchronized void createAuth(AuthData authData) throws DataAccessException {
+        if (authTable.containsKey(authData.authToken())) {
+            throw new DataAccessException("Error: AuthData already exists");
+        }
+        authTable.put(authData.authToken(), authData);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) {
+        return authToken == null ? null : authTable.get(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        if (authToken == null || !authTable.remove(authToken)) {
+            throw new DataAccessException("Error: AuthToken not found");
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        authTable.clear();
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        authTable.close();
+    }
+}
@@ -0,0 +1,216 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import serviceobjects.CreateGameResult;
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores games in a log file under the data directory, keyed by game ID
+ */
+public class FileGameDAO implements GameDAO, AutoCloseable {
+    private final FileStore<GameData> gameTable;
+    private final ConcurrentHashMap<String, Integer> gameIDsByName = new ConcurrentHashMap<>();
+    private int nextGameID = 1;
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    public FileGameDAO(Path dataDirectory, boolean syncWrites) throws DataAccessException {
+        gameTable = new FileStore<>(dataDirectory.resolve("game.log"), GameData.class, syncWrites);
+        for (GameData game : gameTable.values()) {
+            nextGameID = Math.max(nextGameID, game.gameID() + 1);
+            if (game.gameName() != null) {
+                gameIDsByName.put(game.gameName(), game.gameID());
+            }
+        }
+    }
+
+    @Override
+    public CreateGameResult createGame(String gameName) throws DataAccessException {
+        return createGame(gameName, new ChessGame());
+    }
+
+    @Override
+    public synchronized CreateGameResult createGame(String gameName, ChessGame game) throws DataAccessException {
+        if (gameName == null) {
+            throw new DataAccessException("Error: Game name required");
+        }
+        if (gameIDsByName.containsKey(gameName)) {
+            throw new DataAccessException("Error: Game already exists");
+        }
+        int gameID = nextGameID;
+        gameTable.put(String.valueOf(gameID), new GameData(gameID, null, null, gameName, game.copy()));
+        gameIDsByName.put(gameName, gameID);
+        nextGameID++;
+        catalogVersion.incrementAndGet();
+        return new CreateGameResult(gameID);
+    }
+
+    /**
+     * @return A copy of the game, so changes to it are not seen by other callers until it is updated
+     */
+    @Override
+    public GameData getGame(int gameID) {
+        GameData game = gameTable.get(String.valueOf(gameID));
+        if (game == null) {
+            return null;
+        }
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                game.game().copy(), game.version());
+    }
+
+    @Override
+    public ListGameData getGameMetadata(int gameID) {
+        GameData game = gameTable.get(String.valueOf(gameID));
+        if (game == null) {
+            return null;
+        }
+        return new ListGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+    }
+
+    @Override
+    public Collection<ListGameData> listGames() {
+        var result = new ArrayList<ListGameData>();
+        for (GameData game : gameTable.values()) {
+            result.add(new ListGameData(
+                    game.gameID(),
+                    game.whiteUsername(),
+                    game.blackUsername(),
+                    game.gameName()
+                )
+            );
+        }
+        result.sort(Comparator.comparingInt(ListGameData::gameID));
+        return result;
+    }
+
+    @Override
+    public List<ListGameData> listGames(ListGamesRequest request, int limit) {
+        var result = new ArrayList<ListGameData>();
+        for (GameData game : gameTable.values()) {
+            var metadata = new ListGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+            if (GameFilter.matches(request, metadata, game.game().isOver())) {
+                result.add(metadata);
+            }
+        }
+        result.sort(Comparator.comparingInt(ListGameData::gameID));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    public synchronized UpdateResult updateGame(GameData newGameData) throws DataAccessException {
+        String key = String.valueOf(newGameData.gameID());
+        GameData oldGameData = gameTable.get(key);
+        if (oldGameData == null) {
+            throw new DataAccessException("Error: Corresponding game not found");
+        }
+        if (oldGameData.version() != newGameData.version()) {
+            return UpdateResult.conflict(oldGameData.version());
+        }
+        int version = newGameData.version() + 1;
+        gameTable.put(key, new GameData(newGameData.gameID(), newGameData.whiteUsername(),
+                newGameData.blackUsername(), newGameData.gameName(), newGameData.game(), version));
+        if (!Objects.equals(oldGameData.gameName(), newGameData.gameName())) {
+            gameIDsByName.remove(oldGameData.gameName(), oldGameData.gameID());
+            if (newGameData.gameName() != null) {
+                gameIDsByName.put(newGameData.gameName(), newGameData.gameID());
+            }
+        }
+        catalogVersion.incrementAndGet();
+        return UpdateResult.updated(version);
+    }
+
+    @Override
+    public synchronized boolean claimSeat(int gameID, ChessGame.TeamColor color, String username)
+            throws DataAccessException {
+        GameData game = gameTable.get(String.valueOf(gameID));
+        if (game == null || seatHolder(game, color) != null) {
+            return false;
+        }
+        gameTable.put(String.valueOf(gameID), withSeat(game, color, username));
+        catalogVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean releaseSeat(int gameID, ChessGame.TeamColor color, String username)
+            throws DataAccessException {
+        GameData game = gameTable.get(String.valueOf(gameID));
+        if (game == null || !Objects.equals(username, seatHolder(game, color))) {
+            return false;
+        }
+        gameTable.put(String.valueOf(gameID), withSeat(game, color, null));
+        catalogVersion.incrementAndGet();
+        return true;
+    }
+
+    private static String seatHolder(GameData game, ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? game.whiteUsername() : game.blackUsername();
+    }
+
+    private static GameData withSeat(GameData game, ChessGame.TeamColor color, String username) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game(),
+                    game.version() + 1);
+        }
+        return new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game(),
+                game.version() + 1);
+    }
+
+    /**
+     * Writes every game with a single append to the log
+     */
+    @Override
+    public synchronized void updateGameStates(Map<Integer, ChessGame> games) throws DataAccessException {
+        Map<String, GameData> updated = new HashMap<>();
+        boolean anyOver = false;
+        for (Map.Entry<Integer, ChessGame> entry : games.entrySet()) {
+            anyOver |= entry.getValue().isOver();
+            GameData game = gameTable.get(String.valueOf(entry.getKey()));
+            if (game == null) {
+                throw new DataAccessException("Error: Corresponding game not found");
+            }
+            updated.put(String.valueOf(game.gameID()), new GameData(
+                    game.gameID(),
+                    game.whiteUsername(),
+                    game.blackUsername(),
+                    game.gameName(),
+                    entry.getValue(),
+                    game.version() + 1));
+        }
+        gameTable.putAll(updated);
+        // Only a game finishing changes what is listed
+        if (anyOver) {
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws DataAccessException {
+        gameTable.clear();
+        gameIDsByName.clear();
+        nextGameID = 1;
+        catalogVersion.incrementAndGet();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        gameTable.close();
+    }
+}
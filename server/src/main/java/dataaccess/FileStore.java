@@ -0,0 +1,321 @@
+package dataaccess;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A durable map of string keys to values, kept as an append-only log in a single file
+ * <p>
+ * Every change is appended to the log as a record holding a length, a CRC32 checksum, an
+ * operation, the key and the value as JSON. The current values are held in memory, so
+ * reads never touch the file. On opening, the log is read back to rebuild them; a record
+ * that is cut short or fails its checksum marks where a crash interrupted a write, and the
+ * log is truncated there. Once most of the log is made of overwritten records, it is
+ * compacted by writing the current values to a new file and swapping it into place.
+ *
+ * @param <V> the type of value stored, which must be serializable with Gson
+ */
+public class FileStore<V> implements AutoCloseable {
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    // Length, checksum, operation and key length
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 2;
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final Path file;
+    private final Class<V> type;
+    private final boolean syncWrites;
+    private final Gson serializer = new Gson();
+    private final ConcurrentHashMap<String, V> values = new ConcurrentHashMap<>();
+
+    // Size of the record holding each current value, to tell how much of the log is still live
+    private final Map<String, Integer> recordSizes = new ConcurrentHashMap<>();
+    private long liveBytes = 0;
+
+    private FileChannel channel;
+
+    /**
+     * Opens the store, creating the file if it does not exist and recovering from any
+     * write a crash interrupted
+     *
+     * @param file the log file
+     * @param type the type of value stored
+     * @param syncWrites whether each change is forced to disk before returning. Without
+     *                   it, changes survive the process crashing but not the machine.
+     */
+    public FileStore(Path file, Class<V> type, boolean syncWrites) throws DataAccessException {
+        this.file = file;
+        this.type = type;
+        this.syncWrites = syncWrites;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        }
+        catch (IOException e) {
+            throw new DataAccessException(String.format("Error: unable to open %s: %s", file, e.getMessage()), e);
+        }
+    }
+
+    public V get(String key) {
+        return values.get(key);
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * @return A snapshot of every value
+     */
+    public Collection<V> values() {
+        return new ArrayList<>(values.values());
+    }
+
+    public synchronized void put(String key, V value) throws DataAccessException {
+        ByteBuffer record = encode(PUT, key, value);
+        int size = record.remaining();
+        write(record);
+        apply(PUT, key, value, size);
+        compactIfMostlyGarbage();
+    }
+
+    /**
+     * Writes several values with a single append and, when syncing, a single force
+     */
+    public synchronized void putAll(Map<String, V> entries) throws DataAccessException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<ByteBuffer> records = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            ByteBuffer record = encode(PUT, entry.getKey(), entry.getValue());
+            records.add(record);
+            sizes.add(record.remaining());
+        }
+        write(records.toArray(new ByteBuffer[0]));
+        int i = 0;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            apply(PUT, entry.getKey(), entry.getValue(), sizes.get(i++));
+        }
+        compactIfMostlyGarbage();
+    }
+
+    /**
+     * @return False if there was no value for the key
+     */
+    public synchronized boolean remove(String key) throws DataAccessException {
+        if (!values.containsKey(key)) {
+            return false;
+        }
+        write(encode(REMOVE, key, null));
+        apply(REMOVE, key, null, 0);
+        compactIfMostlyGarbage();
+        return true;
+    }
+
+    public synchronized void clear() throws DataAccessException {
+        write(encode(CLEAR, "", null));
+        apply(CLEAR, "", null, 0);
+        compact();
+    }
+
+    @Override
+    public synchronized void close() throws DataAccessException {
+        try {
+            channel.force(true);
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new DataAccessException(String.format("Error: unable to close %s: %s", file, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Replays the log into memory, truncating it at the first damaged record
+     */
+    private void recover() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 checksum = new CRC32();
+        long position = 0;
+        long size = channel.size();
+
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int expected = header.getInt();
+            if (length < HEADER_SIZE || position + length > size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length);
+            channel.read(record, position);
+            checksum.reset();
+            checksum.update(record.array(), 8, length - 8);
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+
+            record.position(8);
+            byte operation = record.get();
+            byte[] key = new byte[Short.toUnsignedInt(record.getShort())];
+            record.get(key);
+            String value = new String(record.array(), record.position(), record.remaining(), StandardCharsets.UTF_8);
+            apply(operation, new String(key, StandardCharsets.UTF_8),
+                    operation == PUT ? serializer.fromJson(value, type) : null, length);
+            position += length;
+        }
+
+        if (position < size) {
+            // Everything past the last good record was being written when the process died
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+    }
+
+    private ByteBuffer encode(byte operation, String key, V value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? new byte[0] : serializer.toJson(value).getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + keyBytes.length + valueBytes.length;
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(0).put(operation).putShort((short) keyBytes.length).put(keyBytes).put(valueBytes);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), 8, length - 8);
+        record.putInt(4, (int) checksum.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Applies a change to the values in memory
+     *
+     * @param size the size of the record written for a put
+     */
+    private void apply(byte operation, String key, V value, int size) {
+        switch (operation) {
+            case PUT -> {
+                values.put(key, value);
+                Integer replaced = recordSizes.put(key, size);
+                liveBytes += size - (replaced == null ? 0 : replaced);
+            }
+            case REMOVE -> {
+                values.remove(key);
+                Integer removed = recordSizes.remove(key);
+                liveBytes -= removed == null ? 0 : removed;
+            }
+            case CLEAR -> {
+                values.clear();
+                recordSizes.clear();
+                liveBytes = 0;
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void write(ByteBuffer... records) throws DataAccessException {
+        try {
+            long expected = 0;
+            for (ByteBuffer record : records) {
+                expected += record.remaining();
+            }
+            long written = 0;
+            while (written < expected) {
+                written += channel.write(records);
+            }
+            if (syncWrites) {
+                channel.force(false);
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessException(String.format("Error: unable to write %s: %s", file, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Compacts the log once overwritten and removed records make up most of it
+     */
+    private void compactIfMostlyGarbage() throws DataAccessException {
+        long size;
+        try {
+            size = channel.position();
+        }
+        catch (IOException e) {
+            throw new DataAccessException(String.format("Error: unable to read %s: %s", file, e.getMessage()), e);
+        }
+        if (size > MIN_COMPACTION_SIZE && size > 2 * liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes the current values to a new log and atomically replaces the old one with it
+     */
+    private void compact() throws DataAccessException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, V> entry : values.entrySet()) {
+                    ByteBuffer record = encode(PUT, entry.getKey(), entry.getValue());
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+
+            channel.close();
+            try {
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e) {
+                // The old log is still in place, so changes go on being appended to it
+                reopen();
+                Files.deleteIfExists(compacted);
+                throw e;
+            }
+            reopen();
+
+            // The rename is only durable once the directory holding the log is forced too
+            try (FileChannel directory = FileChannel.open(file.toAbsolutePath().getParent(),
+                    StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+        }
+        catch (IOException e) {
+            throw new DataAccessException(String.format("Error: unable to compact %s: %s", file, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Opens the log again after compaction closed it, to append after its last record
+     */
+    private void reopen() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+}
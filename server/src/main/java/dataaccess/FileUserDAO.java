@@ -0,0 +1,49 @@
+package dataaccess;
+
+import model.UserData;
+
+import java.nio.file.Path;
+
+/**
+ * Stores users in a log file under the data directory, keyed by username
+ */
+public class FileUserDAO implements UserDAO, AutoCloseable {
+    private final FileStore<UserData> userTable;
+
+    public FileUserDAO(Path dataDirectory, boolean syncWrites) throws DataAccessException {
+        userTable = new FileStore<>(dataDirectory.resolve("user.log"), UserData.class, syncWrites);
+    }
+
+    @Override
+    public synchronized void createUser(UserData user) throws DataAccessException {
+        if (userTable.containsKey(user.username())) {
+            throw new DataAccessException("Error: User already exists");
+        }
+        userTable.put(user.username(), user);
+    }
+
+    @Override
+    public UserData getUser(String username) {
+        return username == null ? null : userTable.get(username);
+    }
+
+    @Override
+    public synchronized boolean updatePassword(String username, String hashedPassword) throws DataAccessException {
+        UserData user = username == null ? null : userTable.get(username);
+        if (user == null) {
+            return false;
+        }
+        userTable.put(username, new UserData(user.username(), hashedPassword, user.email()));
+        return true;
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        userTable.clear();
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        userTable.close();
+    }
+}
@@ -1,15 +1,80 @@
 package dataaccess;
 
+import chess.ChessGame;
 import model.GameData;
 import serviceobjects.CreateGameResult;
 import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface GameDAO {
     public CreateGameResult createGame(String gameName) throws DataAccessException;
+
+    /**
+     * Creates a game starting from the given state, such as a new game with a time control
+     */
+    public CreateGameResult createGame(String gameName, ChessGame game) throws DataAccessException;
     public GameData getGame(int gameID) throws DataAccessException;
+
+    /**
+     * Reads a game's name and players without reading its board
+     *
+     * @return The game's metadata, or null if there is no such game
+     */
+    public ListGameData getGameMetadata(int gameID) throws DataAccessException;
+
     public Collection<ListGameData> listGames() throws DataAccessException;
-    public void updateGame(GameData newGameData) throws DataAccessException;
+
+    /**
+     * Lists the games passing a request's filters, in order of ID, starting after the
+     * request's cursor. The request's page size is left to the caller, which passes the
+     * limit it wants instead.
+     *
+     * @param limit the most games to return
+     */
+    public List<ListGameData> listGames(ListGamesRequest request, int limit) throws DataAccessException;
+
+    /**
+     * Replaces a game, only if its version is still the one given in the new game data,
+     * and moves it to the next version. Every other write also moves a game to its next
+     * version.
+     *
+     * @param newGameData the game to write, with the version it had when read
+     * @return Whether the game was written, or refused because it was written since being read
+     * @throws DataAccessException if there is no such game
+     */
+    public UpdateResult updateGame(GameData newGameData) throws DataAccessException;
+
+    /**
+     * Sets the player for a color, only if nobody holds that seat already. Checking and
+     * setting the seat happen atomically, so two players cannot both claim it.
+     *
+     * @return False if the seat was taken or there is no such game
+     */
+    public boolean claimSeat(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException;
+
+    /**
+     * Empties the seat for a color, only if the given player holds it
+     *
+     * @return False if the player did not hold the seat
+     */
+    public boolean releaseSeat(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException;
+
+    /**
+     * Writes the boards of several games, leaving their players untouched
+     */
+    public void updateGameStates(Map<Integer, ChessGame> games) throws DataAccessException;
     public void clear() throws DataAccessException;
+
+    /**
+     * Counts the writes that may have changed what {@link #listGames} returns: games being
+     * created, updated or cleared, seats being claimed or released, and games finishing.
+     * It is bumped once each write is visible, so a listing read after reading the count
+     * is at least as new as the count. It only counts this DAO's own writes, and starts
+     * over when the DAO is created.
+     */
+    public long getCatalogVersion();
 }
@@ -0,0 +1,31 @@
+package dataaccess;
+
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+
+/**
+ * Applies a listing request's filters to games held in memory
+ */
+final class GameFilter {
+    private GameFilter() {
+    }
+
+    /**
+     * @param over whether the game is finished
+     * @return True if the game comes after the request's cursor and passes each filter it sets
+     */
+    static boolean matches(ListGamesRequest request, ListGameData game, boolean over) {
+        if (request.cursor() != null && game.gameID() <= request.cursor()) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(request.openSeats())
+                && game.whiteUsername() != null && game.blackUsername() != null) {
+            return false;
+        }
+        if (request.player() != null
+                && !request.player().equals(game.whiteUsername()) && !request.player().equals(game.blackUsername())) {
+            return false;
+        }
+        return request.finished() == null || request.finished() == over;
+    }
+}
@@ -3,48 +3,46 @@ package dataaccess;
 import model.AuthData;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps auth tokens in memory, indexed by token
+ */
 public class MemoryAuthDAO implements AuthDAO{
-    private Collection<AuthData> authTable = new ArrayList<>();
+    private final ConcurrentHashMap<String, AuthData> authTable = new ConcurrentHashMap<>();
 
     @Override
     public void createAuth(AuthData authData) throws DataAccessException {
-        if (authTable.contains(authData)) {
+        if (authData.authToken() == null) {
+            throw new DataAccessException("Error: AuthToken required");
+        }
+        if (authTable.putIfAbsent(authData.authToken(), authData) != null) {
             throw new DataAccessException("Error: AuthData already exists");
         }
-        authTable.add(authData);
     }
 
     @Override
     public AuthData getAuth(String authToken) {
-        for (AuthData authData : authTable) {
-            if (Objects.equals(authToken, authData.authToken())) {
-                return authData;
-            }
-        }
-        return null;
+        return authToken == null ? null : authTable.get(authToken);
     }
 
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
-        for (AuthData authData : authTable) {
-            if (Objects.equals(authToken, authData.authToken())) {
-                authTable.remove(authData);
-                return;
-            }
+        if (authToken == null || authTable.remove(authToken) == null) {
+            throw new DataAccessException("Error: AuthToken not found");
         }
-        throw new DataAccessException("Error: AuthToken not found");
     }
 
     @Override
     public void clear() {
-        authTable = new ArrayList<>();
+        authTable.clear();
     }
 
-    public Collection<AuthData> getAuthTable() {
-        return authTable;
+    /**
+     * @return A snapshot of every auth token
+     */
+    public List<AuthData> getAuthTable() {
+        return new ArrayList<>(authTable.values());
     }
 }
@@ -4,68 +4,263 @@ import chess.ChessGame;
 import model.GameData;
 import serviceobjects.CreateGameResult;
 import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Keeps games in memory, indexed by ID and by name
+ * <p>
+ * Lookups and board writes never lock. Changes to a game's name or players are made one
+ * at a time, so the listing built between them is a consistent snapshot that can be
+ * handed out until the next such change.
+ */
 public class MemoryGameDAO implements GameDAO{
-    private Collection<GameData> gameTable = new ArrayList<>();
-    private int nextGameID = 1;
+    private final ConcurrentHashMap<Integer, GameData> gameTable = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> gameIDsByName = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGameID = new AtomicInteger(1);
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    // Every game's metadata, or null once a game is created, joined or left
+    private volatile List<ListGameData> listing = null;
 
     @Override
     public CreateGameResult createGame(String gameName) throws DataAccessException {
-        for (GameData game : gameTable) {
-            if (Objects.equals(gameName, game.gameName())) {
-                throw new DataAccessException("Error: Game already exists");
+        return createGame(gameName, new ChessGame());
+    }
+
+    @Override
+    public synchronized CreateGameResult createGame(String gameName, ChessGame game) throws DataAccessException {
+        if (gameName == null) {
+            throw new DataAccessException("Error: Game name required");
+        }
+        if (gameIDsByName.containsKey(gameName)) {
+            throw new DataAccessException("Error: Game already exists");
+        }
+        int gameID = nextGameID.getAndIncrement();
+        gameTable.put(gameID, new GameData(gameID, null, null, gameName, game));
+        gameIDsByName.put(gameName, gameID);
+        listing = null;
+        catalogVersion.incrementAndGet();
+
+        return new CreateGameResult(gameID);
+    }
+
+    @Override
+    public GameData getGame(int gameID) {
+        return gameTable.get(gameID);
+    }
+
+    /**
+     * @return The ID of the game with the given name, or null if there is none
+     */
+    public Integer getGameID(String gameName) {
+        return gameName == null ? null : gameIDsByName.get(gameName);
+    }
+
+    @Override
+    public ListGameData getGameMetadata(int gameID) {
+        GameData game = getGame(gameID);
+        if (game == null) {
+            return null;
+        }
+        return new ListGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+    }
+
+    /**
+     * @return An unmodifiable snapshot of every game, in the order they were created
+     */
+    @Override
+    public Collection<ListGameData> listGames() {
+        List<ListGameData> current = listing;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (listing == null) {
+                var result = new ArrayList<ListGameData>();
+                for (GameData game : gameTable.values()) {
+                    result.add(new ListGameData(
+                            game.gameID(),
+                            game.whiteUsername(),
+                            game.blackUsername(),
+                            game.gameName()
+                        )
+                    );
+                }
+                result.sort(Comparator.comparingInt(ListGameData::gameID));
+                listing = List.copyOf(result);
             }
+            return listing;
         }
-        gameTable.add(new GameData(nextGameID, null, null, gameName, new ChessGame()));
+    }
 
-        CreateGameResult result = new CreateGameResult(nextGameID);
-        nextGameID++;
+    /**
+     * Finds the cursor in the current listing, then reads forward from it
+     */
+    @Override
+    public List<ListGameData> listGames(ListGamesRequest request, int limit) {
+        List<ListGameData> games = (List<ListGameData>) listGames();
+        int start = 0;
+        if (request.cursor() != null) {
+            int low = 0;
+            int high = games.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (games.get(middle).gameID() <= request.cursor()) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            start = low;
+        }
+
+        var result = new ArrayList<ListGameData>();
+        for (int i = start; i < games.size() && result.size() < limit; i++) {
+            ListGameData game = games.get(i);
+            GameData stored = gameTable.get(game.gameID());
+            if (stored != null && GameFilter.matches(request, game, stored.game().isOver())) {
+                result.add(game);
+            }
+        }
         return result;
     }
 
     @Override
-    public GameData getGame(int gameID) {
-        for (GameData game : gameTable) {
-            if (gameID == game.gameID()) {
+    public synchronized UpdateResult updateGame(GameData newGameData) throws DataAccessException {
+        GameData oldGameData = gameTable.get(newGameData.gameID());
+        if (oldGameData == null) {
+            throw new DataAccessException("Error: Corresponding game not found");
+        }
+
+        AtomicReference<UpdateResult> result = new AtomicReference<>();
+        // Board writes are not synchronized, so the version is checked atomically with the game's entry
+        gameTable.computeIfPresent(newGameData.gameID(), (gameID, game) -> {
+            if (game.version() != newGameData.version()) {
+                result.set(UpdateResult.conflict(game.version()));
                 return game;
             }
+            result.set(UpdateResult.updated(game.version() + 1));
+            return new GameData(newGameData.gameID(), newGameData.whiteUsername(), newGameData.blackUsername(),
+                    newGameData.gameName(), newGameData.game(), game.version() + 1);
+        });
+        if (result.get().isConflict()) {
+            return result.get();
+        }
+
+        if (!Objects.equals(oldGameData.gameName(), newGameData.gameName())) {
+            gameIDsByName.remove(oldGameData.gameName(), oldGameData.gameID());
+            if (newGameData.gameName() != null) {
+                gameIDsByName.put(newGameData.gameName(), newGameData.gameID());
+            }
         }
-        return null;
+        listing = null;
+        catalogVersion.incrementAndGet();
+        return result.get();
     }
 
     @Override
-    public Collection<ListGameData> listGames() {
-        var result = new ArrayList<ListGameData>();
-        for (GameData game : gameTable) {
-            result.add(new ListGameData(
+    public synchronized boolean claimSeat(int gameID, ChessGame.TeamColor color, String username) {
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        // Board writes are not synchronized, so the seat is set atomically with the game's entry
+        gameTable.computeIfPresent(gameID, (id, game) -> {
+            if (seatHolder(game, color) != null) {
+                return game;
+            }
+            claimed.set(true);
+            return withSeat(game, color, username);
+        });
+        if (claimed.get()) {
+            listing = null;
+            catalogVersion.incrementAndGet();
+        }
+        return claimed.get();
+    }
+
+    @Override
+    public synchronized boolean releaseSeat(int gameID, ChessGame.TeamColor color, String username) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        gameTable.computeIfPresent(gameID, (id, game) -> {
+            if (!Objects.equals(username, seatHolder(game, color))) {
+                return game;
+            }
+            released.set(true);
+            return withSeat(game, color, null);
+        });
+        if (released.get()) {
+            listing = null;
+            catalogVersion.incrementAndGet();
+        }
+        return released.get();
+    }
+
+    private static String seatHolder(GameData game, ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? game.whiteUsername() : game.blackUsername();
+    }
+
+    private static GameData withSeat(GameData game, ChessGame.TeamColor color, String username) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game(),
+                    game.version() + 1);
+        }
+        return new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game(),
+                game.version() + 1);
+    }
+
+    @Override
+    public void updateGameStates(Map<Integer, ChessGame> games) throws DataAccessException {
+        boolean anyOver = false;
+        for (Map.Entry<Integer, ChessGame> entry : games.entrySet()) {
+            anyOver |= entry.getValue().isOver();
+            GameData updated = gameTable.computeIfPresent(entry.getKey(), (gameID, game) -> new GameData(
                     game.gameID(),
                     game.whiteUsername(),
                     game.blackUsername(),
-                    game.gameName()
-                )
-            );
+                    game.gameName(),
+                    entry.getValue(),
+                    game.version() + 1));
+            if (updated == null) {
+                throw new DataAccessException("Error: Corresponding game not found");
+            }
+        }
+        // Only a game finishing changes what is listed
+        if (anyOver) {
+            catalogVersion.incrementAndGet();
         }
-        return result;
     }
 
     @Override
-    public void updateGame(GameData newGameData) throws DataAccessException {
-        if (!gameTable.remove(getGame(newGameData.gameID()))) {
-            throw new DataAccessException("Error: Corresponding game not found");
-        }
-        gameTable.add(newGameData);
+    public synchronized void clear() {
+        gameTable.clear();
+        gameIDsByName.clear();
+        nextGameID.set(1);
+        listing = null;
+        catalogVersion.incrementAndGet();
     }
 
     @Override
-    public void clear() {
-        gameTable = new ArrayList<>();
+    public long getCatalogVersion() {
+        return catalogVersion.get();
     }
 
-    public Collection<GameData> getGameTable() {
-        return gameTable;
+    /**
+     * @return A snapshot of every game, in the order they were created
+     */
+    public List<GameData> getGameTable() {
+        var result = new ArrayList<>(gameTable.values());
+        result.sort(Comparator.comparingInt(GameData::gameID));
+        return result;
     }
 }
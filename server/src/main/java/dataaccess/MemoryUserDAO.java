@@ -3,37 +3,48 @@ package dataaccess;
 import model.UserData;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps users in memory, indexed by username
+ */
 public class MemoryUserDAO implements UserDAO{
-    private Collection<UserData> userTable = new ArrayList<>();
+    private final ConcurrentHashMap<String, UserData> userTable = new ConcurrentHashMap<>();
 
     @Override
     public void createUser(UserData user) throws DataAccessException {
-        if (userTable.contains(user)) {
+        if (user.username() == null) {
+            throw new DataAccessException("Error: Username required");
+        }
+        if (userTable.putIfAbsent(user.username(), user) != null) {
             throw new DataAccessException("Error: User already exists");
         }
-        userTable.add(user);
     }
 
     @Override
     public UserData getUser(String username) {
-        for (UserData user : userTable) {
-            if (Objects.equals(username, user.username())) {
-                return user;
-            }
+        return username == null ? null : userTable.get(username);
+    }
+
+    @Override
+    public boolean updatePassword(String username, String hashedPassword) {
+        if (username == null) {
+            return false;
         }
-        return null;
+        return userTable.computeIfPresent(username,
+                (name, user) -> new UserData(user.username(), hashedPassword, user.email())) != null;
     }
 
     @Override
     public void clear() {
-        userTable = new ArrayList<>();
+        userTable.clear();
     }
 
-    public Collection<UserData> getUserTable() {
-        return userTable;
+    /**
+     * @return A snapshot of every user
+     */
+    public List<UserData> getUserTable() {
+        return new ArrayList<>(userTable.values());
     }
 }
@@ -2,17 +2,24 @@ package dataaccess;
 
 import chess.ChessGame;
 import com.google.gson.Gson;
+import metrics.GameWriteEvent;
 import model.GameData;
 import serviceobjects.CreateGameResult;
 import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SQLGameDAO implements GameDAO{
+    private final AtomicLong catalogVersion = new AtomicLong();
 
     String[] createStatements = {
             """
@@ -22,27 +29,82 @@ public class SQLGameDAO implements GameDAO{
                 `blackUsername` varchar(256),
                 `gameName` varchar(256) NOT NULL UNIQUE,
                 `game` TEXT,
+                `version` int NOT NULL DEFAULT 0,
+                `finished` boolean NOT NULL DEFAULT FALSE,
                 PRIMARY KEY (`gameID`),
-                INDEX(gameName)
+                INDEX(gameName),
+                INDEX whiteGames (whiteUsername),
+                INDEX blackGames (blackUsername),
+                INDEX finishedGames (finished)
             )
             """
     };
 
     public SQLGameDAO() throws DataAccessException {
         DatabaseManager.configureDatabase(createStatements);
+        migrate();
+    }
+
+    /**
+     * Brings a game table created by an earlier version of the server up to date
+     */
+    private void migrate() throws DataAccessException {
+        if (!schemaHas("COLUMNS", "COLUMN_NAME", "version")) {
+            DatabaseManager.executeUpdate("ALTER TABLE game ADD COLUMN `version` int NOT NULL DEFAULT 0");
+        }
+        if (!schemaHas("COLUMNS", "COLUMN_NAME", "finished")) {
+            DatabaseManager.executeUpdate("ALTER TABLE game ADD COLUMN `finished` boolean NOT NULL DEFAULT FALSE");
+            DatabaseManager.executeUpdate(
+                    "UPDATE game SET finished=TRUE WHERE JSON_EXTRACT(game, '$.isOver')=CAST('true' AS JSON)");
+        }
+        addIndex("whiteGames", "whiteUsername");
+        addIndex("blackGames", "blackUsername");
+        addIndex("finishedGames", "finished");
+    }
+
+    private void addIndex(String index, String column) throws DataAccessException {
+        if (!schemaHas("STATISTICS", "INDEX_NAME", index)) {
+            DatabaseManager.executeUpdate("CREATE INDEX " + index + " ON game (" + column + ")");
+        }
+    }
+
+    /**
+     * @param view the information_schema view to look in
+     * @return True if the view has a row for the game table with the given name
+     */
+    private boolean schemaHas(String view, String nameColumn, String name) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            var statement = "SELECT COUNT(*) FROM information_schema." + view +
+                    " WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME='game' AND " + nameColumn + "=?";
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() && rs.getInt(1) > 0;
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(String.format("Error: Unable to read data: %s", e.getMessage()), e);
+        }
     }
 
     @Override
     public CreateGameResult createGame(String gameName) throws DataAccessException {
+        return createGame(gameName, new ChessGame());
+    }
+
+    @Override
+    public CreateGameResult createGame(String gameName, ChessGame game) throws DataAccessException {
         var statement = "INSERT INTO game (gameName, game) VALUES (?, ?)";
-        int gameID = DatabaseManager.executeUpdate(statement, gameName, new ChessGame());
+        int gameID = DatabaseManager.executeInsert(statement, gameName, game);
+        catalogVersion.incrementAndGet();
         return new CreateGameResult(gameID);
     }
 
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
         try (Connection conn = DatabaseManager.getConnection()) {
-            var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, game FROM game WHERE gameID=?";
+            var statement =
+                    "SELECT gameID, whiteUsername, blackUsername, gameName, game, version FROM game WHERE gameID=?";
             try (PreparedStatement ps = conn.prepareStatement(statement)) {
                 ps.setInt(1, gameID);
                 try (ResultSet rs = ps.executeQuery()) {
@@ -52,7 +114,31 @@ public class SQLGameDAO implements GameDAO{
                                 rs.getString("whiteUsername"),
                                 rs.getString("blackUsername"),
                                 rs.getString("gameName"),
-                                new Gson().fromJson(rs.getString("game"), ChessGame.class)
+                                new Gson().fromJson(rs.getString("game"), ChessGame.class),
+                                rs.getInt("version")
+                        );
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new DataAccessException(String.format("Error: Unable to read data: %s", e.getMessage()), e);
+        }
+        return null;
+    }
+
+    @Override
+    public ListGameData getGameMetadata(int gameID) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            var statement = "SELECT gameID, whiteUsername, blackUsername, gameName FROM game WHERE gameID=?";
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setInt(1, gameID);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return new ListGameData(
+                                rs.getInt("gameID"),
+                                rs.getString("whiteUsername"),
+                                rs.getString("blackUsername"),
+                                rs.getString("gameName")
                         );
                     }
                 }
@@ -88,33 +174,205 @@ public class SQLGameDAO implements GameDAO{
 
     }
 
+    /**
+     * Seeks to the cursor on the primary key rather than skipping an offset, so later pages
+     * cost no more than the first. The player and finished filters are backed by indexes
+     * on their columns.
+     */
     @Override
-    public void updateGame(GameData newGameData) throws DataAccessException {
-        var statement = "DELETE FROM game WHERE gameID=?";
-        DatabaseManager.executeUpdate(statement, newGameData.gameID());
-
-        statement =
-                "INSERT INTO game (gameID, whiteUsername, blackUsername, gameName, game) " +
-                "VALUES (?, ?, ?, ?, ?)";
-        DatabaseManager.executeUpdate(statement,
-                newGameData.gameID(),
+    public List<ListGameData> listGames(ListGamesRequest request, int limit) throws DataAccessException {
+        var statement = new StringBuilder(
+                "SELECT gameID, whiteUsername, blackUsername, gameName FROM game WHERE gameID>?");
+        var params = new ArrayList<Object>();
+        params.add(request.cursor() == null ? 0 : request.cursor());
+        if (Boolean.TRUE.equals(request.openSeats())) {
+            statement.append(" AND (whiteUsername IS NULL OR blackUsername IS NULL)");
+        }
+        if (request.player() != null) {
+            statement.append(" AND (whiteUsername=? OR blackUsername=?)");
+            params.add(request.player());
+            params.add(request.player());
+        }
+        if (request.finished() != null) {
+            statement.append(" AND finished=?");
+            params.add(request.finished());
+        }
+        statement.append(" ORDER BY gameID LIMIT ?");
+        params.add(limit);
+
+        var result = new ArrayList<ListGameData>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(statement.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(new ListGameData(
+                                rs.getInt("gameID"),
+                                rs.getString("whiteUsername"),
+                                rs.getString("blackUsername"),
+                                rs.getString("gameName")
+                                )
+                        );
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new DataAccessException(String.format("Error: Unable to read data: %s", e.getMessage()), e);
+        }
+        return result;
+    }
+
+    @Override
+    public UpdateResult updateGame(GameData newGameData) throws DataAccessException {
+        GameWriteEvent writeEvent = new GameWriteEvent();
+        writeEvent.begin();
+
+        var statement =
+                "UPDATE game SET whiteUsername=?, blackUsername=?, gameName=?, game=?, finished=?, " +
+                "version=version+1 WHERE gameID=? AND version=?";
+        int updated = DatabaseManager.executeUpdate(statement,
                 newGameData.whiteUsername(),
                 newGameData.blackUsername(),
                 newGameData.gameName(),
-                newGameData.game()
+                newGameData.game(),
+                newGameData.game() != null && newGameData.game().isOver(),
+                newGameData.gameID(),
+                newGameData.version()
         );
+
+        UpdateResult result;
+        if (updated == 1) {
+            catalogVersion.incrementAndGet();
+            result = UpdateResult.updated(newGameData.version() + 1);
+        }
+        else {
+            // Either the game was written since it was read, or it does not exist
+            Integer currentVersion = getVersion(newGameData.gameID());
+            if (currentVersion == null) {
+                throw new DataAccessException("Error: Corresponding game not found");
+            }
+            result = UpdateResult.conflict(currentVersion);
+        }
+
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.gameID = newGameData.gameID();
+            writeEvent.payloadSize = new Gson().toJson(newGameData.game()).length();
+            writeEvent.games = 1;
+            writeEvent.commit();
+        }
+        return result;
+    }
+
+    /**
+     * @return The game's version, or null if there is no such game
+     */
+    private Integer getVersion(int gameID) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            var statement = "SELECT version FROM game WHERE gameID=?";
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setInt(1, gameID);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt("version");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(String.format("Error: Unable to read data: %s", e.getMessage()), e);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean claimSeat(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException {
+        var column = seatColumn(color);
+        var statement = "UPDATE game SET " + column + "=?, version=version+1 WHERE gameID=? AND " + column + " IS NULL";
+        return countIfWritten(DatabaseManager.executeUpdate(statement, username, gameID) == 1);
+    }
+
+    @Override
+    public boolean releaseSeat(int gameID, ChessGame.TeamColor color, String username) throws DataAccessException {
+        var column = seatColumn(color);
+        var statement = "UPDATE game SET " + column + "=NULL, version=version+1 WHERE gameID=? AND " + column + "=?";
+        return countIfWritten(DatabaseManager.executeUpdate(statement, gameID, username) == 1);
+    }
+
+    private boolean countIfWritten(boolean written) {
+        if (written) {
+            catalogVersion.incrementAndGet();
+        }
+        return written;
+    }
+
+    private static String seatColumn(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? "whiteUsername" : "blackUsername";
+    }
+
+    @Override
+    public void updateGameStates(Map<Integer, ChessGame> games) throws DataAccessException {
+        GameWriteEvent writeEvent = new GameWriteEvent();
+        writeEvent.begin();
+        int payloadSize = 0;
+        boolean anyOver = false;
+
+        var statement = "UPDATE game SET game=?, finished=?, version=version+1 WHERE gameID=?";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // Write every game in a single transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(statement)) {
+                Gson serializer = new Gson();
+                for (Map.Entry<Integer, ChessGame> entry : games.entrySet()) {
+                    String json = serializer.toJson(entry.getValue());
+                    payloadSize += json.length();
+                    ps.setString(1, json);
+                    ps.setBoolean(2, entry.getValue().isOver());
+                    anyOver |= entry.getValue().isOver();
+                    ps.setInt(3, entry.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                // Only a game finishing changes what is listed
+                if (anyOver) {
+                    catalogVersion.incrementAndGet();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(String.format(
+                    "Error: unable to update database: %s, %s", statement, e.getMessage()), e);
+        }
+
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.gameID = games.size() == 1 ? games.keySet().iterator().next() : 0;
+            writeEvent.payloadSize = payloadSize;
+            writeEvent.games = games.size();
+            writeEvent.commit();
+        }
     }
 
     @Override
     public void clear() throws DataAccessException {
         var statement = "TRUNCATE game";
         DatabaseManager.executeUpdate(statement);
+        catalogVersion.incrementAndGet();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
     }
 
     public Collection<GameData> getGameTable() throws DataAccessException {
         var result = new ArrayList<GameData>();
         try (Connection conn = DatabaseManager.getConnection()) {
-            var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, game FROM game";
+            var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, game, version FROM game";
             try (PreparedStatement ps = conn.prepareStatement(statement)) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -123,7 +381,8 @@ public class SQLGameDAO implements GameDAO{
                                         rs.getString("whiteUsername"),
                                         rs.getString("blackUsername"),
                                         rs.getString("gameName"),
-                                        new Gson().fromJson(rs.getString("game"), ChessGame.class)
+                                        new Gson().fromJson(rs.getString("game"), ChessGame.class),
+                                        rs.getInt("version")
                                 )
                         );
                     }
@@ -58,6 +58,12 @@ public class SQLUserDAO implements UserDAO{
         return null;
     }
 
+    @Override
+    public boolean updatePassword(String username, String hashedPassword) throws DataAccessException {
+        var statement = "UPDATE user SET password=? WHERE username=?";
+        return DatabaseManager.executeUpdate(statement, hashedPassword, username) > 0;
+    }
+
     @Override
     public void clear() throws DataAccessException {
         var statement = "TRUNCATE user";
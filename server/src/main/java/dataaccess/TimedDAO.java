@@ -0,0 +1,58 @@
+package dataaccess;
+
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps a DAO so that the time taken by each of its methods is recorded in a histogram.
+ * One wrapper serves every DAO interface, so new DAO methods are timed without changes here.
+ */
+public class TimedDAO implements InvocationHandler {
+    private static final String METRIC = "chess_dao_duration_seconds";
+
+    private final Object dao;
+    private final Map<Method, Histogram> histograms = new HashMap<>();
+
+    private TimedDAO(Class<?> type, Object dao, String name) {
+        this.dao = dao;
+        for (Method method : type.getMethods()) {
+            histograms.put(method, MetricsRegistry.DEFAULT.histogram(METRIC,
+                    "Time spent in each DAO method", "dao", name, "method", method.getName()));
+        }
+    }
+
+    /**
+     * @param type the DAO interface to time
+     * @param dao the DAO doing the work
+     * @param name the DAO's label in the recorded metrics
+     * @return A DAO recording the time spent in each call to the given one
+     */
+    public static <T> T wrap(Class<T> type, T dao, String name) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(), new Class<?>[]{type}, new TimedDAO(type, dao, name)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Histogram histogram = histograms.get(method);
+        long start = System.nanoTime();
+        try {
+            return method.invoke(dao, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        finally {
+            if (histogram != null) {
+                histogram.recordSince(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package dataaccess;
+
+/**
+ * The outcome of a write made conditional on a game's version. A write is refused if
+ * another write reached the game after the caller read it; the caller should read the
+ * game again and retry.
+ *
+ * @param updated whether the write was made
+ * @param version the game's version after the write, or its current version if the write was refused
+ */
+public record UpdateResult(boolean updated, int version) {
+    public static UpdateResult updated(int version) {
+        return new UpdateResult(true, version);
+    }
+
+    public static UpdateResult conflict(int currentVersion) {
+        return new UpdateResult(false, currentVersion);
+    }
+
+    public boolean isConflict() {
+        return !updated;
+    }
+}
@@ -5,5 +5,12 @@ import model.UserData;
 public interface UserDAO {
     public void createUser(UserData user) throws DataAccessException;
     public UserData getUser(String username) throws DataAccessException;
+
+    /**
+     * Replaces a user's stored password hash, such as after rehashing it at a new cost
+     *
+     * @return False if there is no such user
+     */
+    public boolean updatePassword(String username, String hashedPassword) throws DataAccessException;
     public void clear() throws DataAccessException;
 }
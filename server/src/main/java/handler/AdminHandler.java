@@ -3,16 +3,36 @@ package handler;
 import dataaccess.DataAccessException;
 import io.javalin.http.Context;
 import service.AdminService;
+import service.RecordingService;
+
+import java.io.IOException;
 
 public class AdminHandler {
     private final AdminService adminService;
+    private final RecordingService recordingService;
 
-    public AdminHandler(AdminService adminService) {
+    public AdminHandler(AdminService adminService, RecordingService recordingService) {
         this.adminService = adminService;
+        this.recordingService = recordingService;
     }
 
     public void clear(Context ctx) throws DataAccessException {
         adminService.clear();
         ctx.status(200);
     }
+
+    public void startRecording(Context ctx) {
+        String adminToken = ctx.header("Authorization");
+        recordingService.startRecording(ctx.queryParam("settings"), adminToken);
+        ctx.status(200);
+    }
+
+    public void stopRecording(Context ctx) throws IOException {
+        String adminToken = ctx.header("Authorization");
+        byte[] recording = recordingService.stopRecording(adminToken);
+        ctx.contentType("application/octet-stream");
+        ctx.header("Content-Disposition", "attachment; filename=\"chess.jfr\"");
+        ctx.result(recording);
+        ctx.status(200);
+    }
 }
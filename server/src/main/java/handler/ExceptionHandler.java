@@ -14,6 +14,8 @@ public class ExceptionHandler {
             case BadRequestResponse ignored     -> ctx.status(400).result("Error: bad request");
             case UnauthorizedResponse ignored   -> ctx.status(401).result("Error: unauthorized");
             case ForbiddenResponse ignored      -> ctx.status(403).result("Error: already taken");
+            case ConflictResponse ignored       -> ctx.status(409).result("Error: conflict");
+            case ServiceUnavailableResponse ignored -> ctx.status(503).result("Error: server busy");
             default                             -> ctx.status(500).result("Error: unknown");
         }
         ctx.result(toJson(ex));
@@ -4,26 +4,70 @@ import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
-import io.javalin.http.ForbiddenResponse;
 import io.javalin.http.UnauthorizedResponse;
 import service.GameService;
 import serviceobjects.*;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
 public class GameHandler {
+    public static final int MAX_CACHED_LISTINGS = 256;
+
     private final GameService gameService;
     private final Gson serializer = new Gson();
 
+    // Names this run of the server, so ETags handed out before a restart never match
+    private final String epoch = Long.toHexString(new Random().nextLong());
+
+    // The last listing sent for each request, with the catalog version it was read at,
+    // evicting the least recently requested listing once full
+    private final Map<ListGamesRequest, CachedListing> listings = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ListGamesRequest, CachedListing> eldest) {
+                    return size() > MAX_CACHED_LISTINGS;
+                }
+            });
+
+    private record CachedListing(long catalogVersion, String etag, String json) {
+    }
+
     public GameHandler(GameService gameService) {
         this.gameService = gameService;
     }
 
+    /**
+     * Answers with the listing cached for the same request while no game has changed,
+     * or with 304 Not Modified if the client already holds it
+     */
     public void listGames(Context ctx)
-            throws UnauthorizedResponse, DataAccessException {
+            throws UnauthorizedResponse, BadRequestResponse, DataAccessException {
         String authToken = ctx.header("Authorization");
         ListGamesRequest listGamesRequest = serializer.fromJson(ctx.body(), ListGamesRequest.class);
+        if (listGamesRequest == null) {
+            listGamesRequest = new ListGamesRequest();
+        }
 
-        ListGamesResult listGamesResult = gameService.listGames(listGamesRequest, authToken);
-        ctx.result(serializer.toJson(listGamesResult));
+        // Read before the games, so a change made while they are read is seen by the next request
+        long catalogVersion = gameService.getCatalogVersion(authToken);
+        CachedListing listing = listings.get(listGamesRequest);
+        if (listing == null || listing.catalogVersion() != catalogVersion) {
+            ListGamesResult listGamesResult = gameService.listGames(listGamesRequest, authToken);
+            String etag = String.format("\"%s-%d-%x\"", epoch, catalogVersion, listGamesRequest.hashCode());
+            listing = new CachedListing(catalogVersion, etag, serializer.toJson(listGamesResult));
+            listings.put(listGamesRequest, listing);
+        }
+
+        ctx.header("ETag", listing.etag());
+        if (listing.etag().equals(ctx.header("If-None-Match"))) {
+            ctx.status(304);
+            return;
+        }
+        ctx.result(listing.json());
         ctx.status(200);
     }
 
@@ -37,12 +81,15 @@ public class GameHandler {
         ctx.status(200);
     }
 
-    public void joinGame(Context ctx)
-            throws UnauthorizedResponse, ForbiddenResponse, BadRequestResponse, DataAccessException {
+    /**
+     * @return A future failing with UnauthorizedResponse, ForbiddenResponse,
+     * BadRequestResponse or DataAccessException
+     */
+    public CompletableFuture<Void> joinGame(Context ctx) {
         String authToken = ctx.header("Authorization");
         JoinGameRequest joinGameRequest = serializer.fromJson(ctx.body(), JoinGameRequest.class);
 
-        gameService.joinGame(joinGameRequest, authToken);
-        ctx.status(200);
+        return gameService.joinGameAsync(joinGameRequest, authToken)
+                .thenRun(() -> ctx.status(200));
     }
 }
@@ -0,0 +1,63 @@
+package handler;
+
+import com.google.gson.Gson;
+import dataaccess.AsyncAuthDAO;
+import io.javalin.websocket.WsCloseContext;
+import io.javalin.websocket.WsCloseHandler;
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsConnectHandler;
+import server.LobbyFeed;
+import websocket.messages.ErrorMessage;
+
+/**
+ * Subscribes websocket sessions to the lobby feed
+ * <p>
+ * The session authenticates with the Authorization header of its upgrade request. A
+ * session reconnecting after a drop passes the {@code epoch} and {@code since} query
+ * parameters, from its snapshot and the last event it saw, to be sent only what it missed.
+ */
+public class LobbyHandler implements WsConnectHandler, WsCloseHandler {
+    private final AsyncAuthDAO authDAO;
+    private final LobbyFeed lobbyFeed;
+
+    public LobbyHandler(AsyncAuthDAO authDAO, LobbyFeed lobbyFeed) {
+        this.authDAO = authDAO;
+        this.lobbyFeed = lobbyFeed;
+    }
+
+    @Override
+    public void handleConnect(WsConnectContext ctx) {
+        ctx.enableAutomaticPings();
+        String epoch = ctx.queryParam("epoch");
+        Long since = parseSequence(ctx.queryParam("since"));
+
+        // A failed lookup is answered the same way as an unknown auth token
+        authDAO.getAuth(ctx.header("Authorization"))
+                .exceptionally(failure -> null)
+                .thenAccept(authData -> {
+                    if (authData == null) {
+                        ctx.send(new Gson().toJson(new ErrorMessage("unauthorized")));
+                        ctx.closeSession();
+                        return;
+                    }
+                    lobbyFeed.subscribe(ctx.session, epoch, since);
+                });
+    }
+
+    @Override
+    public void handleClose(WsCloseContext ctx) {
+        lobbyFeed.unsubscribe(ctx.session);
+    }
+
+    private static Long parseSequence(String since) {
+        if (since == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(since);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package handler;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public class MetricsHandler {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+
+    public MetricsHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void metrics(Context ctx) {
+        ctx.contentType(CONTENT_TYPE);
+        ctx.result(registry.scrape());
+        ctx.status(200);
+    }
+
+    /**
+     * Wraps a route's handler so the time taken by each request is recorded,
+     * whether or not the handler throws
+     *
+     * @param method the route's HTTP method, used as a label
+     * @param path the route's path, used as a label
+     * @param handler the handler to time
+     * @return A handler recording the time spent in the given one
+     */
+    public Handler timed(String method, String path, Handler handler) {
+        Histogram histogram = registry.histogram("chess_http_request_duration_seconds",
+                "Time spent handling each HTTP route", "method", method, "route", path);
+        return ctx -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(ctx);
+            }
+            finally {
+                histogram.recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Wraps a route's asynchronous handler so the time until its future completes is
+     * recorded. The request thread is released as soon as the handler returns.
+     *
+     * @param method the route's HTTP method, used as a label
+     * @param path the route's path, used as a label
+     * @param handler the handler to time, returning a future that completes once the response is set
+     * @return A handler recording the time spent in the given one
+     */
+    public Handler timedAsync(String method, String path, Function<Context, CompletableFuture<?>> handler) {
+        Histogram histogram = registry.histogram("chess_http_request_duration_seconds",
+                "Time spent handling each HTTP route", "method", method, "route", path);
+        return ctx -> {
+            long start = System.nanoTime();
+            ctx.future(() -> handler.apply(ctx).whenComplete((result, failure) -> histogram.recordSince(start)));
+        };
+    }
+}
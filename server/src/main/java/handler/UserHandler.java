@@ -3,11 +3,11 @@ package handler;
 import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import io.javalin.http.Context;
-import io.javalin.http.ForbiddenResponse;
-import io.javalin.http.UnauthorizedResponse;
 import service.UserService;
 import serviceobjects.*;
 
+import java.util.concurrent.CompletableFuture;
+
 public class UserHandler {
     private final UserService userService;
     private final Gson serializer = new Gson();
@@ -16,22 +16,30 @@ public class UserHandler {
         this.userService = userService;
     }
 
-    public void register(Context ctx)
-            throws ForbiddenResponse, DataAccessException {
+    /**
+     * @return A future failing with ForbiddenResponse, BadRequestResponse,
+     * ServiceUnavailableResponse or DataAccessException
+     */
+    public CompletableFuture<Void> register(Context ctx) {
         RegisterRequest registerRequest = serializer.fromJson(ctx.body(), RegisterRequest.class);
 
-        RegisterResult registerResult = userService.register(registerRequest);
-        ctx.result(serializer.toJson(registerResult));
-        ctx.status(200);
+        return userService.registerAsync(registerRequest).thenAccept(registerResult -> {
+            ctx.result(serializer.toJson(registerResult));
+            ctx.status(200);
+        });
     }
 
-    public void login(Context ctx)
-            throws UnauthorizedResponse, DataAccessException {
+    /**
+     * @return A future failing with UnauthorizedResponse, BadRequestResponse,
+     * ServiceUnavailableResponse or DataAccessException
+     */
+    public CompletableFuture<Void> login(Context ctx) {
         LoginRequest loginRequest = serializer.fromJson(ctx.body(), LoginRequest.class);
 
-        LoginResult loginResult = userService.login(loginRequest);
-        ctx.result(serializer.toJson(loginResult));
-        ctx.status(200);
+        return userService.loginAsync(loginRequest).thenAccept(loginResult -> {
+            ctx.result(serializer.toJson(loginResult));
+            ctx.status(200);
+        });
     }
 
     public void logout(Context ctx)
@@ -5,56 +5,144 @@ import chess.ChessMove;
 import chess.InvalidMoveException;
 import com.google.gson.GsonBuilder;
 import dataaccess.DataAccessException;
+import io.javalin.http.Context;
+import io.javalin.websocket.WsBinaryMessageContext;
+import io.javalin.websocket.WsBinaryMessageHandler;
 import io.javalin.websocket.WsCloseContext;
 import io.javalin.websocket.WsCloseHandler;
 import io.javalin.websocket.WsConnectContext;
 import io.javalin.websocket.WsConnectHandler;
 import io.javalin.websocket.WsMessageContext;
 import io.javalin.websocket.WsMessageHandler;
+import metrics.AuthLookupEvent;
+import metrics.CommandParseEvent;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 import org.eclipse.jetty.websocket.api.Session;
+import server.EncodedMessage;
 import server.GameManager;
+import server.GameNotFoundException;
 import server.GameTracker;
+import server.MoveLogException;
+import websocket.BinaryProtocol;
 import websocket.commands.*;
 import websocket.messages.*;
 
 
-import dataaccess.AuthDAO;
-import dataaccess.GameDAO;
+import dataaccess.AsyncAuthDAO;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
+public class WebSocketHandler
+        implements WsConnectHandler, WsMessageHandler, WsBinaryMessageHandler, WsCloseHandler {
 
-    private final GameManager.ConnectionManager connections = new GameManager.ConnectionManager();
+    private static final String SUBPROTOCOL_HEADER = "Sec-WebSocket-Protocol";
+
+    private final GameManager.ConnectionManager connections;
     private final GameManager gameManager;
-    private final AuthDAO authDAO;
+    private final AsyncAuthDAO authDAO;
+    private final Executor commandExecutor;
+
+    // The last command queued for each session, so commands are handled in the order they arrived
+    private final Map<Session, CompletableFuture<Void>> lastCommands = new ConcurrentHashMap<>();
+    private final Map<UserGameCommand.CommandType, Histogram> commandTimes =
+            new EnumMap<>(UserGameCommand.CommandType.class);
 
-    public WebSocketHandler(AuthDAO authDAO, GameDAO gameDAO) {
+    public WebSocketHandler(AsyncAuthDAO authDAO, GameManager gameManager) {
+        this(authDAO, gameManager, newCommandExecutor(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param authDAO looks up the user sending each command. Commands wait on it without
+     *                holding a Jetty thread.
+     * @param commandExecutor where commands run once their user is known, so they never
+     *                        hold the threads the DAOs block on
+     */
+    public WebSocketHandler(AsyncAuthDAO authDAO, GameManager gameManager, Executor commandExecutor) {
         this.authDAO = authDAO;
-        gameManager = new GameManager(gameDAO);
+        this.commandExecutor = commandExecutor;
+        this.gameManager = gameManager;
+        this.connections = gameManager.getConnections();
+        gameManager.getClocks().setFlagListener(this::flagFell);
+        for (UserGameCommand.CommandType commandType : UserGameCommand.CommandType.values()) {
+            commandTimes.put(commandType, MetricsRegistry.DEFAULT.histogram(
+                    "chess_websocket_command_duration_seconds", "Time spent handling each websocket command",
+                    "command", commandType.name()));
+        }
+    }
+
+    /**
+     * Accepts the binary subprotocol during the upgrade if the client offered it. Jetty
+     * answers the upgrade with whichever subprotocol the response names, and with none
+     * if it names none, so a client only uses binary frames once the server agrees to.
+     */
+    public void acceptSubprotocol(Context ctx) {
+        String offered = ctx.header(SUBPROTOCOL_HEADER);
+        if (offered == null) {
+            return;
+        }
+        for (String subprotocol : offered.split(",")) {
+            if (subprotocol.trim().equals(BinaryProtocol.SUBPROTOCOL)) {
+                ctx.header(SUBPROTOCOL_HEADER, BinaryProtocol.SUBPROTOCOL);
+                return;
+            }
+        }
     }
 
     @Override
     public void handleConnect(WsConnectContext ctx) {
         System.out.println("Websocket connected");
         ctx.enableAutomaticPings();
+
+        // JSON text frames remain the default unless the binary subprotocol was negotiated
+        connections.register(ctx.session,
+                BinaryProtocol.SUBPROTOCOL.equals(ctx.session.getUpgradeResponse().getAcceptedSubProtocol()));
     }
 
     @Override
     public void handleMessage(WsMessageContext ctx) {
+        CommandParseEvent parseEvent = new CommandParseEvent();
+        parseEvent.begin();
+        UserGameCommand action = new GsonBuilder()
+                .registerTypeAdapter(UserGameCommand.class, new CommandDeserializer())
+                .create()
+                .fromJson(ctx.message(), UserGameCommand.class);
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.gameID = gameIDOf(action);
+            parseEvent.payloadSize = ctx.message().getBytes(StandardCharsets.UTF_8).length;
+            parseEvent.commit();
+        }
+        enqueue(action, ctx.session);
+    }
+
+    @Override
+    public void handleBinaryMessage(WsBinaryMessageContext ctx) {
         try {
-            UserGameCommand action = new GsonBuilder()
-                    .registerTypeAdapter(UserGameCommand.class, new CommandDeserializer())
-                    .create()
-                    .fromJson(ctx.message(), UserGameCommand.class);
-            switch (action.getCommandType()) {
-                case CONNECT -> connect((StandardGameCommand) action, ctx.session);
-                case LEAVE -> leave((StandardGameCommand) action, ctx.session);
-                case RESIGN -> resign((StandardGameCommand) action, ctx.session);
-                case MAKE_MOVE -> makeMove((MakeMoveCommand)action, ctx.session);
-                case GET_VALID_MOVES -> getValidMoves((GetValidMovesCommand)action, ctx.session);
+            CommandParseEvent parseEvent = new CommandParseEvent();
+            parseEvent.begin();
+            UserGameCommand action = BinaryProtocol.decodeCommand(
+                    ByteBuffer.wrap(ctx.data(), ctx.offset(), ctx.length()));
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.gameID = gameIDOf(action);
+                parseEvent.payloadSize = ctx.length();
+                parseEvent.commit();
             }
+            enqueue(action, ctx.session);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
@@ -62,35 +150,154 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
 
     @Override
     public void handleClose(WsCloseContext ctx) {
+        lastCommands.remove(ctx.session);
+        gameManager.dropSession(ctx.session);
         System.out.println("Websocket closed");
     }
 
-    private void connect(StandardGameCommand action, Session session) throws IOException {
-        connections.add(action.getGameID(), session);
+    /**
+     * Handles a command once every earlier command from the same session has been handled
+     */
+    private void enqueue(UserGameCommand action, Session session) {
+        CompletableFuture<Void> handled = new CompletableFuture<>();
+        CompletableFuture<Void> previous = lastCommands.put(session, handled);
+        CompletableFuture<Void> ready = previous == null ? CompletableFuture.completedFuture(null) : previous;
+        ready.thenCompose(ignored -> dispatch(action, session))
+                .whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        failure.printStackTrace();
+                    }
+                    lastCommands.remove(session, handled);
+                    handled.complete(null);
+                });
+    }
+
+    private CompletableFuture<Void> dispatch(UserGameCommand action, Session session) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> handled;
+        if (action.getCommandType() == UserGameCommand.CommandType.GET_VALID_MOVES) {
+            // Needs no user, so nothing is looked up
+            handled = CompletableFuture.runAsync(
+                    () -> getValidMoves((GetValidMovesCommand) action, session), commandExecutor);
+        }
+        else {
+            // A failed lookup is answered the same way as an unknown auth token. The lookup
+            // completes on a DAO thread, so the command moves to its own executor.
+            handled = authenticate(action)
+                    .exceptionally(failure -> null)
+                    .thenAcceptAsync(username -> {
+                        if (username != null) {
+                            connections.getSessions().identify(session, username);
+                        }
+                        switch (action.getCommandType()) {
+                            case CONNECT -> connect((StandardGameCommand) action, session, username);
+                            case LEAVE -> leave((StandardGameCommand) action, session, username);
+                            case RESIGN -> resign((StandardGameCommand) action, session, username);
+                            case MAKE_MOVE -> makeMove((MakeMoveCommand) action, session, username);
+                            case RESUME -> resume((ResumeCommand) action, session, username);
+                            default -> throw new IllegalStateException(
+                                    "Unexpected command: " + action.getCommandType());
+                        }
+                    }, commandExecutor);
+        }
+        Histogram commandTime = commandTimes.get(action.getCommandType());
+        return handled.whenComplete((ignored, failure) -> commandTime.recordSince(start));
+    }
+
+    /**
+     * Creates an executor for websocket commands, with daemon threads named "ws-command"
+     */
+    public static ExecutorService newCommandExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ws-command-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the command threads, if the handler's executor is one it can shut down
+     */
+    public void shutdown() {
+        if (commandExecutor instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+    }
+
+    private void connect(StandardGameCommand action, Session session, String username) {
+        // The session joins the game's connections only once its snapshot is sent, under the
+        // game's replay lock, so it is sent no broadcast numbered before the snapshot
+        if (username == null) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+            return;
+        }
         try {
-            String username = authDAO.getAuth(action.getAuthToken()).username();
-            gameManager.joinPerson(action.getGameID(), session, username);
+            gameManager.joinPerson(action.getGameID(), session);
+            ChessGame.TeamColor team = gameManager.getTeam(action.getGameID(), username);
             var message = String.format(
                     "%s joined the game as %s",
                     username,
-                    teamToString(gameManager.getTeam(action.getGameID(), username))
+                    teamToString(team)
             );
 
             var notification = new NotificationMessage(message);
             connections.broadcast(action.getGameID(), session, notification);
 
-            LoadGameMessage loadGameMessage =
-                    new LoadGameMessage(gameManager.getGame(action.getGameID()).getBoard());
-            connections.unicast(session, loadGameMessage);
+            connections.sendSnapshot(action.getGameID(), session, team == null,
+                    () -> snapshot(action.getGameID()));
+        }
+        catch (GameNotFoundException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
+        }
+        catch (DataAccessException | NullPointerException e) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+        }
+    }
+
+    /**
+     * Reconnects a session whose connection dropped, without telling the rest of the game
+     */
+    private void resume(ResumeCommand action, Session session, String username) {
+        if (username == null) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+            return;
+        }
+        try {
+            gameManager.joinPerson(action.getGameID(), session);
+            boolean spectator = gameManager.getTeam(action.getGameID(), username) == null;
+            connections.resume(action.getGameID(), session, action.getLastSequence(), spectator,
+                    () -> snapshot(action.getGameID()));
+        }
+        catch (GameNotFoundException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
         }
         catch (DataAccessException | NullPointerException e) {
             connections.unicast(session, new ErrorMessage("unauthorized"));
         }
     }
 
-    private void leave(StandardGameCommand action, Session session) throws IOException {
+    /**
+     * @return The messages that bring a session up to date with a game: its board, then
+     * its clock if the game is timed
+     */
+    private List<EncodedMessage> snapshot(int gameID) throws DataAccessException {
+        List<EncodedMessage> messages = new ArrayList<>();
+        messages.add(gameManager.getBoardSnapshot(gameID));
+        // The clock keeps running between moves, so it is encoded for each session
+        ClockMessage clock = gameManager.getClock(gameID);
+        if (clock != null) {
+            messages.add(EncodedMessage.of(clock));
+        }
+        return messages;
+    }
+
+    private void leave(StandardGameCommand action, Session session, String username) {
+        if (username == null) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+            return;
+        }
         try {
-            String username = authDAO.getAuth(action.getAuthToken()).username();
             var message = String.format(
                     "%s left the game",
                     username
@@ -100,14 +307,20 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             connections.remove(action.getGameID(), session);
             gameManager.leavePerson(action.getGameID(), session, username);
         }
+        catch (GameNotFoundException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
+        }
         catch (DataAccessException | NullPointerException e) {
             connections.unicast(session, new ErrorMessage("unauthorized"));
         }
     }
 
-    private void resign(StandardGameCommand action, Session session) throws IOException {
+    private void resign(StandardGameCommand action, Session session, String username) {
+        if (username == null) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+            return;
+        }
         try {
-            String username = authDAO.getAuth(action.getAuthToken()).username();
             gameManager.resign(action.getGameID(), username);
             var message = String.format("%s resigned from the game",
                     username
@@ -115,6 +328,12 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             var notification = new NotificationMessage(message);
             connections.broadcast(action.getGameID(), null, notification);
         }
+        catch (MoveLogException e) {
+            connections.unicast(session, new ErrorMessage("unable to save resignation"));
+        }
+        catch (GameNotFoundException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
+        }
         catch (DataAccessException | NullPointerException e) {
             connections.unicast(session, new ErrorMessage("unauthorized"));
         }
@@ -123,51 +342,95 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         }
     }
 
-    private void makeMove(MakeMoveCommand action, Session session) throws IOException {
+    private void makeMove(MakeMoveCommand action, Session session, String username) {
+        if (username == null) {
+            connections.unicast(session, new ErrorMessage("unauthorized"));
+            return;
+        }
         try {
-            String username = authDAO.getAuth(action.getAuthToken()).username();
-            gameManager.makeMove(action.getGameID(), session, action.getMove(), username);
-
-            LoadGameMessage loadGameMessage =
-                    new LoadGameMessage(gameManager.getGame(action.getGameID()).getBoard());
-            connections.broadcast(action.getGameID(), null, loadGameMessage);
+            GameTracker.MoveResult result =
+                    gameManager.makeMove(action.getGameID(), session, action.getMove(), username);
 
             var message = String.format("%s made the move: %s",
                     username,
                     action.getMove().toString()
             );
-            var notification = new NotificationMessage(message);
-            connections.broadcast(action.getGameID(), session, notification);
-
-            GameTracker.GameState gameState = gameManager.getGameState(action.getGameID());
-            if (gameState == GameTracker.GameState.NONE) {
-                return;
-            }
-
-            message = String.format(
-                    "%s is in ",
-                    gameManager.getNextPlayer(action.getGameID())
-            );
-            switch (gameState) {
-                case CHECK -> message += "check!";
-                case CHECKMATE -> message += "checkmate!";
-                case STALEMATE -> message += "stalemate!";
-            }
-            notification = new NotificationMessage(message);
-            connections.broadcast(action.getGameID(), null, notification);
+            String stateMessage = switch (result.state()) {
+                case CHECK -> result.nextPlayer() + " is in check!";
+                case CHECKMATE -> result.nextPlayer() + " is in checkmate!";
+                case STALEMATE -> result.nextPlayer() + " is in stalemate!";
+                case NONE -> null;
+            };
+            connections.broadcastMove(action.getGameID(), session, new MoveResultMessage(username, action.getMove(),
+                    result.board(), message, result.state(), stateMessage, result.clock()));
+        }
+        catch (MoveLogException e) {
+            connections.unicast(session, new ErrorMessage("unable to save move"));
+        }
+        catch (GameNotFoundException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
         }
         catch (DataAccessException | NullPointerException e) {
             connections.unicast(session, new ErrorMessage("unauthorized"));
         }
         catch (InvalidMoveException e) {
-            connections.unicast(session, new ErrorMessage("invalid move"));
+            String reason = e.getMessage() == null ? "invalid move" : e.getMessage();
+            connections.unicast(session, new ErrorMessage(reason));
+        }
+    }
+
+    /**
+     * Tells everyone in a game that a player ran out of time
+     */
+    private void flagFell(int gameID, ChessGame.TeamColor team) {
+        if (!connections.connections.containsKey(gameID)) {
+            return;
+        }
+        try {
+            var notification = new NotificationMessage(String.format("%s ran out of time", teamToString(team)));
+            connections.broadcast(gameID, null, notification);
+            ClockMessage clock = gameManager.getClock(gameID);
+            if (clock != null) {
+                connections.broadcast(gameID, null, clock);
+            }
         }
+        catch (DataAccessException | NullPointerException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void getValidMoves(GetValidMovesCommand action, Session session) {
+        try {
+            Collection<ChessMove> validMoves =
+                    gameManager.getValidMoves(action.getGameID(), action.getOrigin());
+            connections.unicast(session, new ValidMovesMessage(validMoves));
+        }
+        catch (DataAccessException e) {
+            connections.unicast(session, new ErrorMessage("game not found"));
+        }
+    }
+
+    /**
+     * Looks up the user sending a command
+     *
+     * @return A future for the user's name, or null if the auth token is unknown
+     */
+    private CompletableFuture<String> authenticate(UserGameCommand action) {
+        AuthLookupEvent authEvent = new AuthLookupEvent();
+        authEvent.begin();
+        return authDAO.getAuth(action.getAuthToken()).thenApply(authData -> {
+            authEvent.end();
+            if (authEvent.shouldCommit()) {
+                authEvent.gameID = gameIDOf(action);
+                authEvent.payloadSize = action.getAuthToken() == null ? 0 : action.getAuthToken().length();
+                authEvent.commit();
+            }
+            return authData == null ? null : authData.username();
+        });
     }
 
-    private void getValidMoves(GetValidMovesCommand action, Session session) throws IOException {
-        Collection<ChessMove> validMoves =
-                gameManager.getValidMoves(action.getGameID(), action.getOrigin());
-        connections.unicast(session, new ValidMovesMessage(validMoves));
+    private int gameIDOf(UserGameCommand action) {
+        return action.getGameID() == null ? 0 : action.getGameID();
     }
 
     private String teamToString(ChessGame.TeamColor team) {
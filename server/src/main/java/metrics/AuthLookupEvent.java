@@ -0,0 +1,11 @@
+package metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chess.AuthLookup")
+@Label("Auth Lookup")
+@Description("Looking up the auth token sent with a websocket command")
+public class AuthLookupEvent extends MovePipelineEvent {
+}
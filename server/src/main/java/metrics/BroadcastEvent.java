@@ -0,0 +1,14 @@
+package metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chess.Broadcast")
+@Label("Broadcast")
+@Description("Sending a message to every session connected to a game")
+public class BroadcastEvent extends MovePipelineEvent {
+
+    @Label("Recipients")
+    public int recipients;
+}
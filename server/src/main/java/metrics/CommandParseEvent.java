@@ -0,0 +1,11 @@
+package metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chess.CommandParse")
+@Label("Command Parse")
+@Description("Decoding a websocket command from a text or binary frame")
+public class CommandParseEvent extends MovePipelineEvent {
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A write of one or more games to the database. A batch of several games is recorded
+ * as one event, with a game ID of zero and the combined size of every game.
+ */
+@Name("chess.GameWrite")
+@Label("Game Write")
+@Description("Writing game state to the database")
+public class GameWriteEvent extends MovePipelineEvent {
+
+    @Label("Games")
+    public int games;
+}
@@ -0,0 +1,87 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram that can be recorded into from any number of threads without locking
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into eight equal
+ * sub-buckets, so a value is placed with at most 12.5% error no matter its magnitude.
+ * Recording is a single atomic increment plus a striped addition.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records one observation
+     *
+     * @param nanos the observed duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Records the time elapsed since a start time taken from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The total of every recorded value, in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Counts the recorded values at or below each bound. The counts are read one bucket
+     * at a time, so values recorded during the call may or may not be included.
+     *
+     * @param boundsNanos upper bounds in nanoseconds, in increasing order
+     * @return The cumulative count for each bound, followed by the total count
+     */
+    public long[] cumulativeCounts(long[] boundsNanos) {
+        long[] cumulative = new long[boundsNanos.length + 1];
+        int bound = 0;
+        long running = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            // A bucket is counted under a bound once every value it holds is at or below the bound
+            while (bound < boundsNanos.length && highestValueIn(bucket) > boundsNanos[bound]) {
+                cumulative[bound++] = running;
+            }
+            running += counts.get(bucket);
+        }
+        while (bound < boundsNanos.length) {
+            cumulative[bound++] = running;
+        }
+        cumulative[boundsNanos.length] = running;
+        return cumulative;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
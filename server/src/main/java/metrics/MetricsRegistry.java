@@ -0,0 +1,160 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the server's metrics and renders them in the Prometheus text exposition format
+ * <p>
+ * Histograms are created once, when the code recording into them is set up, so the hot
+ * path only ever touches the {@link Histogram} itself. Gauges and counters are read from
+ * suppliers when the metrics are scraped, so they cost nothing until then.
+ */
+public class MetricsRegistry {
+
+    /**
+     * The registry scraped by the server's /metrics endpoint
+     */
+    public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    // Bucket bounds reported for every histogram, in seconds
+    private static final double[] BOUNDS = {
+            0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Finds or creates a histogram of durations
+     *
+     * @param name the metric name, which should end in _seconds
+     * @param help a description of what is measured
+     * @param labels alternating label names and values
+     * @return The histogram for the given labels, shared by every caller asking for them
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM)
+                .metrics.computeIfAbsent(formatLabels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Registers a value that can go up and down, replacing any registered with the same labels
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(formatLabels(labels), value);
+    }
+
+    /**
+     * Registers a value that only goes up, replacing any registered with the same labels
+     *
+     * @param name the metric name, which should end in _total
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(formatLabels(labels), value);
+    }
+
+    /**
+     * @return Every metric in the text exposition format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.exposedName).append('\n');
+
+            for (Map.Entry<String, Object> entry : family.metrics.entrySet()) {
+                String labels = entry.getKey();
+                if (entry.getValue() instanceof Histogram histogram) {
+                    writeHistogram(out, family.name, labels, histogram);
+                }
+                else {
+                    long value = ((LongSupplier) entry.getValue()).getAsLong();
+                    writeSample(out, family.name, labels, Long.toString(value));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Error: " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long[] counts = histogram.cumulativeCounts(BOUNDS_NANOS);
+        for (int i = 0; i < BOUNDS.length; i++) {
+            writeSample(out, name + "_bucket", labels + separator + "le=\"" + BOUNDS[i] + "\"",
+                    Long.toString(counts[i]));
+        }
+        long count = counts[BOUNDS.length];
+        writeSample(out, name + "_bucket", labels + separator + "le=\"+Inf\"", Long.toString(count));
+        writeSample(out, name + "_sum", labels, Double.toString(histogram.getSum() / 1e9));
+        writeSample(out, name + "_count", labels, Long.toString(count));
+    }
+
+    private void writeSample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Error: labels must be name and value pairs");
+        }
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            String value = labels[i + 1]
+                    .replace("\\", "\\\\")
+                    .replace("\"", "\\\"")
+                    .replace("\n", "\\n");
+            formatted.append(labels[i]).append("=\"").append(value).append('"');
+        }
+        return formatted.toString();
+    }
+
+    private enum Type {
+        HISTOGRAM("histogram"),
+        GAUGE("gauge"),
+        COUNTER("counter");
+
+        private final String exposedName;
+
+        Type(String exposedName) {
+            this.exposedName = exposedName;
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event timing one stage of handling a websocket move. Events are
+ * only committed while a recording is running, and fields are set after the stage
+ * ends, so a disabled event costs little more than the allocation.
+ */
+@Category({"Chess", "Move Pipeline"})
+@StackTrace(false)
+public abstract class MovePipelineEvent extends Event {
+
+    @Label("Game ID")
+    public int gameID;
+
+    @Label("Payload Size")
+    @DataAmount
+    public int payloadSize;
+}
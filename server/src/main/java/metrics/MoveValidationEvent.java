@@ -0,0 +1,11 @@
+package metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chess.MoveValidation")
+@Label("Move Validation")
+@Description("Validating and applying a move in ChessGame.makeMove")
+public class MoveValidationEvent extends MovePipelineEvent {
+}
@@ -0,0 +1,51 @@
+package server;
+
+import com.google.gson.Gson;
+import websocket.BinaryProtocol;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message encoded once as both JSON text and a binary frame, without a sequence
+ * number, so it can be sent any number of times under whichever number it is sent with
+ * without being encoded again.
+ */
+public class EncodedMessage {
+    private final String json;
+    private final byte[] frame;
+
+    private EncodedMessage(String json, byte[] frame) {
+        this.json = json;
+        this.frame = frame;
+    }
+
+    /**
+     * Encodes a message, clearing any sequence number it carries
+     */
+    public static EncodedMessage of(ServerMessage message) {
+        message.setSequence(0);
+        return new EncodedMessage(new Gson().toJson(message), BinaryProtocol.encodeMessage(message));
+    }
+
+    /**
+     * @return The message as JSON text carrying the sequence number, or no number if it is zero
+     */
+    public String toJson(long sequence) {
+        if (sequence == 0) {
+            return json;
+        }
+        // Without a sequence number the object has no field for one, so it goes first
+        return "{\"sequence\":" + sequence + "," + json.substring(1);
+    }
+
+    /**
+     * @return The message as a binary frame carrying the sequence number
+     */
+    public ByteBuffer toFrame(long sequence) {
+        if (sequence == 0) {
+            return ByteBuffer.wrap(frame).asReadOnlyBuffer();
+        }
+        return BinaryProtocol.withSequence(frame, sequence);
+    }
+}
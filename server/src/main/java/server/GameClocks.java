@@ -0,0 +1,104 @@
+package server;
+
+import chess.ChessGame;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Watches the clocks of every timed game for a player running out of time
+ * <p>
+ * Each game in progress has one check waiting on a shared timing wheel, due when the
+ * player to move runs out of time. Moving cancels it and schedules the next player's.
+ * Checks are handed from the wheel's thread to a thread of their own, since they lock
+ * their game. Listeners, which tell the game's sessions, run on another thread, so a
+ * slow broadcast never delays the checks of other games.
+ */
+public class GameClocks {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final TimingWheel wheel;
+    private final Executor executor;
+    private final Executor listenerExecutor;
+    private volatile FlagListener flagListener = null;
+
+    public GameClocks() {
+        this(new TimingWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, "game-clock"),
+                newDaemonExecutor("game-flag"), newDaemonExecutor("game-flag-listener"));
+    }
+
+    /**
+     * Runs checks and listeners on the same executor
+     */
+    public GameClocks(TimingWheel wheel, Executor executor) {
+        this(wheel, executor, executor);
+    }
+
+    /**
+     * @param executor where checks are run once they are due
+     * @param listenerExecutor where the listener is told a player ran out of time. Each
+     *                         executor is shut down along with the clocks if it is an
+     *                         executor service.
+     */
+    public GameClocks(TimingWheel wheel, Executor executor, Executor listenerExecutor) {
+        this.wheel = wheel;
+        this.executor = executor;
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    private static ExecutorService newDaemonExecutor(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a check once a player's remaining time has passed
+     */
+    public TimingWheel.Timeout schedule(Runnable check, long delayMillis) {
+        return wheel.schedule(() -> executor.execute(check), delayMillis);
+    }
+
+    /**
+     * @param flagListener told whenever a player runs out of time
+     */
+    public void setFlagListener(FlagListener flagListener) {
+        this.flagListener = flagListener;
+    }
+
+    /**
+     * Tells the listener a player ran out of time, after their game was ended. The listener
+     * is run on its own executor, so the caller may hold its game's lock.
+     */
+    public void flagFell(int gameID, ChessGame.TeamColor team) {
+        FlagListener listener = flagListener;
+        if (listener != null) {
+            listenerExecutor.execute(() -> listener.flagFell(gameID, team));
+        }
+    }
+
+    /**
+     * @return How many games have a check waiting
+     */
+    public int getPending() {
+        return wheel.getPending();
+    }
+
+    public void shutdown() {
+        wheel.shutdown();
+        if (executor instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+        if (listenerExecutor instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+    }
+
+    public interface FlagListener {
+        void flagFell(int gameID, ChessGame.TeamColor team);
+    }
+}
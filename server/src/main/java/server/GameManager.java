@@ -2,102 +2,833 @@ package server;
 
 import chess.ChessGame;
 import chess.ChessMove;
-import chess.ChessPosition;import chess.InvalidMoveException;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
 import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
+import metrics.BroadcastEvent;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import websocket.BinaryProtocol;
+import websocket.messages.ClockMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveResultMessage;
+import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
-import java.util.Collection;import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GameManager {
+    public static final int DEFAULT_MAX_RESIDENT_GAMES = 1000;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+    public static final String MOVE_LOG_DIRECTORY_PROPERTY = "chess.moveLogDir";
+    public static final Path DEFAULT_MOVE_LOG_DIRECTORY = Path.of("wal");
+    public static final Duration SESSION_REAP_PERIOD = Duration.ofSeconds(30);
+
     ConcurrentHashMap<Integer, GameTracker> gameTrackers = new ConcurrentHashMap<>();
+    // The resident games from least to most recently used, guarded by its own lock
+    private final LinkedHashMap<Integer, GameTracker> recency = new LinkedHashMap<>(16, 0.75f, true);
     private final GameDAO gameDAO;
+    private final MoveLog moveLog;
+    private final WriteBehindQueue writeQueue;
+    private final LobbyFeed lobbyFeed;
+    private final GameClocks clocks;
+    private final ConnectionManager connections = new ConnectionManager();
+    private final int maxResidentGames;
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService evictor;
+    private final AtomicLong reapedSessions = new AtomicLong();
+
+    /**
+     * Logs moves under the directory named by the {@code chess.moveLogDir} system property,
+     * or {@code wal} if it is not set
+     */
+    public GameManager(GameDAO gameDAO) throws DataAccessException {
+        this(gameDAO, DEFAULT_MAX_RESIDENT_GAMES, DEFAULT_IDLE_TIMEOUT,
+                Path.of(System.getProperty(MOVE_LOG_DIRECTORY_PROPERTY, DEFAULT_MOVE_LOG_DIRECTORY.toString())));
+    }
 
-    public GameManager(GameDAO gameDAO) {
+    /**
+     * Replays any moves a previous run logged but did not write to the DAO before
+     * accepting new ones
+     *
+     * @param maxResidentGames how many games may be kept in memory before the least
+     *                         recently used game without sessions is evicted
+     * @param idleTimeout how long a game without sessions stays in memory
+     * @param moveLogDirectory where accepted moves are logged until they are written
+     * @throws DataAccessException if the move log could not be opened or replayed
+     */
+    public GameManager(GameDAO gameDAO, int maxResidentGames, Duration idleTimeout, Path moveLogDirectory)
+            throws DataAccessException {
         this.gameDAO = gameDAO;
+        try {
+            this.moveLog = new MoveLog(moveLogDirectory);
+            moveLog.replay(gameDAO);
+        }
+        catch (IOException e) {
+            throw new DataAccessException("Error: unable to replay move log", e);
+        }
+        this.writeQueue = new WriteBehindQueue(gameDAO, moveLog);
+        this.lobbyFeed = new LobbyFeed(gameDAO);
+        this.clocks = new GameClocks();
+        this.maxResidentGames = maxResidentGames;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout.toMillis() / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        evictor.scheduleAtFixedRate(this::reapSessions, SESSION_REAP_PERIOD.toMillis(),
+                SESSION_REAP_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    public void joinPerson(int gameID, Session person, String username)
+    public void joinPerson(int gameID, Session person)
             throws DataAccessException {
-        gameTrackers.putIfAbsent(gameID, new GameTracker(gameDAO.getGame(gameID), gameDAO));
-        gameTrackers.get(gameID).joinPerson(person, username);
+        // Retry if the tracker was evicted between being looked up and being joined
+        while (true) {
+            GameTracker tracker = getTracker(gameID);
+            try {
+                if (tracker.joinPerson(person)) {
+                    return;
+                }
+            }
+            catch (GameNotFoundException e) {
+                remove(gameID, tracker);
+                throw e;
+            }
+            remove(gameID, tracker);
+        }
     }
 
     public void leavePerson(int gameID, Session person, String username)
             throws DataAccessException {
-        gameTrackers.get(gameID).leavePerson(person, username);
+        getTracker(gameID).leavePerson(person, username);
     }
 
-    public void makeMove(int gameID, Session person, ChessMove move, String username)
+    /**
+     * Removes a closed session from every game it was connected to, visiting only those games
+     *
+     * @return False if the session was already removed
+     */
+    public boolean dropSession(Session person) {
+        Set<Integer> gameIDs = connections.forget(person);
+        if (gameIDs == null) {
+            return false;
+        }
+        for (Integer gameID : gameIDs) {
+            GameTracker tracker = gameTrackers.get(gameID);
+            if (tracker != null) {
+                tracker.dropSession(person);
+            }
+        }
+        return true;
+    }
+
+    public GameTracker.MoveResult makeMove(int gameID, Session person, ChessMove move, String username)
             throws InvalidMoveException, DataAccessException {
-        gameTrackers.get(gameID).makeMove(person, move, username);
+        return getTracker(gameID).makeMove(person, move, username);
     }
 
     public void resign(int gameID, String username)
             throws DataAccessException, InvalidMoveException {
-        gameTrackers.get(gameID).resign(username);
+        getTracker(gameID).resign(username);
+    }
+
+    public ChessGame getGame(int gameID) throws DataAccessException {
+        return getTracker(gameID).getGame();
+    }
+
+    /**
+     * @return The game's board encoded for joining sessions, which is reused until the next move
+     */
+    public EncodedMessage getBoardSnapshot(int gameID) throws DataAccessException {
+        return getTracker(gameID).getBoardSnapshot();
+    }
+
+    public ChessGame.GameState getGameState(int gameID) throws DataAccessException {
+        return getTracker(gameID).getGameState();
+    }
+
+    public String getNextPlayer(int gameID) throws DataAccessException {
+        return getTracker(gameID).getNextPlayer();
+    }
+
+    public Collection<ChessMove> getValidMoves(Integer gameID, ChessPosition origin) throws DataAccessException {
+        return getTracker(gameID).getValidMoves(origin);
+    }
+
+    public ChessGame.TeamColor getTeam(int gameID, String username) throws DataAccessException {
+        return getTracker(gameID).getTeam(username);
+    }
+
+    /**
+     * Forgets every game in memory, along with any pending writes and logged moves,
+     * after the games were cleared
+     */
+    public void clear() throws DataAccessException {
+        // Each tracker is discarded under its lock, so no move still being made can queue it
+        gameTrackers.forEach((gameID, tracker) -> {
+            tracker.discard();
+            remove(gameID, tracker);
+        });
+        writeQueue.clear();
+        connections.clear();
+        lobbyFeed.reset();
+        try {
+            moveLog.reset();
+        }
+        catch (IOException e) {
+            throw new DataAccessException("Error: unable to reset move log", e);
+        }
+    }
+
+    public int getResidentGames() {
+        return gameTrackers.size();
+    }
+
+    public int getPendingWrites() {
+        return writeQueue.getPendingGames();
+    }
+
+    /**
+     * @return The feed changes to the lobby are published to
+     */
+    public LobbyFeed getLobbyFeed() {
+        return lobbyFeed;
+    }
+
+    /**
+     * @return The websocket sessions connected to each game
+     */
+    public ConnectionManager getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return The clocks of every timed game in memory
+     */
+    public GameClocks getClocks() {
+        return clocks;
+    }
+
+    public ClockMessage getClock(int gameID) throws DataAccessException {
+        return getTracker(gameID).getClock();
     }
 
-    public ChessGame getGame(int gameID) {
-        return gameTrackers.get(gameID).getGame();
+    /**
+     * Stops evicting games, running clocks and publishing lobby changes, and writes every
+     * game with pending changes
+     */
+    public void shutdown() throws DataAccessException {
+        evictor.shutdownNow();
+        connections.shutdown();
+        clocks.shutdown();
+        lobbyFeed.shutdown();
+        writeQueue.shutdown();
     }
 
-    public GameTracker.GameState getGameState(int gameID) {
-        return gameTrackers.get(gameID).getGameState();
+    /**
+     * Finds the tracker for a game, loading the game from the DAO if it is not in memory
+     *
+     * @throws DataAccessException if the game could not be loaded
+     */
+    private GameTracker getTracker(int gameID) throws DataAccessException {
+        GameTracker tracker = gameTrackers.get(gameID);
+        if (tracker == null) {
+            // An evicted tracker for this game may still be writing its final state
+            writeQueue.flush(gameID);
+            GameData gameData = gameDAO.getGame(gameID);
+            if (gameData == null) {
+                throw new GameNotFoundException();
+            }
+
+            GameTracker loaded = new GameTracker(gameData, gameDAO, writeQueue, moveLog, lobbyFeed, clocks);
+            tracker = gameTrackers.putIfAbsent(gameID, loaded);
+            if (tracker == null) {
+                tracker = loaded;
+                synchronized (recency) {
+                    // Unless the game was removed again before it could be ordered
+                    if (gameTrackers.get(gameID) == loaded) {
+                        recency.put(gameID, loaded);
+                    }
+                }
+                evictOverCapacity();
+            }
+        }
+        tracker.touch();
+        synchronized (recency) {
+            recency.get(gameID);
+        }
+        return tracker;
+    }
+
+    /**
+     * Removes a game's tracker, unless it was already replaced
+     *
+     * @return True if the tracker was removed
+     */
+    private boolean remove(int gameID, GameTracker tracker) {
+        if (!gameTrackers.remove(gameID, tracker)) {
+            return false;
+        }
+        synchronized (recency) {
+            recency.remove(gameID, tracker);
+        }
+        return true;
     }
 
-    public String getNextPlayer(int gameID) {
-        return gameTrackers.get(gameID).getNextPlayer();
+    /**
+     * @return How many sessions were removed by the reaper rather than when they closed
+     */
+    public long getReapedSessions() {
+        return reapedSessions.get();
     }
 
-    public Collection<ChessMove> getValidMoves(Integer gameID, ChessPosition origin) {
-        return gameTrackers.get(gameID).getValidMoves(origin);
+    /**
+     * Removes sessions that closed without their close being handled, such as when the
+     * connection was lost without a close frame
+     */
+    void reapSessions() {
+        for (Session session : connections.getSessions().findClosed()) {
+            if (dropSession(session)) {
+                reapedSessions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Evicts every game that has had no sessions for longer than the idle timeout
+     */
+    void evictIdle() {
+        gameTrackers.forEach((gameID, tracker) -> {
+            if (tracker.evictIfIdle(idleTimeoutNanos)) {
+                evict(gameID, tracker);
+            }
+        });
     }
 
-    public ChessGame.TeamColor getTeam(int gameID, String username) {
-        return gameTrackers.get(gameID).getTeam(username);
+    /**
+     * Writes an evicted game's pending changes before removing its tracker
+     */
+    private void evict(int gameID, GameTracker tracker) {
+        try {
+            writeQueue.flush(gameID);
+        }
+        catch (DataAccessException e) {
+            // The game stays queued and is written again before it is next loaded
+            e.printStackTrace();
+        }
+        if (remove(gameID, tracker)) {
+            connections.discard(gameID);
+        }
+    }
+
+    /**
+     * Evicts the least recently used games without sessions until the resident cap is met.
+     * Games with connected sessions are never evicted, so the cap may be exceeded while
+     * more than that many games are being played.
+     */
+    private void evictOverCapacity() {
+        while (gameTrackers.size() > maxResidentGames) {
+            // Games are kept in order of use, so the search stops at the first game without sessions
+            Map.Entry<Integer, GameTracker> oldest = null;
+            synchronized (recency) {
+                for (Map.Entry<Integer, GameTracker> entry : recency.entrySet()) {
+                    if (!entry.getValue().hasSessions()) {
+                        oldest = Map.entry(entry.getKey(), entry.getValue());
+                        break;
+                    }
+                }
+            }
+
+            if (oldest == null || !oldest.getValue().evictIfIdle(0)) {
+                return;
+            }
+            evict(oldest.getKey(), oldest.getValue());
+        }
     }
 
     public static class ConnectionManager {
+        private static final Histogram BROADCAST_TIME = MetricsRegistry.DEFAULT.histogram(
+                "chess_broadcast_duration_seconds", "Time spent sending a message to every session in a game");
+
+        // A send that fails means the session is closing, and it is removed once that is handled
+        static final WriteCallback SEND_FAILED = new WriteCallback() {
+        };
+
         public final ConcurrentHashMap<Integer, ConcurrentHashMap<Session, Session>> connections =
                 new ConcurrentHashMap<>();
 
+        private final SessionRegistry sessions = new SessionRegistry();
+
+        // Each game's recent broadcasts, kept while the game is in memory so sessions can resume
+        private final ConcurrentHashMap<Integer, ReplayBuffer> replays = new ConcurrentHashMap<>();
+
+        // Each game's spectators, and the messages held for them while the game's audience is large
+        private final SpectatorTier spectators;
+        private final ConcurrentHashMap<Integer, SpectatorTier.Feed> feeds = new ConcurrentHashMap<>();
+
+        public ConnectionManager() {
+            this(SpectatorTier.fromConfiguration());
+        }
+
+        public ConnectionManager(SpectatorTier spectators) {
+            this.spectators = spectators;
+        }
+
+        /**
+         * Starts tracking a newly opened session
+         *
+         * @param binary whether the session negotiated the binary subprotocol
+         */
+        public void register(Session session, boolean binary) {
+            sessions.register(session, binary);
+        }
+
+        public SessionRegistry getSessions() {
+            return sessions;
+        }
+
+        public SpectatorTier getSpectators() {
+            return spectators;
+        }
+
+        /**
+         * @return How many spectators are watching games in memory
+         */
+        public int getSpectatorCount() {
+            int count = 0;
+            for (SpectatorTier.Feed feed : feeds.values()) {
+                count += feed.getViewers();
+            }
+            return count;
+        }
+
         public void add(int gameID, Session session) {
-            connections.putIfAbsent(gameID, new ConcurrentHashMap<>());
-            connections.get(gameID).put(session, session);
+            // Changing a game's sessions atomically with its entry keeps a session from being
+            // added to a map that is being removed
+            connections.compute(gameID, (id, gameConnections) -> {
+                if (gameConnections == null) {
+                    gameConnections = new ConcurrentHashMap<>();
+                }
+                gameConnections.put(session, session);
+                return gameConnections;
+            });
+            sessions.join(session, gameID);
+        }
+
+        /**
+         * Connects a session to a game, moving it to the game's spectator tier if it is watching
+         *
+         * @param sequence the latest broadcast the session has seen
+         */
+        private void add(int gameID, Session session, boolean spectator, long sequence) {
+            add(gameID, session);
+            if (spectator) {
+                feeds.computeIfAbsent(gameID, id -> spectators.newFeed()).watch(session, sequence);
+            }
+            else {
+                SpectatorTier.Feed feed = feeds.get(gameID);
+                if (feed != null) {
+                    feed.unwatch(session);
+                }
+            }
         }
 
         public void remove(int gameID, Session session) {
-            ConcurrentHashMap<Session, Session> gameConnections = connections.get(gameID);
-            if (gameConnections == null) {
-                return;
+            detach(gameID, session);
+            sessions.leave(session, gameID);
+        }
+
+        /**
+         * Removes a closed session from every game it was connected to
+         *
+         * @return The games the session was connected to, or null if it was already forgotten
+         */
+        public Set<Integer> forget(Session session) {
+            Set<Integer> gameIDs = sessions.unregister(session);
+            if (gameIDs == null) {
+                return null;
             }
+            for (Integer gameID : gameIDs) {
+                detach(gameID, session);
+            }
+            return gameIDs;
+        }
+
+        private void detach(int gameID, Session session) {
+            SpectatorTier.Feed feed = feeds.get(gameID);
+            if (feed != null) {
+                feed.unwatch(session);
+            }
+            connections.computeIfPresent(gameID, (id, gameConnections) -> {
+                gameConnections.remove(session);
+                return gameConnections.isEmpty() ? null : gameConnections;
+            });
+        }
+
+        /**
+         * Drops a game's recent broadcasts once it is no longer in memory. Sessions that
+         * resume it later load it again.
+         */
+        public void discard(int gameID) {
+            replays.remove(gameID);
+            feeds.remove(gameID);
+        }
+
+        public void clear() {
+            replays.clear();
+            feeds.clear();
+        }
+
+        /**
+         * Stops sending held messages to spectators
+         */
+        public void shutdown() {
+            spectators.shutdown();
+        }
 
-            gameConnections.remove(session);
-            if (gameConnections.isEmpty()) {
-                connections.remove(gameID);
+        /**
+         * Numbers a message and sends it to every session in a game. Sends are queued rather
+         * than waited on, so a slow session never holds up the game's other sessions.
+         */
+        public void broadcast(int gameID, Session excludeSession, ServerMessage notification) {
+            ReplayBuffer replay = replays.computeIfAbsent(gameID, id -> new ReplayBuffer());
+            BroadcastEvent broadcastEvent = new BroadcastEvent();
+            broadcastEvent.begin();
+            long start = System.nanoTime();
+            String msg = null;
+            byte[] frame = null;
+            int recipients = 0;
+            try {
+                synchronized (replay) {
+                    long sequence = replay.record(notification, excludeSession, usernameOf(excludeSession));
+                    ConcurrentHashMap<Session, Session> gameConnections = connections.get(gameID);
+                    if (gameConnections == null) {
+                        return;
+                    }
+                    SpectatorTier.Feed feed = holdingFeed(gameID);
+                    if (feed != null) {
+                        msg = new Gson().toJson(notification);
+                        frame = BinaryProtocol.encodeMessage(notification);
+                        hold(gameID, feed, notification.getServerMessageType(),
+                                new SpectatorTier.Update(sequence, excludeSession, msg, frame));
+                    }
+                    // Each encoding is built at most once, then shared by every recipient using it
+                    for (Session c : gameConnections.values()) {
+                        if (c.isOpen() && (feed == null || !feed.isWatching(c))) {
+                            if (!c.equals(excludeSession)) {
+                                recipients++;
+                                if (!sessions.isBinary(c)) {
+                                    if (msg == null) {
+                                        msg = new Gson().toJson(notification);
+                                    }
+                                    send(c, msg);
+                                }
+                                else {
+                                    if (frame == null) {
+                                        frame = BinaryProtocol.encodeMessage(notification);
+                                    }
+                                    send(c, frame);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            finally {
+                BROADCAST_TIME.recordSince(start);
+                broadcastEvent.end();
+                if (broadcastEvent.shouldCommit()) {
+                    broadcastEvent.gameID = gameID;
+                    broadcastEvent.payloadSize = msg != null ? msg.length() : frame != null ? frame.length : 0;
+                    broadcastEvent.recipients = recipients;
+                    broadcastEvent.commit();
+                }
             }
         }
 
-        public void broadcast(int gameID, Session excludeSession, ServerMessage notification) throws IOException {
-            String msg = new Gson().toJson(notification);
-            for (Session c : connections.get(gameID).values()) {
-                if (c.isOpen()) {
-                    if (!c.equals(excludeSession)) {
-                        c.getRemote().sendString(msg);
+        /**
+         * Sends every session in a game the result of a move under a single sequence number.
+         * Binary sessions receive it as one frame. JSON sessions receive the board, the
+         * move's notification unless they made it, the notification of any check, checkmate
+         * or stalemate, and the clocks of a timed game, as separate messages.
+         */
+        public void broadcastMove(int gameID, Session mover, MoveResultMessage moveResult) {
+            ReplayBuffer replay = replays.computeIfAbsent(gameID, id -> new ReplayBuffer());
+            BroadcastEvent broadcastEvent = new BroadcastEvent();
+            broadcastEvent.begin();
+            long start = System.nanoTime();
+            byte[] frame = null;
+            List<String> messages = null;
+            int recipients = 0;
+            try {
+                synchronized (replay) {
+                    long sequence = replay.record(moveResult, mover, usernameOf(mover));
+                    ConcurrentHashMap<Session, Session> gameConnections = connections.get(gameID);
+                    if (gameConnections == null) {
+                        return;
                     }
+                    SpectatorTier.Feed feed = holdingFeed(gameID);
+                    if (feed != null) {
+                        // Spectators are held the move's parts, so only its board and clock are
+                        // replaced by later moves. They never made the move, so they are sent every part.
+                        Gson serializer = new Gson();
+                        for (ServerMessage part : splitMoveResult(moveResult)) {
+                            part.setSequence(sequence);
+                            hold(gameID, feed, part.getServerMessageType(), new SpectatorTier.Update(
+                                    sequence, null, serializer.toJson(part), BinaryProtocol.encodeMessage(part)));
+                        }
+                    }
+                    for (Session c : gameConnections.values()) {
+                        if (!c.isOpen() || feed != null && feed.isWatching(c)) {
+                            continue;
+                        }
+                        recipients++;
+                        if (sessions.isBinary(c)) {
+                            if (frame == null) {
+                                frame = BinaryProtocol.encodeMessage(moveResult);
+                            }
+                            send(c, frame);
+                            continue;
+                        }
+                        if (messages == null) {
+                            messages = splitMoveResult(moveResult, sequence);
+                        }
+                        sendSplit(c, messages, c.equals(mover));
+                    }
+                }
+            }
+            finally {
+                BROADCAST_TIME.recordSince(start);
+                broadcastEvent.end();
+                if (broadcastEvent.shouldCommit()) {
+                    broadcastEvent.gameID = gameID;
+                    broadcastEvent.payloadSize = frame != null ? frame.length
+                            : messages != null ? messages.stream().mapToInt(String::length).sum() : 0;
+                    broadcastEvent.recipients = recipients;
+                    broadcastEvent.commit();
+                }
+            }
+        }
+
+        /**
+         * Sends a move's result to a JSON session as separate messages
+         *
+         * @param mover whether the session made the move, and so is not told about it
+         */
+        private static void sendSplit(Session session, List<String> messages, boolean mover) {
+            for (int i = 0; i < messages.size(); i++) {
+                // The second message tells others about the move
+                if (i != 1 || !mover) {
+                    send(session, messages.get(i));
+                }
+            }
+        }
+
+        /**
+         * Queues a message to a JSON session without waiting for it to be written. Messages
+         * queued to a session are written in order, and the game's replay lock keeps them
+         * in the order they were numbered.
+         */
+        private static void send(Session session, String json) {
+            session.getRemote().sendString(json, SEND_FAILED);
+        }
+
+        /**
+         * Queues a message to a binary session without waiting for it to be written
+         */
+        private static void send(Session session, byte[] frame) {
+            session.getRemote().sendBytes(ByteBuffer.wrap(frame), SEND_FAILED);
+        }
+
+        /**
+         * Sends a session a broadcast it missed, as it was sent to the sessions connected at
+         * the time: not at all if it was kept from the session's user, and split up for JSON
+         * sessions if it is a move's result
+         */
+        private void resend(Session session, ReplayBuffer.Entry entry) {
+            if (!session.isOpen()) {
+                return;
+            }
+            boolean excluded = entry.excludes(session, sessions.getUsername(session));
+            if (entry.message() instanceof MoveResultMessage moveResult && !sessions.isBinary(session)) {
+                sendSplit(session, splitMoveResult(moveResult, moveResult.getSequence()), excluded);
+            }
+            else if (entry.message() instanceof MoveResultMessage || !excluded) {
+                unicast(session, entry.message());
+            }
+        }
+
+        private String usernameOf(Session session) {
+            return session == null ? null : sessions.getUsername(session);
+        }
+
+        /**
+         * @return The game's spectator feed if messages for its spectators are being held, or null
+         */
+        private SpectatorTier.Feed holdingFeed(int gameID) {
+            SpectatorTier.Feed feed = feeds.get(gameID);
+            return feed != null && feed.isHolding() ? feed : null;
+        }
+
+        /**
+         * Holds a message for a game's spectators, flushing it to them once the window closes
+         */
+        private void hold(int gameID, SpectatorTier.Feed feed, ServerMessage.ServerMessageType type,
+                          SpectatorTier.Update update) {
+            if (feed.hold(type, update)) {
+                spectators.schedule(() -> flushSpectators(gameID));
+            }
+        }
+
+        /**
+         * Sends a game's spectators the messages held for them, trying again after another
+         * window if some were over their budget
+         */
+        void flushSpectators(int gameID) {
+            ReplayBuffer replay = replays.get(gameID);
+            SpectatorTier.Feed feed = feeds.get(gameID);
+            // The game left memory, and its spectators load it again when they next resume
+            if (replay == null || feed == null) {
+                return;
+            }
+            synchronized (replay) {
+                if (feed.flush(sessions)) {
+                    spectators.schedule(() -> flushSpectators(gameID));
+                }
+            }
+        }
+
+        /**
+         * @return The JSON messages a move's result is sent to JSON sessions as, each encoded
+         * once: the board, the move's notification, then any state notification and clocks
+         */
+        private static List<String> splitMoveResult(MoveResultMessage moveResult, long sequence) {
+            Gson serializer = new Gson();
+            List<ServerMessage> split = splitMoveResult(moveResult);
+            List<String> messages = new ArrayList<>(split.size());
+            for (ServerMessage message : split) {
+                message.setSequence(sequence);
+                messages.add(serializer.toJson(message));
+            }
+            return messages;
+        }
+
+        /**
+         * @return The separate messages a move's result is made of, not yet numbered
+         */
+        private static List<ServerMessage> splitMoveResult(MoveResultMessage moveResult) {
+            List<ServerMessage> split = new ArrayList<>();
+            split.add(new LoadGameMessage(moveResult.getGameBoard()));
+            split.add(new NotificationMessage(moveResult.getMessage()));
+            if (moveResult.getStateMessage() != null) {
+                split.add(new NotificationMessage(moveResult.getStateMessage()));
+            }
+            if (moveResult.getClock() != null) {
+                split.add(moveResult.getClock());
+            }
+            return split;
+        }
+
+        /**
+         * Connects a session to a game and sends it the game's current state, numbered
+         * with the latest broadcast, which the state already includes
+         *
+         * @param spectator whether the session is watching the game rather than playing it
+         * @param snapshot builds the encoded messages describing the game's current state
+         * @throws DataAccessException if the game could not be loaded
+         */
+        public void sendSnapshot(int gameID, Session session, boolean spectator, Snapshot snapshot)
+                throws DataAccessException {
+            ReplayBuffer replay = replays.computeIfAbsent(gameID, id -> new ReplayBuffer());
+            // Broadcasts wait, so the session misses none made after the state was read
+            synchronized (replay) {
+                add(gameID, session, spectator, replay.getSequence());
+                for (EncodedMessage message : snapshot.build()) {
+                    unicast(session, message, replay.getSequence());
                 }
             }
         }
 
-        public void unicast(Session session, ServerMessage notification) throws IOException {
-            String msg = new Gson().toJson(notification);
-            if (session.isOpen()) {
-                session.getRemote().sendString(msg);
+        /**
+         * Reconnects a session to a game, sending only the broadcasts numbered after the
+         * last one it received. If some of those are no longer kept, it is sent the
+         * game's current state instead.
+         *
+         * @param spectator whether the session is watching the game rather than playing it
+         * @param snapshot builds the encoded messages describing the game's current state
+         * @throws DataAccessException if the game could not be loaded
+         */
+        public void resume(int gameID, Session session, long lastSequence, boolean spectator, Snapshot snapshot)
+                throws DataAccessException {
+            ReplayBuffer replay = replays.computeIfAbsent(gameID, id -> new ReplayBuffer());
+            synchronized (replay) {
+                List<ReplayBuffer.Entry> missed = replay.since(lastSequence);
+                if (missed == null) {
+                    sendSnapshot(gameID, session, spectator, snapshot);
+                    return;
+                }
+                add(gameID, session, spectator, replay.getSequence());
+                for (ReplayBuffer.Entry entry : missed) {
+                    resend(session, entry);
+                }
+            }
+        }
+
+        public void unicast(Session session, ServerMessage notification) {
+            if (!session.isOpen()) {
+                return;
+            }
+
+            if (!sessions.isBinary(session)) {
+                send(session, new Gson().toJson(notification));
+            }
+            else {
+                send(session, BinaryProtocol.encodeMessage(notification));
+            }
+        }
+
+        /**
+         * Sends a message that was already encoded, numbered with the given sequence number
+         */
+        public void unicast(Session session, EncodedMessage message, long sequence) {
+            if (!session.isOpen()) {
+                return;
             }
+
+            if (!sessions.isBinary(session)) {
+                send(session, message.toJson(sequence));
+            }
+            else {
+                session.getRemote().sendBytes(message.toFrame(sequence), SEND_FAILED);
+            }
+        }
+
+        @FunctionalInterface
+        public interface Snapshot {
+            List<EncodedMessage> build() throws DataAccessException;
         }
     }
 }
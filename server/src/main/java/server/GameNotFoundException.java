@@ -0,0 +1,12 @@
+package server;
+
+import dataaccess.DataAccessException;
+
+/**
+ * Indicates a command named a game that does not exist, or that was deleted while in memory
+ */
+public class GameNotFoundException extends DataAccessException {
+    public GameNotFoundException() {
+        super("Error: game not found");
+    }
+}
@@ -1,91 +1,416 @@
 package server;
 
+import chess.ChessBoard;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
 import chess.InvalidMoveException;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import metrics.MoveValidationEvent;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
+import serviceobjects.ListGameData;
+import websocket.messages.ClockMessage;
+import websocket.messages.LoadGameMessage;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class GameTracker {
+    private static final Histogram MOVE_TIME = MetricsRegistry.DEFAULT.histogram(
+            "chess_move_compute_seconds", "Time spent validating and applying a move in ChessGame.makeMove");
 
     private GameData gameData;
     private final GameDAO gameDAO;
-    private Session whitePlayer = null;
-    private Session blackPlayer = null;
+    private final WriteBehindQueue writeQueue;
+    private final MoveLog moveLog;
+    private final LobbyFeed lobbyFeed;
+    private final GameClocks clocks;
 
-    public GameTracker(GameData gameData, GameDAO gameDAO) {
+    // Every session connected to this game, used to decide when the tracker can be evicted
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private volatile long lastAccess = System.nanoTime();
+    private volatile boolean evicted = false;
+
+    // When the player to move started their turn, and the check for them running out of time
+    private long turnStarted = System.nanoTime();
+    private TimingWheel.Timeout flagCheck = null;
+
+    // The board as sent to joining sessions, encoded when first needed after each move
+    private EncodedMessage boardSnapshot = null;
+    private int boardSnapshotVersion = -1;
+
+    public GameTracker(GameData gameData, GameDAO gameDAO, WriteBehindQueue writeQueue, MoveLog moveLog) {
+        this(gameData, gameDAO, writeQueue, moveLog, null);
+    }
+
+    public GameTracker(GameData gameData, GameDAO gameDAO, WriteBehindQueue writeQueue, MoveLog moveLog,
+                       LobbyFeed lobbyFeed) {
+        this(gameData, gameDAO, writeQueue, moveLog, lobbyFeed, null);
+    }
+
+    /**
+     * Starts the clock of the player to move if the game is timed and in progress. Clocks
+     * do not run while a game is out of memory, so a player's turn resumes when it is loaded.
+     *
+     * @param lobbyFeed where seats being released and the game finishing are published, or null
+     * @param clocks where the check for the player to move running out of time is scheduled,
+     *               or null if clocks are not enforced
+     */
+    public GameTracker(GameData gameData, GameDAO gameDAO, WriteBehindQueue writeQueue, MoveLog moveLog,
+                       LobbyFeed lobbyFeed, GameClocks clocks) {
         this.gameData = gameData;
         this.gameDAO = gameDAO;
+        this.writeQueue = writeQueue;
+        this.moveLog = moveLog;
+        this.lobbyFeed = lobbyFeed;
+        this.clocks = clocks;
         gameData.game().startup();
+        synchronized (this) {
+            scheduleFlagCheck();
+        }
     }
 
-    public void joinPerson(Session person, String username) throws DataAccessException {
-        if (getTeam(username) == ChessGame.TeamColor.WHITE) {
-            whitePlayer = person;
+    /**
+     * @return False if the tracker was evicted and the caller must join a freshly loaded one
+     * @throws GameNotFoundException if the game was deleted since it was loaded, in which
+     *                               case the tracker is discarded
+     */
+    public synchronized boolean joinPerson(Session person) throws DataAccessException {
+        if (evicted) {
+            return false;
         }
-        else if (getTeam(username) == ChessGame.TeamColor.BLACK) {
-            blackPlayer = person;
+
+        // Players may have claimed seats since the game was loaded, but the game in
+        // memory is newer than the stored one while writes are pending
+        ListGameData storedGameData = gameDAO.getGameMetadata(gameData.gameID());
+        if (storedGameData == null) {
+            discard();
+            throw new GameNotFoundException();
         }
-        gameData = gameDAO.getGame(gameData.gameID());
+        sessions.add(person);
+        gameData = new GameData(
+                gameData.gameID(),
+                storedGameData.whiteUsername(),
+                storedGameData.blackUsername(),
+                gameData.gameName(),
+                gameData.game());
+        return true;
     }
 
-    public void leavePerson(Session person, String username) throws DataAccessException {
-        if (getTeam(username) == ChessGame.TeamColor.WHITE) {
-            whitePlayer = null;
-            GameData newGameData = new GameData(
+    public synchronized void leavePerson(Session person, String username) throws DataAccessException {
+        sessions.remove(person);
+
+        ChessGame.TeamColor team = getTeam(username);
+        if (team == null) {
+            return;
+        }
+        if (team == ChessGame.TeamColor.WHITE) {
+            gameData = new GameData(
                     gameData.gameID(),
                     null,
                     gameData.blackUsername(),
                     gameData.gameName(),
                     gameData.game());
-            gameDAO.updateGame(newGameData);
-            gameData = newGameData;
         }
-        else if (getTeam(username) == ChessGame.TeamColor.BLACK) {
-            blackPlayer = null;
-            GameData newGameData = new GameData(
+        else {
+            gameData = new GameData(
                     gameData.gameID(),
                     gameData.whiteUsername(),
                     null,
                     gameData.gameName(),
                     gameData.game());
-            gameDAO.updateGame(newGameData);
-            gameData = newGameData;
+        }
+        // The board is left to the write-behind queue
+        if (gameDAO.releaseSeat(gameData.gameID(), team, username) && lobbyFeed != null) {
+            lobbyFeed.seatReleased(gameData.gameID(), team, username);
         }
     }
 
-    public void makeMove(Session person, ChessMove move, String username)
+    /**
+     * Forgets a session that closed without leaving the game first
+     */
+    public synchronized void dropSession(Session person) {
+        sessions.remove(person);
+    }
+
+    /**
+     * Marks the tracker as evicted if no sessions remain and it has not been used for the given time
+     *
+     * @param idleNanos how long the tracker must have gone unused
+     * @return True if the tracker was evicted
+     */
+    public synchronized boolean evictIfIdle(long idleNanos) {
+        if (evicted) {
+            return true;
+        }
+        if (!sessions.isEmpty() || System.nanoTime() - lastAccess < idleNanos) {
+            return false;
+        }
+        // The stopped clock is queued before the tracker is marked, since the queue ignores evicted trackers
+        if (isClockRunning()) {
+            stopClock();
+            writeQueue.enqueue(this);
+        }
+        evicted = true;
+        return true;
+    }
+
+    /**
+     * Marks the tracker as evicted whether or not it has sessions, stopping its clock
+     * without writing the game, after the games were cleared
+     */
+    public synchronized void discard() {
+        stopClock();
+        evicted = true;
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    public void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    /**
+     * @return Everything sessions are told about the game after the move, read before any later move
+     * @throws MoveLogException if the move could not be logged, in which case it was not made
+     */
+    public synchronized MoveResult makeMove(Session person, ChessMove move, String username)
             throws InvalidMoveException, DataAccessException {
-        if (gameData.game().getTeamTurn() != getTeam(username)) {
+        if (evicted) {
+            throw new GameNotFoundException();
+        }
+        ChessGame.TeamColor mover = getTeam(username);
+        if (gameData.game().getTeamTurn() != mover) {
+            throw new InvalidMoveException();
+        }
+        boolean clockRunning = isClockRunning();
+        long remaining = clockRunning ? getRemainingMillis(mover) : 0;
+        if (clockRunning && remaining <= 0) {
+            endOnTime(mover);
+            throw new InvalidMoveException("out of time");
+        }
+        if (!gameData.game().isLegalMove(move)) {
             throw new InvalidMoveException();
         }
 
-        gameData.game().makeMove(move);
-        gameDAO.updateGame(new GameData(
-                gameData.gameID(),
-                gameData.whiteUsername(),
-                gameData.blackUsername(),
-                gameData.gameName(),
-                gameData.game()));
+        // The game is queued before the move is logged, so it is written before the flush
+        // that deletes the move's segment, and logged before it is changed, so a move that
+        // could not be logged is never made
+        writeQueue.enqueue(this);
+        try {
+            moveLog.appendMove(gameData.gameID(), gameData.game().getMoveCount() + 1, move);
+        }
+        catch (IOException e) {
+            throw new MoveLogException("Error: unable to log move", e);
+        }
+
+        MoveValidationEvent validationEvent = new MoveValidationEvent();
+        validationEvent.begin();
+        long start = System.nanoTime();
+        try {
+            gameData.game().makeMove(move);
+        }
+        finally {
+            MOVE_TIME.recordSince(start);
+            validationEvent.end();
+            if (validationEvent.shouldCommit()) {
+                validationEvent.gameID = gameData.gameID();
+                // A move is two bytes once encoded
+                validationEvent.payloadSize = Short.BYTES;
+                validationEvent.commit();
+            }
+        }
+        if (clockRunning) {
+            gameData.game().setRemainingMillis(mover, remaining + gameData.game().getTimeControl().incrementMillis());
+        }
+        boardSnapshot = null;
+        scheduleFlagCheck();
+        if (gameData.game().isOver() && lobbyFeed != null) {
+            lobbyFeed.gameFinished(gameData.gameID());
+        }
+        return new MoveResult(gameData.game().getBoard().copy(), gameData.game().getGameState(), getNextPlayer(),
+                getClock());
     }
 
-    public void resign(String username) throws DataAccessException, InvalidMoveException {
-        if (getTeam(username) == null || gameData.game().isOver()) {
+    /**
+     * @throws MoveLogException if the resignation could not be logged, in which case the game goes on
+     */
+    public synchronized void resign(String username) throws DataAccessException, InvalidMoveException {
+        if (evicted) {
+            throw new GameNotFoundException();
+        }
+        ChessGame.TeamColor team = getTeam(username);
+        if (team == null || gameData.game().isOver()) {
             throw new InvalidMoveException();
         }
-        gameData.game().resign(getTeam(username));
-        gameDAO.updateGame(new GameData(
-                gameData.gameID(),
-                gameData.whiteUsername(),
-                gameData.blackUsername(),
-                gameData.gameName(),
-                gameData.game()));
+        writeQueue.enqueue(this);
+        try {
+            moveLog.appendResign(gameData.gameID(), gameData.game().getMoveCount(), team);
+        }
+        catch (IOException e) {
+            throw new MoveLogException("Error: unable to log resignation", e);
+        }
+        stopClock();
+        gameData.game().resign(team);
+        if (lobbyFeed != null) {
+            lobbyFeed.gameFinished(gameData.gameID());
+        }
+    }
+
+    /**
+     * @return Each player's remaining time, or null if the game is untimed
+     */
+    public synchronized ClockMessage getClock() {
+        ChessGame game = gameData.game();
+        if (game.getTimeControl() == null) {
+            return null;
+        }
+        if (!isClockRunning()) {
+            return new ClockMessage(game.getRemainingMillis(ChessGame.TeamColor.WHITE),
+                    game.getRemainingMillis(ChessGame.TeamColor.BLACK), null);
+        }
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        long running = Math.max(0, getRemainingMillis(turn));
+        if (turn == ChessGame.TeamColor.WHITE) {
+            return new ClockMessage(running, game.getRemainingMillis(ChessGame.TeamColor.BLACK), turn);
+        }
+        return new ClockMessage(game.getRemainingMillis(ChessGame.TeamColor.WHITE), running, turn);
+    }
+
+    /**
+     * Ends the game if the player to move has run out of time, or checks again once they
+     * will have if the check ran early
+     *
+     * @param moveCount the number of moves made when the check was scheduled
+     */
+    private synchronized void checkFlag(int moveCount) {
+        ChessGame game = gameData.game();
+        if (evicted || !isClockRunning() || game.getMoveCount() != moveCount) {
+            return;
+        }
+        long remaining = getRemainingMillis(game.getTeamTurn());
+        if (remaining > 0) {
+            flagCheck = clocks.schedule(() -> checkFlag(moveCount), remaining);
+            return;
+        }
+        try {
+            endOnTime(game.getTeamTurn());
+        }
+        catch (DataAccessException e) {
+            // The game is still ended in memory and written by the queue
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ends the game as a loss for a player who ran out of time
+     *
+     * @throws MoveLogException if the loss could not be logged, in which case the game goes on
+     *                          until the flag is next checked
+     */
+    private void endOnTime(ChessGame.TeamColor team) throws DataAccessException {
+        writeQueue.enqueue(this);
+        try {
+            moveLog.appendResign(gameData.gameID(), gameData.game().getMoveCount(), team);
+        }
+        catch (IOException e) {
+            throw new MoveLogException("Error: unable to log loss on time", e);
+        }
+        stopClock();
+        gameData.game().setRemainingMillis(team, 0);
+        gameData.game().resign(team);
+        if (lobbyFeed != null) {
+            lobbyFeed.gameFinished(gameData.gameID());
+        }
+        if (clocks != null) {
+            clocks.flagFell(gameData.gameID(), team);
+        }
+    }
+
+    /**
+     * A timed game's clocks start once white has made the first move, and stop when it ends
+     */
+    private boolean isClockRunning() {
+        ChessGame game = gameData.game();
+        return game.getTimeControl() != null && !game.isOver() && game.getMoveCount() > 0;
+    }
+
+    /**
+     * @return The time a player would have left if their turn ended now
+     */
+    private long getRemainingMillis(ChessGame.TeamColor team) {
+        long remaining = gameData.game().getRemainingMillis(team);
+        if (team == gameData.game().getTeamTurn()) {
+            remaining -= TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - turnStarted);
+        }
+        return remaining;
+    }
+
+    /**
+     * Charges the player to move for the time they have taken, then cancels their check
+     */
+    private void stopClock() {
+        if (isClockRunning()) {
+            ChessGame.TeamColor turn = gameData.game().getTeamTurn();
+            gameData.game().setRemainingMillis(turn, Math.max(0, getRemainingMillis(turn)));
+        }
+        if (flagCheck != null) {
+            flagCheck.cancel();
+            flagCheck = null;
+        }
+    }
+
+    /**
+     * Starts the turn of the player to move, replacing the previous player's check with theirs
+     */
+    private void scheduleFlagCheck() {
+        turnStarted = System.nanoTime();
+        if (flagCheck != null) {
+            flagCheck.cancel();
+            flagCheck = null;
+        }
+        if (clocks != null && isClockRunning()) {
+            ChessGame game = gameData.game();
+            int moveCount = game.getMoveCount();
+            flagCheck = clocks.schedule(() -> checkFlag(moveCount), game.getRemainingMillis(game.getTeamTurn()));
+        }
+    }
+
+    /**
+     * @return The board encoded for sessions joining the game, shared by every session that
+     * joins before the next move
+     */
+    public synchronized EncodedMessage getBoardSnapshot() {
+        int version = gameData.game().getMoveCount();
+        if (boardSnapshot == null || boardSnapshotVersion != version) {
+            boardSnapshot = EncodedMessage.of(new LoadGameMessage(gameData.game().getBoard()));
+            boardSnapshotVersion = version;
+        }
+        return boardSnapshot;
+    }
+
+    /**
+     * @return A copy of the game that stays consistent while further moves are made
+     */
+    public synchronized ChessGame snapshotGame() {
+        return gameData.game().copy();
+    }
+
+    public int getGameID() {
+        return gameData.gameID();
     }
 
     public ChessGame getGame() {
@@ -102,17 +427,8 @@ public class GameTracker {
         return null;
     }
 
-    public GameState getGameState() {
-        if (gameData.game().isCheckmate()) {
-            return GameState.CHECKMATE;
-        }
-        if (gameData.game().isCheck()) {
-            return GameState.CHECK;
-        }
-        if (gameData.game().isStalemate()) {
-            return GameState.STALEMATE;
-        }
-        return GameState.NONE;
+    public ChessGame.GameState getGameState() {
+        return gameData.game().getGameState();
     }
 
     public String getNextPlayer() {
@@ -128,10 +444,14 @@ public class GameTracker {
         return gameData.game().validMoves(origin);
     }
 
-    public enum GameState {
-        CHECK,
-        CHECKMATE,
-        STALEMATE,
-        NONE
+    /**
+     * The game as a move left it
+     *
+     * @param board a copy of the board after the move
+     * @param state whether the next player is in check, checkmate or stalemate
+     * @param nextPlayer the player to move next
+     * @param clock each player's remaining time, or null if the game is untimed
+     */
+    public record MoveResult(ChessBoard board, ChessGame.GameState state, String nextPlayer, ClockMessage clock) {
     }
 }
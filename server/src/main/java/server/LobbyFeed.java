@@ -0,0 +1,286 @@
+package server;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+import org.eclipse.jetty.websocket.api.Session;
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LobbyEventMessage;
+import websocket.messages.LobbySnapshotMessage;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes changes to the lobby to subscribed sessions, so clients keep their list of
+ * games current instead of downloading it again.
+ * <p>
+ * A new subscriber is sent a snapshot of every game that is not finished, then each
+ * event as it is published. Events are numbered, and the most recent are kept, so a
+ * subscriber that reconnects with the last number it saw is sent only the events it
+ * missed. Everything runs on a single thread, which keeps events in the order they were
+ * numbered and makes sure a subscriber receives its snapshot before any event.
+ * <p>
+ * Snapshots are read from the DAO on a thread of their own, so a new subscriber never
+ * holds up the events sent to the others. A snapshot is numbered with the last event
+ * published before it was read, and is followed by the events published while it was
+ * being read, which are kept until it is sent. Games are written behind their moves, so
+ * the DAO may not yet know a game is finished; games finished by a published event are
+ * left out of snapshots whatever the DAO says.
+ */
+public class LobbyFeed {
+    public static final int DEFAULT_HISTORY_SIZE = 1024;
+
+    private final GameDAO gameDAO;
+    private final int historySize;
+    private final ExecutorService publisher;
+    private final ExecutorService loader;
+    private final Gson serializer = new Gson();
+
+    // Only used on the publisher thread
+    private final Set<Session> subscribers = new HashSet<>();
+    private final ArrayDeque<LobbyEventMessage> history = new ArrayDeque<>();
+    // The sequence of each snapshot being read, whose later events are kept until it is sent
+    private final PriorityQueue<Long> pinned = new PriorityQueue<>();
+    // Every game finished this epoch, one entry per game
+    private final Set<Integer> finished = new HashSet<>();
+    private String epoch = UUID.randomUUID().toString();
+    private long sequence = 0;
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public LobbyFeed(GameDAO gameDAO) {
+        this(gameDAO, DEFAULT_HISTORY_SIZE);
+    }
+
+    /**
+     * @param historySize how many of the latest events are kept for subscribers that reconnect
+     */
+    public LobbyFeed(GameDAO gameDAO, int historySize) {
+        this.gameDAO = gameDAO;
+        this.historySize = historySize;
+        publisher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lobby-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lobby-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts sending lobby changes to a session
+     *
+     * @param resumeEpoch the epoch of the snapshot the session last saw, or null
+     * @param resumeSequence the sequence of the last event the session saw, or null for a new snapshot
+     */
+    public void subscribe(Session session, String resumeEpoch, Long resumeSequence) {
+        publisher.execute(() -> {
+            if (canResume(resumeEpoch, resumeSequence)) {
+                sendSince(session, resumeSequence);
+                addSubscriber(session);
+            }
+            else {
+                loadSnapshot(session);
+            }
+        });
+    }
+
+    /**
+     * Reads a snapshot for a session on the loader thread, then sends it on the publisher
+     * thread. Only called on the publisher thread.
+     */
+    private void loadSnapshot(Session session) {
+        // Every event numbered up to here was published after its change was made, so the
+        // snapshot includes it
+        String snapshotEpoch = epoch;
+        long snapshotSequence = sequence;
+        pinned.add(snapshotSequence);
+        try {
+            loader.execute(() -> {
+                Collection<ListGameData> games;
+                try {
+                    games = gameDAO.listGames(new ListGamesRequest(null, null, null, null, false), Integer.MAX_VALUE);
+                }
+                catch (DataAccessException e) {
+                    games = null;
+                }
+                Collection<ListGameData> loaded = games;
+                try {
+                    publisher.execute(() -> sendSnapshot(session, snapshotEpoch, snapshotSequence, loaded));
+                }
+                catch (RejectedExecutionException e) {
+                    // The feed is shutting down
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            pinned.remove(snapshotSequence);
+        }
+    }
+
+    /**
+     * Sends a session the snapshot read for it, then the events published while it was
+     * being read, and subscribes the session
+     *
+     * @param games the unfinished games the DAO held, or null if they could not be read
+     */
+    private void sendSnapshot(Session session, String snapshotEpoch, long snapshotSequence,
+                              Collection<ListGameData> games) {
+        if (!snapshotEpoch.equals(epoch)) {
+            // The games were cleared while the snapshot was being read
+            loadSnapshot(session);
+            return;
+        }
+        pinned.remove(snapshotSequence);
+        if (games == null) {
+            trimHistory();
+            send(session, serializer.toJson(new ErrorMessage("unable to load lobby")));
+            session.close();
+            return;
+        }
+        List<ListGameData> unfinished = new ArrayList<>();
+        for (ListGameData game : games) {
+            if (!finished.contains(game.gameID())) {
+                unfinished.add(game);
+            }
+        }
+        send(session, serializer.toJson(new LobbySnapshotMessage(snapshotEpoch, snapshotSequence, unfinished)));
+        sendSince(session, snapshotSequence);
+        trimHistory();
+        addSubscriber(session);
+    }
+
+    private void sendSince(Session session, long lastSequence) {
+        for (LobbyEventMessage event : history) {
+            if (event.getSequence() > lastSequence) {
+                send(session, serializer.toJson(event));
+            }
+        }
+    }
+
+    private void addSubscriber(Session session) {
+        if (subscribers.add(session)) {
+            subscriberCount.incrementAndGet();
+        }
+    }
+
+    public void unsubscribe(Session session) {
+        publisher.execute(() -> {
+            if (subscribers.remove(session)) {
+                subscriberCount.decrementAndGet();
+            }
+        });
+    }
+
+    public void gameCreated(int gameID, String gameName) {
+        publisher.execute(() -> publish(LobbyEventMessage.gameCreated(++sequence, gameID, gameName)));
+    }
+
+    public void seatClaimed(int gameID, ChessGame.TeamColor color, String username) {
+        publisher.execute(() -> publish(LobbyEventMessage.seatClaimed(++sequence, gameID, color, username)));
+    }
+
+    public void seatReleased(int gameID, ChessGame.TeamColor color, String username) {
+        publisher.execute(() -> publish(LobbyEventMessage.seatReleased(++sequence, gameID, color, username)));
+    }
+
+    public void gameFinished(int gameID) {
+        publisher.execute(() -> {
+            finished.add(gameID);
+            publish(LobbyEventMessage.gameFinished(++sequence, gameID));
+        });
+    }
+
+    /**
+     * Starts a new epoch after every game was cleared, sending each subscriber an empty snapshot
+     */
+    public void reset() {
+        publisher.execute(() -> {
+            epoch = UUID.randomUUID().toString();
+            sequence = 0;
+            history.clear();
+            pinned.clear();
+            finished.clear();
+            sendToAll(new LobbySnapshotMessage(epoch, sequence, List.of()));
+        });
+    }
+
+    public int getSubscribers() {
+        return subscriberCount.get();
+    }
+
+    public void shutdown() {
+        loader.shutdownNow();
+        publisher.shutdownNow();
+    }
+
+    private boolean canResume(String resumeEpoch, Long resumeSequence) {
+        if (resumeSequence == null || !epoch.equals(resumeEpoch) || resumeSequence > sequence) {
+            return false;
+        }
+        // The events after the one the session saw must all still be held
+        long oldestHeld = history.isEmpty() ? sequence + 1 : history.getFirst().getSequence();
+        return resumeSequence >= oldestHeld - 1;
+    }
+
+    private void publish(LobbyEventMessage event) {
+        history.addLast(event);
+        trimHistory();
+        sendToAll(event);
+    }
+
+    /**
+     * Drops the oldest events past the history size, unless a snapshot being read still needs them
+     */
+    private void trimHistory() {
+        while (history.size() > historySize
+                && (pinned.isEmpty() || history.getFirst().getSequence() <= pinned.peek())) {
+            history.removeFirst();
+        }
+    }
+
+    private void sendToAll(ServerMessage message) {
+        String json = serializer.toJson(message);
+        for (Session session : List.copyOf(subscribers)) {
+            send(session, json);
+        }
+    }
+
+    private void send(Session session, String json) {
+        if (!session.isOpen()) {
+            if (subscribers.remove(session)) {
+                subscriberCount.decrementAndGet();
+            }
+            return;
+        }
+        try {
+            session.getRemote().sendString(json);
+        }
+        catch (IOException e) {
+            // The session is dropped rather than left to miss events; it can resume on reconnecting
+            if (subscribers.remove(session)) {
+                subscriberCount.decrementAndGet();
+            }
+            session.close();
+        }
+    }
+}
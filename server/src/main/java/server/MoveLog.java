@@ -0,0 +1,323 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+import model.GameData;
+import websocket.BinaryProtocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of accepted moves and resignations, kept on local disk so moves
+ * waiting in the {@link WriteBehindQueue} survive a crash of the server.
+ * <p>
+ * The log is split into fixed size segment files, each mapped into memory, so appending
+ * a record is a copy into the mapping rather than a system call. Once a segment fills up
+ * a new one is started, and the full one is forced to disk on a background thread so
+ * the record that filled it is not held up. Segments are deleted once every move in
+ * them has been written to the database.
+ * <p>
+ * Each record holds a length, a CRC32 checksum of its body, and a body made of the
+ * game ID, the game's move count after the record, the record type, and either the
+ * encoded move or the resigning team. Reading a segment stops at the first record that
+ * is zeroed, truncated or fails its checksum, since that is where a crash cut it short.
+ */
+public class MoveLog implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "moves-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final byte MOVE = 1;
+    private static final byte RESIGN = 2;
+
+    // Game ID, sequence, type and a two byte payload
+    private static final int BODY_SIZE = 4 + 4 + 1 + 2;
+    private static final int RECORD_SIZE = 4 + 4 + BODY_SIZE;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 checksum = new CRC32();
+
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+
+    // Forces closed segments to disk off the threads appending to the log
+    private final ExecutorService syncer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "move-log-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MoveLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the log, starting a new segment after any left behind by a previous run.
+     * Those segments are kept until {@link #replay} has applied them.
+     *
+     * @param directory where the segment files are kept
+     * @param segmentSize the size in bytes of each segment file
+     */
+    public MoveLog(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < RECORD_SIZE + 4) {
+            throw new IllegalArgumentException("Error: segment size too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        List<Integer> existing = new ArrayList<>(listSegments().keySet());
+        segmentIndex = existing.isEmpty() ? 0 : existing.getLast();
+        openSegment(segmentIndex + 1);
+    }
+
+    /**
+     * Records a move that was accepted for a game
+     *
+     * @param sequence the game's move count once the move was made
+     */
+    public synchronized void appendMove(int gameID, int sequence, ChessMove move) throws IOException {
+        append(gameID, sequence, MOVE, BinaryProtocol.encodeMove(move));
+    }
+
+    /**
+     * Records a resignation that was accepted for a game
+     *
+     * @param sequence the game's move count when the team resigned
+     */
+    public synchronized void appendResign(int gameID, int sequence, ChessGame.TeamColor team) throws IOException {
+        append(gameID, sequence, RESIGN, (short) team.ordinal());
+    }
+
+    /**
+     * Applies every record left by a previous run to the games stored in the DAO, then
+     * deletes those segments. Moves the stored game already contains are skipped, so
+     * replaying a segment more than once is harmless.
+     *
+     * @return The number of games that were updated
+     * @throws DataAccessException if the replayed games could not be written. The
+     *                             segments are kept so replay can be tried again.
+     */
+    public int replay(GameDAO gameDAO) throws IOException, DataAccessException {
+        Map<Integer, Path> segments;
+        synchronized (this) {
+            segments = listSegments().headMap(segmentIndex);
+        }
+
+        Map<Integer, List<Record>> records = new HashMap<>();
+        for (Path path : segments.values()) {
+            for (Record record : readSegment(path)) {
+                records.computeIfAbsent(record.gameID(), gameID -> new ArrayList<>()).add(record);
+            }
+        }
+
+        Map<Integer, ChessGame> games = new HashMap<>();
+        for (Map.Entry<Integer, List<Record>> entry : records.entrySet()) {
+            GameData gameData = gameDAO.getGame(entry.getKey());
+            if (gameData == null) {
+                continue;
+            }
+
+            ChessGame game = gameData.game();
+            game.startup();
+            if (apply(game, entry.getValue())) {
+                games.put(entry.getKey(), game);
+            }
+        }
+
+        if (!games.isEmpty()) {
+            gameDAO.updateGameStates(games);
+        }
+        for (Path path : segments.values()) {
+            Files.deleteIfExists(path);
+        }
+        return games.size();
+    }
+
+    /**
+     * @return The index of the newest segment that is no longer being appended to
+     */
+    public synchronized int getLastClosedSegment() {
+        return segmentIndex - 1;
+    }
+
+    /**
+     * Deletes every closed segment up to and including the given index, once the moves
+     * in them are known to be in the database
+     */
+    public synchronized void deleteSegmentsThrough(int index) throws IOException {
+        for (Path path : listSegments().headMap(Math.min(index, segmentIndex - 1), true).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one, so the current segment can be
+     * deleted by the next {@link #deleteSegmentsThrough}
+     */
+    public synchronized void roll() throws IOException {
+        MappedByteBuffer closed = segment;
+        openSegment(segmentIndex + 1);
+        syncer.execute(closed::force);
+    }
+
+    /**
+     * Deletes every segment and starts a new one, after the games were cleared
+     */
+    public synchronized void reset() throws IOException {
+        for (Path path : listSegments().values()) {
+            Files.deleteIfExists(path);
+        }
+        openSegment(segmentIndex + 1);
+    }
+
+    /**
+     * Forces the current segment to disk, after waiting for closed segments to be forced
+     */
+    @Override
+    public synchronized void close() {
+        syncer.shutdown();
+        try {
+            syncer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+    }
+
+    private void append(int gameID, int sequence, byte type, short payload) throws IOException {
+        if (segment.remaining() < RECORD_SIZE + 4) {
+            roll();
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(BODY_SIZE);
+        body.putInt(gameID).putInt(sequence).put(type).putShort(payload);
+        checksum.reset();
+        checksum.update(body.array());
+
+        // The length goes in last, so a record cut short by a crash still reads as the end of the log
+        int start = segment.position();
+        segment.position(start + 4);
+        segment.putInt((int) checksum.getValue());
+        segment.put(body.array());
+        segment.putInt(start, BODY_SIZE);
+    }
+
+    /**
+     * Applies a game's records in order, skipping those the game already contains
+     *
+     * @return True if the game was changed
+     */
+    private boolean apply(ChessGame game, List<Record> records) {
+        boolean changed = false;
+        for (Record record : records) {
+            if (record.type() == RESIGN) {
+                if (!game.isOver() && record.sequence() == game.getMoveCount()) {
+                    game.resign(ChessGame.TeamColor.values()[record.payload()]);
+                    changed = true;
+                }
+                continue;
+            }
+
+            if (record.sequence() <= game.getMoveCount()) {
+                continue;
+            }
+            if (record.sequence() != game.getMoveCount() + 1) {
+                // A gap means the stored game is missing moves the log cannot supply
+                break;
+            }
+            try {
+                game.makeMove(BinaryProtocol.decodeMove(record.payload()));
+                changed = true;
+            }
+            catch (InvalidMoveException | IllegalArgumentException e) {
+                break;
+            }
+        }
+        return changed;
+    }
+
+    private List<Record> readSegment(Path path) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 recordChecksum = new CRC32();
+            byte[] body = new byte[BODY_SIZE];
+
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int length = buffer.getInt();
+                if (length != BODY_SIZE) {
+                    break;
+                }
+                int expected = buffer.getInt();
+                buffer.get(body);
+                recordChecksum.reset();
+                recordChecksum.update(body);
+                if ((int) recordChecksum.getValue() != expected) {
+                    break;
+                }
+
+                ByteBuffer fields = ByteBuffer.wrap(body);
+                records.add(new Record(fields.getInt(), fields.getInt(), fields.get(), fields.getShort()));
+            }
+        }
+        return records;
+    }
+
+    private void openSegment(int index) throws IOException {
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentIndex = index;
+    }
+
+    /**
+     * @return Every segment file in the directory, keyed and ordered by index
+     */
+    private TreeMap<Integer, Path> listSegments() throws IOException {
+        TreeMap<Integer, Path> segments = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        int index = Integer.parseInt(
+                                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(index, path);
+                    }
+                    catch (NumberFormatException e) {
+                        // Not a segment written by this log
+                    }
+                }
+            }
+        }
+        return segments;
+    }
+
+    private record Record(int gameID, int sequence, byte type, short payload) {
+    }
+}
@@ -0,0 +1,13 @@
+package server;
+
+import dataaccess.DataAccessException;
+
+/**
+ * Indicates a move or resignation could not be written to the {@link MoveLog}, so it was
+ * not made
+ */
+public class MoveLogException extends DataAccessException {
+    public MoveLogException(String message, Throwable ex) {
+        super(message, ex);
+    }
+}
@@ -0,0 +1,103 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numbers the messages broadcast to a game and keeps the most recent, so a session
+ * that reconnects can be sent only the messages it missed. Each message is kept with
+ * the session it was not sent to, so a session is not replayed what it was spared.
+ * <p>
+ * A buffer's numbers start from the time it was created, shifted left, so numbers
+ * handed out by a buffer that was since dropped, including by an earlier run of the
+ * server, are always below the ones this buffer can replay. A session resuming with
+ * one of those is told to load the game again instead.
+ * <p>
+ * Callers lock the buffer while numbering and sending a message, so every session of
+ * the game receives messages in the order they were numbered.
+ */
+public class ReplayBuffer {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Entry[] ring;
+    private final long firstSequence;
+    private long sequence;
+
+    public ReplayBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity how many of the latest messages are kept
+     */
+    public ReplayBuffer(int capacity) {
+        ring = new Entry[capacity];
+        firstSequence = System.currentTimeMillis() << 16;
+        sequence = firstSequence - 1;
+    }
+
+    /**
+     * Numbers a message sent to every session and keeps it
+     *
+     * @return The message's sequence number
+     */
+    public synchronized long record(ServerMessage message) {
+        return record(message, null, null);
+    }
+
+    /**
+     * Numbers a message and keeps it, replacing the oldest kept message once the buffer is full
+     *
+     * @param excluded the session the message was not sent to, or null
+     * @param excludedUser the user of that session, whose later sessions are not replayed
+     *                     the message either, or null
+     * @return The message's sequence number
+     */
+    public synchronized long record(ServerMessage message, Session excluded, String excludedUser) {
+        sequence++;
+        message.setSequence(sequence);
+        ring[(int) (sequence % ring.length)] = new Entry(message, excluded, excludedUser);
+        return sequence;
+    }
+
+    /**
+     * @return The messages numbered after the given one, in order, or null if some of
+     * them are no longer kept or the number was not handed out by this buffer
+     */
+    public synchronized List<Entry> since(long lastSequence) {
+        if (lastSequence < firstSequence - 1 || lastSequence > sequence || sequence - lastSequence > ring.length) {
+            return null;
+        }
+        var missed = new ArrayList<Entry>((int) (sequence - lastSequence));
+        for (long next = lastSequence + 1; next <= sequence; next++) {
+            missed.add(ring[(int) (next % ring.length)]);
+        }
+        return missed;
+    }
+
+    /**
+     * @return The number of the latest message, which a session that loads the game now has seen the effects of
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * A kept message and who it was not sent to
+     *
+     * @param excluded the session the message was not sent to, or null
+     * @param excludedUser the user of that session, or null
+     */
+    public record Entry(ServerMessage message, Session excluded, String excludedUser) {
+
+        /**
+         * @return Whether the message was kept from a session, or from its user on an earlier session
+         */
+        public boolean excludes(Session session, String username) {
+            return session.equals(excluded) || excludedUser != null && excludedUser.equals(username);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package server;
 
+import chess.PositionCache;
 import dataaccess.*;
 import handler.*;
 import handler.ExceptionHandler;
 import io.javalin.*;
 import io.javalin.http.*;
+import metrics.MetricsRegistry;
 import service.AdminService;
 import service.GameService;
+import service.PasswordHasher;
+import service.RecordingService;
 import service.UserService;
 
 /**
@@ -15,42 +19,106 @@ import service.UserService;
 public class Server {
 
     private final Javalin javalin;
+    private final GameManager gameManager;
+    private final DataAccess dataAccess;
+    private final PasswordHasher passwordHasher;
+    private final WebSocketHandler webSocketHandler;
 
     public Server() {
         try {
-            // Initialize DAOs
-            AuthDAO authDAO = new SQLAuthDAO();
-            GameDAO gameDAO = new SQLGameDAO();
-            UserDAO userDAO = new SQLUserDAO();
+            MetricsRegistry metrics = MetricsRegistry.DEFAULT;
+
+            // Initialize DAOs for the configured storage backend
+            dataAccess = DataAccess.fromConfiguration();
+            CachingAuthDAO authDAO = new CachingAuthDAO(TimedDAO.wrap(AuthDAO.class, dataAccess.authDAO(), "auth"));
+            GameDAO gameDAO = TimedDAO.wrap(GameDAO.class, dataAccess.gameDAO(), "game");
+            UserDAO userDAO = TimedDAO.wrap(UserDAO.class, dataAccess.userDAO(), "user");
+
+            gameManager = new GameManager(gameDAO);
 
             // Initialize Handlers
-            AdminHandler adminHandler = new AdminHandler(new AdminService(authDAO, gameDAO, userDAO));
-            GameHandler gameHandler = new GameHandler(new GameService(authDAO, gameDAO));
-            UserHandler userHandler = new UserHandler(new UserService(authDAO, userDAO));
+            AdminHandler adminHandler = new AdminHandler(
+                    new AdminService(authDAO, gameDAO, userDAO, gameManager), RecordingService.fromConfiguration());
+            GameHandler gameHandler = new GameHandler(
+                    new GameService(authDAO, gameDAO, dataAccess.executor(), gameManager.getLobbyFeed()));
+            passwordHasher = PasswordHasher.fromConfiguration();
+            UserHandler userHandler = new UserHandler(
+                    new UserService(authDAO, userDAO, dataAccess.executor(), passwordHasher));
             ExceptionHandler exceptionHandler = new ExceptionHandler();
-            WebSocketHandler webSocketHandler = new WebSocketHandler(authDAO, gameDAO);
+            webSocketHandler = new WebSocketHandler(
+                    AsyncDAOs.auth(authDAO, dataAccess.executor()), gameManager);
+            LobbyHandler lobbyHandler = new LobbyHandler(
+                    AsyncDAOs.auth(authDAO, dataAccess.executor()), gameManager.getLobbyFeed());
+            MetricsHandler metricsHandler = new MetricsHandler(metrics);
+
+            // Register gauges, which are only read when the metrics are scraped
+            metrics.gauge("chess_resident_games", "Games held in memory by a GameTracker",
+                    gameManager::getResidentGames);
+            metrics.gauge("chess_pending_game_writes", "Games waiting in the write-behind queue",
+                    gameManager::getPendingWrites);
+            SessionRegistry sessions = gameManager.getConnections().getSessions();
+            metrics.gauge("chess_websocket_sessions", "Registered websocket sessions, by whether they are still open",
+                    sessions::getLive, "state", "live");
+            metrics.gauge("chess_websocket_sessions", "Registered websocket sessions, by whether they are still open",
+                    sessions::getLeaked, "state", "leaked");
+            metrics.counter("chess_websocket_sessions_reaped_total",
+                    "Sessions removed by the reaper because their close was never handled",
+                    gameManager::getReapedSessions);
+            GameManager.ConnectionManager connections = gameManager.getConnections();
+            metrics.gauge("chess_spectators", "Websocket sessions watching a game in memory rather than playing it",
+                    connections::getSpectatorCount);
+            metrics.counter("chess_spectator_sends_deferred_total",
+                    "Times a spectator was skipped because it was over its send budget",
+                    connections.getSpectators()::getDeferred);
+            metrics.gauge("chess_lobby_subscribers", "Websocket sessions subscribed to the lobby feed",
+                    gameManager.getLobbyFeed()::getSubscribers);
+            metrics.gauge("chess_game_clocks_pending", "Timed games waiting for a player to run out of time",
+                    gameManager.getClocks()::getPending);
+            metrics.gauge("chess_position_cache_size", "Positions whose valid moves are shared between games",
+                    PositionCache.SHARED::getSize);
+            metrics.counter("chess_position_cache_hits_total", "Positions reached whose analysis was already cached",
+                    PositionCache.SHARED::getHits);
+            metrics.counter("chess_position_cache_misses_total", "Positions reached that had to be analyzed",
+                    PositionCache.SHARED::getMisses);
+            metrics.gauge("chess_password_queue_length", "Password hashes waiting for a hashing thread",
+                    passwordHasher::getQueueLength);
+            metrics.counter("chess_password_rejected_total",
+                    "Password hashes turned away because the queue was full", passwordHasher::getRejected);
+            metrics.gauge("chess_auth_cache_size", "Auth tokens held in the auth cache", authDAO::getSize);
+            metrics.counter("chess_auth_cache_hits_total", "Auth lookups answered by the cache", authDAO::getHits);
+            metrics.counter("chess_auth_cache_misses_total", "Auth lookups that reached the database",
+                    authDAO::getMisses);
 
             javalin = Javalin.create(config -> config.staticFiles.add("web"));
 
             // Register endpoints
-            javalin.delete("/db", adminHandler::clear);
-            javalin.post("/user", userHandler::register);
-            javalin.post("/session", userHandler::login);
-            javalin.delete("/session", userHandler::logout);
-            javalin.get("/game", gameHandler::listGames);
-            javalin.post("/game", gameHandler::createGame);
-            javalin.put("/game", gameHandler::joinGame);
+            javalin.delete("/db", metricsHandler.timed("DELETE", "/db", adminHandler::clear));
+            javalin.post("/user", metricsHandler.timedAsync("POST", "/user", userHandler::register));
+            javalin.post("/session", metricsHandler.timedAsync("POST", "/session", userHandler::login));
+            javalin.delete("/session", metricsHandler.timed("DELETE", "/session", userHandler::logout));
+            javalin.get("/game", metricsHandler.timed("GET", "/game", gameHandler::listGames));
+            javalin.post("/game", metricsHandler.timed("POST", "/game", gameHandler::createGame));
+            javalin.put("/game", metricsHandler.timedAsync("PUT", "/game", gameHandler::joinGame));
+            javalin.get("/metrics", metricsHandler::metrics);
+            javalin.post("/recording", adminHandler::startRecording);
+            javalin.delete("/recording", adminHandler::stopRecording);
 
             // Register exception handlers
             javalin.exception(HttpResponseException.class, exceptionHandler::httpExceptionHandler);
             javalin.exception(DataAccessException.class, exceptionHandler::dataExceptionHandler);
 
             // Register websocket handler
+            javalin.wsBeforeUpgrade("/ws", webSocketHandler::acceptSubprotocol);
             javalin.ws("/ws", ws -> {
                 ws.onConnect(webSocketHandler);
                 ws.onMessage(webSocketHandler);
+                ws.onBinaryMessage(webSocketHandler);
                 ws.onClose(webSocketHandler);
             });
+            javalin.ws("/ws/lobby", ws -> {
+                ws.onConnect(lobbyHandler);
+                ws.onClose(lobbyHandler);
+            });
         }
         catch (DataAccessException e) {
             throw new RuntimeException(e);
@@ -71,9 +139,20 @@ public class Server {
     }
 
     /**
-     * Stops the server
+     * Stops the server, along with every thread and connection it started, so it can be
+     * started again in the same process
      */
     public void stop() {
         javalin.stop();
+        webSocketHandler.shutdown();
+        passwordHasher.shutdown();
+        try {
+            // Games are written before the DAOs are closed
+            gameManager.shutdown();
+            dataAccess.close();
+        }
+        catch (DataAccessException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
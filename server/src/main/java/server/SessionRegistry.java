@@ -0,0 +1,118 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks every websocket session, along with the user it belongs to and the games it is
+ * connected to, so everything held for a session can be found and removed when it closes
+ * without searching every game.
+ * <p>
+ * Sessions that vanish without a close frame are never reported closed, so they are
+ * found by checking each registered session, which a reaper does periodically.
+ */
+public class SessionRegistry {
+    private final ConcurrentHashMap<Session, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param binary whether the session negotiated the binary subprotocol
+     */
+    public void register(Session session, boolean binary) {
+        entries.put(session, new Entry(binary));
+    }
+
+    /**
+     * Records the user a session belongs to once a command from it is authenticated
+     */
+    public void identify(Session session, String username) {
+        entry(session).username = username;
+    }
+
+    /**
+     * @return The user the session belongs to, or null if none of its commands were authenticated yet
+     */
+    public String getUsername(Session session) {
+        Entry entry = entries.get(session);
+        return entry == null ? null : entry.username;
+    }
+
+    public boolean isBinary(Session session) {
+        Entry entry = entries.get(session);
+        return entry != null && entry.binary;
+    }
+
+    public void join(Session session, int gameID) {
+        entry(session).gameIDs.add(gameID);
+    }
+
+    public void leave(Session session, int gameID) {
+        Entry entry = entries.get(session);
+        if (entry != null) {
+            entry.gameIDs.remove(gameID);
+        }
+    }
+
+    /**
+     * Forgets a session
+     *
+     * @return The games the session was connected to, or null if it was already forgotten
+     */
+    public Set<Integer> unregister(Session session) {
+        Entry entry = entries.remove(session);
+        return entry == null ? null : entry.gameIDs;
+    }
+
+    /**
+     * @return Every registered session that is no longer open
+     */
+    public List<Session> findClosed() {
+        var closed = new ArrayList<Session>();
+        for (Session session : entries.keySet()) {
+            if (!session.isOpen()) {
+                closed.add(session);
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * @return How many registered sessions are open
+     */
+    public int getLive() {
+        return entries.size() - getLeaked();
+    }
+
+    /**
+     * @return How many registered sessions closed without being forgotten, and wait for the reaper
+     */
+    public int getLeaked() {
+        int leaked = 0;
+        for (Session session : entries.keySet()) {
+            if (!session.isOpen()) {
+                leaked++;
+            }
+        }
+        return leaked;
+    }
+
+    /**
+     * Sessions used before being registered, as in tests, are taken to use JSON text frames
+     */
+    private Entry entry(Session session) {
+        return entries.computeIfAbsent(session, ignored -> new Entry(false));
+    }
+
+    private static class Entry {
+        private final boolean binary;
+        private final Set<Integer> gameIDs = ConcurrentHashMap.newKeySet();
+        private volatile String username = null;
+
+        private Entry(boolean binary) {
+            this.binary = binary;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the messages broadcast to a game to its spectators on a slower tier than its players
+ * <p>
+ * Once a game has enough spectators, they are no longer sent each message as it is
+ * broadcast. Only the latest board and clock are held instead, along with every
+ * notification, and each spectator is sent those once the window closes, so a game's
+ * audience costs a few sends per spectator per window however quickly moves are made.
+ * A move's result is held as its board, notifications and clock. Each spectator
+ * also has a budget of bytes per second; one that is over it is skipped, and is sent
+ * the latest state once it has budget again. Players, and the spectators of games with
+ * small audiences, are sent every message straight away.
+ */
+public class SpectatorTier {
+    public static final String WINDOW_PROPERTY = "chess.spectators.window";
+    public static final String THRESHOLD_PROPERTY = "chess.spectators.threshold";
+    public static final String BUDGET_PROPERTY = "chess.spectators.budget";
+
+    public static final int DEFAULT_WINDOW_MILLIS = 250;
+    public static final int DEFAULT_THRESHOLD = 100;
+    public static final int DEFAULT_BUDGET = 16 * 1024;
+
+    private final long windowMillis;
+    private final int threshold;
+    private final int budget;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder deferred = new LongAdder();
+
+    public SpectatorTier() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_THRESHOLD, DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param windowMillis how long messages for spectators are held before the latest are sent,
+     *                     or zero to send spectators every message straight away
+     * @param threshold how many spectators a game needs before their messages are held
+     * @param budget how many bytes per second may be sent to each spectator, on average
+     */
+    public SpectatorTier(int windowMillis, int threshold, int budget) {
+        this.windowMillis = windowMillis;
+        this.threshold = threshold;
+        this.budget = budget;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spectator-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a tier configured by the {@code chess.spectators.window}, {@code chess.spectators.threshold}
+     * and {@code chess.spectators.budget} system properties
+     */
+    public static SpectatorTier fromConfiguration() {
+        return new SpectatorTier(
+                Integer.getInteger(WINDOW_PROPERTY, DEFAULT_WINDOW_MILLIS),
+                Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD),
+                Integer.getInteger(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * @return A feed holding the messages for one game's spectators
+     */
+    public Feed newFeed() {
+        return new Feed();
+    }
+
+    /**
+     * Runs a flush of a feed once the window closes, unless the tier was shut down
+     */
+    public void schedule(Runnable flush) {
+        try {
+            scheduler.schedule(flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            // The server is stopping, and held messages are no longer sent
+        }
+    }
+
+    /**
+     * @return How many times a spectator was skipped because it was over its send budget
+     */
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A message broadcast to a game, encoded for both kinds of session
+     *
+     * @param sequence the message's sequence number
+     * @param excluded the session the message is not sent to, or null
+     * @param json the text it is sent to JSON sessions as
+     * @param frame the frame it is sent to binary sessions as
+     */
+    public record Update(long sequence, Session excluded, String json, byte[] frame) {
+        private int size(boolean binary) {
+            return binary ? frame.length : json.length();
+        }
+    }
+
+    /**
+     * The spectators of one game and the latest messages they have yet to be sent.
+     * Callers lock the game's replay buffer while using a feed, so spectators are sent
+     * messages in the order they were numbered.
+     */
+    public class Feed {
+        private final ConcurrentHashMap<Session, Viewer> viewers = new ConcurrentHashMap<>();
+        private Update board = null;
+        private Update clock = null;
+        private final List<Update> notifications = new ArrayList<>();
+        private boolean flushScheduled = false;
+
+        /**
+         * Adds a spectator, which has seen every message up to the given sequence number
+         */
+        public void watch(Session session, long sequence) {
+            viewers.put(session, new Viewer(sequence));
+        }
+
+        public void unwatch(Session session) {
+            viewers.remove(session);
+        }
+
+        public boolean isWatching(Session session) {
+            return viewers.containsKey(session);
+        }
+
+        /**
+         * @return Whether messages for this game's spectators are held rather than sent
+         * straight away, which continues until every spectator has caught up
+         */
+        public boolean isHolding() {
+            return windowMillis > 0 && (viewers.size() >= threshold || hasPending());
+        }
+
+        /**
+         * Holds a message for the spectators. A board or clock replaces the one held
+         * before it, since only the latest matters, but every notification is kept.
+         *
+         * @return Whether the feed needs a flush scheduled, because none is yet
+         */
+        public boolean hold(ServerMessage.ServerMessageType type, Update update) {
+            switch (type) {
+                case LOAD_GAME -> board = update;
+                case CLOCK -> clock = update;
+                default -> notifications.add(update);
+            }
+            if (flushScheduled) {
+                return false;
+            }
+            flushScheduled = true;
+            return true;
+        }
+
+        /**
+         * Sends each spectator the held messages it has not seen, if it has the budget for them
+         *
+         * @return Whether some spectators are still behind, and the feed needs another flush
+         */
+        public boolean flush(SessionRegistry sessions) {
+            // Parts of one move share its number, and are sent as board, notifications, then clock
+            List<Update> updates = new ArrayList<>();
+            if (board != null) {
+                updates.add(board);
+            }
+            updates.addAll(notifications);
+            if (clock != null) {
+                updates.add(clock);
+            }
+            updates.sort(Comparator.comparingLong(Update::sequence));
+            long latest = updates.isEmpty() ? 0 : updates.getLast().sequence();
+            long now = System.nanoTime();
+            boolean behind = false;
+            for (Map.Entry<Session, Viewer> entry : viewers.entrySet()) {
+                Session session = entry.getKey();
+                Viewer viewer = entry.getValue();
+                if (viewer.sequence >= latest || !session.isOpen()) {
+                    continue;
+                }
+                boolean binary = sessions.isBinary(session);
+                int size = 0;
+                for (Update update : updates) {
+                    if (update.sequence() > viewer.sequence && !session.equals(update.excluded())) {
+                        size += update.size(binary);
+                    }
+                }
+                if (!viewer.spend(size, now)) {
+                    deferred.increment();
+                    behind = true;
+                    continue;
+                }
+                // Sends are queued rather than waited on, so a slow spectator holds up no one
+                for (Update update : updates) {
+                    if (update.sequence() <= viewer.sequence || session.equals(update.excluded())) {
+                        continue;
+                    }
+                    if (binary) {
+                        session.getRemote().sendBytes(ByteBuffer.wrap(update.frame()),
+                                GameManager.ConnectionManager.SEND_FAILED);
+                    }
+                    else {
+                        session.getRemote().sendString(update.json(), GameManager.ConnectionManager.SEND_FAILED);
+                    }
+                }
+                viewer.sequence = latest;
+            }
+            flushScheduled = behind;
+            if (!behind) {
+                board = null;
+                clock = null;
+                notifications.clear();
+            }
+            return behind;
+        }
+
+        private boolean hasPending() {
+            return board != null || clock != null || !notifications.isEmpty();
+        }
+
+        /**
+         * @return How many spectators are watching the game
+         */
+        public int getViewers() {
+            return viewers.size();
+        }
+    }
+
+    private class Viewer {
+        // The latest message the spectator has seen
+        private long sequence;
+
+        // Bytes the spectator may be sent, refilled at the budget each second
+        private double allowance = budget;
+        private long refilled = System.nanoTime();
+
+        private Viewer(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Takes bytes from the spectator's allowance. A spectator with any allowance left
+         * may go into debt, so messages larger than the budget are still sent.
+         *
+         * @return False if the spectator has no allowance left, and should not be sent anything
+         */
+        private boolean spend(int size, long now) {
+            allowance = Math.min(budget, allowance + (now - refilled) * budget / 1e9);
+            refilled = now;
+            if (allowance <= 0) {
+                return false;
+            }
+            allowance -= size;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package server;
+
+import chess.ChessGame;
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists game state in the background, so moves can be broadcast as soon as they
+ * are validated in memory instead of waiting on the database.
+ * <p>
+ * Updates are coalesced per game, so only the latest state of a game is written.
+ * Pending games are flushed in a single batch once enough of them are waiting, or
+ * after a fixed interval, whichever comes first. Until then the moves are kept in the
+ * {@link MoveLog}, whose closed segments are deleted once a full flush has written them.
+ */
+public class WriteBehindQueue {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+    private final GameDAO gameDAO;
+    private final MoveLog moveLog;
+    private final int batchSize;
+    private final ConcurrentHashMap<Integer, GameTracker> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    // Held for the whole of every flush, so a synchronous flush also waits for one already writing
+    private final Object flushLock = new Object();
+
+    public WriteBehindQueue(GameDAO gameDAO, MoveLog moveLog) {
+        this(gameDAO, moveLog, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    public WriteBehindQueue(GameDAO gameDAO, MoveLog moveLog, int batchSize, Duration flushInterval) {
+        this.gameDAO = gameDAO;
+        this.moveLog = moveLog;
+        this.batchSize = batchSize;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushInBackground, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks a game as needing to be written. The state written is whatever the
+     * tracker holds at the time of the flush.
+     */
+    public void enqueue(GameTracker tracker) {
+        if (tracker.isEvicted()) {
+            // The game was cleared, or its final state was already queued
+            return;
+        }
+        pending.put(tracker.getGameID(), tracker);
+        if (pending.size() >= batchSize) {
+            flusher.execute(this::flushInBackground);
+        }
+    }
+
+    /**
+     * Writes every pending game, then deletes the log segments that closed before the flush
+     *
+     * @throws DataAccessException if the batch could not be written. The games remain pending.
+     */
+    public void flush() throws DataAccessException {
+        synchronized (flushLock) {
+            // Every move in a closed segment was queued before the segment closed, so the
+            // games it touched are either in this batch or were written by an earlier flush
+            int closedSegment = moveLog.getLastClosedSegment();
+
+            Map<Integer, GameTracker> batch = new HashMap<>();
+            for (Integer gameID : pending.keySet()) {
+                GameTracker tracker = pending.remove(gameID);
+                if (tracker != null) {
+                    batch.put(gameID, tracker);
+                }
+            }
+            write(batch);
+
+            try {
+                moveLog.deleteSegmentsThrough(closedSegment);
+            }
+            catch (IOException e) {
+                throw new DataAccessException("Error: unable to delete move log segments", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a single game if it is pending, waiting for any flush already in progress
+     *
+     * @throws DataAccessException if the game could not be written. The game remains pending.
+     */
+    public void flush(int gameID) throws DataAccessException {
+        synchronized (flushLock) {
+            GameTracker tracker = pending.remove(gameID);
+            if (tracker != null) {
+                write(Map.of(gameID, tracker));
+            }
+        }
+    }
+
+    /**
+     * Discards every pending game without writing it
+     */
+    public void clear() {
+        synchronized (flushLock) {
+            pending.clear();
+        }
+    }
+
+    public int getPendingGames() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the background flusher and writes every pending game, leaving the move log empty
+     */
+    public void shutdown() throws DataAccessException {
+        flusher.shutdown();
+        try {
+            moveLog.roll();
+        }
+        catch (IOException e) {
+            throw new DataAccessException("Error: unable to roll move log", e);
+        }
+        flush();
+        moveLog.close();
+    }
+
+    private void write(Map<Integer, GameTracker> batch) throws DataAccessException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, ChessGame> games = new HashMap<>();
+        for (Map.Entry<Integer, GameTracker> entry : batch.entrySet()) {
+            games.put(entry.getKey(), entry.getValue().snapshotGame());
+        }
+
+        try {
+            gameDAO.updateGameStates(games);
+        } catch (DataAccessException e) {
+            // Requeue the games, unless a newer update was queued in the meantime
+            batch.forEach(pending::putIfAbsent);
+            throw e;
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
 import dataaccess.UserDAO;
+import server.GameManager;
 
 import java.util.UUID;
 
@@ -11,14 +12,26 @@ public class AdminService {
     private final AuthDAO authDAO;
     private final GameDAO gameDAO;
     private final UserDAO userDAO;
+    private final GameManager gameManager;
 
     public AdminService(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO) {
+        this(authDAO, gameDAO, userDAO, null);
+    }
+
+    /**
+     * @param gameManager the manager whose games in memory are forgotten when the games are cleared
+     */
+    public AdminService(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO, GameManager gameManager) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
         this.userDAO = userDAO;
+        this.gameManager = gameManager;
     }
 
     public void clear() throws DataAccessException {
+        if (gameManager != null) {
+            gameManager.clear();
+        }
         authDAO.clear();
         gameDAO.clear();
         userDAO.clear();
@@ -1,5 +1,10 @@
 package service;
 
+import chess.ChessGame;
+import chess.TimeControl;
+import dataaccess.AsyncAuthDAO;
+import dataaccess.AsyncDAOs;
+import dataaccess.AsyncGameDAO;
 import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.GameDAO;
@@ -7,83 +12,162 @@ import io.javalin.http.BadRequestResponse;
 import io.javalin.http.ForbiddenResponse;
 import io.javalin.http.UnauthorizedResponse;
 import model.AuthData;
-import model.GameData;
+import server.LobbyFeed;
 import serviceobjects.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class GameService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final AuthDAO authDAO;
     private final GameDAO gameDAO;
+    private final AsyncAuthDAO asyncAuthDAO;
+    private final AsyncGameDAO asyncGameDAO;
+    private final LobbyFeed lobbyFeed;
 
     public GameService(AuthDAO authDAO, GameDAO gameDAO) {
+        this(authDAO, gameDAO, AsyncDAOs.DIRECT);
+    }
+
+    /**
+     * @param daoExecutor where DAO calls made asynchronously run
+     */
+    public GameService(AuthDAO authDAO, GameDAO gameDAO, Executor daoExecutor) {
+        this(authDAO, gameDAO, daoExecutor, null);
+    }
+
+    /**
+     * @param daoExecutor where DAO calls made asynchronously run
+     * @param lobbyFeed where games being created and seats being claimed are published, or null
+     */
+    public GameService(AuthDAO authDAO, GameDAO gameDAO, Executor daoExecutor, LobbyFeed lobbyFeed) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
+        this.asyncAuthDAO = AsyncDAOs.auth(authDAO, daoExecutor);
+        this.asyncGameDAO = AsyncDAOs.game(gameDAO, daoExecutor);
+        this.lobbyFeed = lobbyFeed;
     }
 
+    /**
+     * Lists one page of games. The first page is returned when no cursor is given, and a
+     * page of {@link #DEFAULT_PAGE_SIZE} games when no size is given.
+     */
     public ListGamesResult listGames(ListGamesRequest listGamesRequest, String authToken)
-            throws UnauthorizedResponse, DataAccessException {
+            throws UnauthorizedResponse, BadRequestResponse, DataAccessException {
+        if (listGamesRequest == null) {
+            listGamesRequest = new ListGamesRequest();
+        }
+        int pageSize = listGamesRequest.pageSize() == null ? DEFAULT_PAGE_SIZE : listGamesRequest.pageSize();
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestResponse("Error: bad request");
+        }
+
         if (authDAO.getAuth(authToken) == null) {
             throw new UnauthorizedResponse("Error: unauthorized");
         }
 
-        return new ListGamesResult(gameDAO.listGames());
+        // One game past the page is read to learn whether another page follows
+        List<ListGameData> games = gameDAO.listGames(listGamesRequest, pageSize + 1);
+        if (games.size() <= pageSize) {
+            return new ListGamesResult(games);
+        }
+        List<ListGameData> page = new ArrayList<>(games.subList(0, pageSize));
+        return new ListGamesResult(page, page.getLast().gameID());
+    }
+
+    /**
+     * Reads how many times the games could have changed, without reading the games
+     *
+     * @return A number that changes whenever a listing may have, as described by
+     * {@link GameDAO#getCatalogVersion}
+     */
+    public long getCatalogVersion(String authToken) throws UnauthorizedResponse, DataAccessException {
+        if (authDAO.getAuth(authToken) == null) {
+            throw new UnauthorizedResponse("Error: unauthorized");
+        }
+        return gameDAO.getCatalogVersion();
     }
 
+    /**
+     * Creates a game, timed if the request gives a base time
+     */
     public CreateGameResult createGame(CreateGameRequest createGameRequest, String authToken)
             throws UnauthorizedResponse, DataAccessException {
         if (createGameRequest.gameName() == null) {
             throw new BadRequestResponse("Error: bad request");
         }
+        Integer baseSeconds = createGameRequest.baseSeconds();
+        Integer incrementSeconds = createGameRequest.incrementSeconds();
+        if ((baseSeconds != null && baseSeconds <= 0) || (incrementSeconds != null && incrementSeconds < 0)
+                || (baseSeconds == null && incrementSeconds != null)) {
+            throw new BadRequestResponse("Error: bad request");
+        }
 
         if (authDAO.getAuth(authToken) == null) {
             throw new UnauthorizedResponse("Error: unauthorized");
         }
 
-        return gameDAO.createGame(createGameRequest.gameName());
+        ChessGame game = new ChessGame();
+        if (baseSeconds != null) {
+            long incrementMillis = incrementSeconds == null ? 0 : incrementSeconds * 1000L;
+            game.setTimeControl(new TimeControl(baseSeconds * 1000L, incrementMillis));
+        }
+        CreateGameResult createGameResult = gameDAO.createGame(createGameRequest.gameName(), game);
+        if (lobbyFeed != null) {
+            lobbyFeed.gameCreated(createGameResult.gameID(), createGameRequest.gameName());
+        }
+        return createGameResult;
     }
 
     public void joinGame(JoinGameRequest joinGameRequest, String authToken)
             throws UnauthorizedResponse, ForbiddenResponse, BadRequestResponse, DataAccessException {
-        AuthData authData = authDAO.getAuth(authToken);
-        if (authData == null) {
-            throw new UnauthorizedResponse("Error: unauthorized");
-        }
+        AsyncDAOs.await(joinGameAsync(joinGameRequest, authToken));
+    }
 
-        GameData game = gameDAO.getGame(joinGameRequest.gameID());
-        if (game == null) {
-            throw new BadRequestResponse("Error: bad request");
-        }
+    /**
+     * Joins a game without blocking, looking up the user and the game at the same time
+     *
+     * @return A future failing with the same exceptions {@link #joinGame} throws
+     */
+    public CompletableFuture<Void> joinGameAsync(JoinGameRequest joinGameRequest, String authToken) {
+        CompletableFuture<AuthData> authLookup = asyncAuthDAO.getAuth(authToken);
+        CompletableFuture<ListGameData> gameLookup = asyncGameDAO.getGameMetadata(joinGameRequest.gameID());
 
-        GameData newGame;
-        if (Objects.equals(joinGameRequest.playerColor(), "WHITE")) {
-            if (game.whiteUsername() != null) {
-                throw new ForbiddenResponse("Error: already taken");
+        return authLookup.thenCombine(gameLookup, (authData, game) -> {
+            if (authData == null) {
+                throw new UnauthorizedResponse("Error: unauthorized");
             }
-            newGame = new GameData(
-                    game.gameID(),
-                    authData.username(),
-                    game.blackUsername(),
-                    game.gameName(),
-                    game.game()
-            );
-        }
-        else if (Objects.equals(joinGameRequest.playerColor(), "BLACK")) {
-            if (game.blackUsername() != null) {
-                throw new ForbiddenResponse("Error: already taken");
+            if (game == null) {
+                throw new BadRequestResponse("Error: bad request");
+            }
+            return authData.username();
+        }).thenCompose(username -> {
+            ChessGame.TeamColor color;
+            if (Objects.equals(joinGameRequest.playerColor(), "WHITE")) {
+                color = ChessGame.TeamColor.WHITE;
+            }
+            else if (Objects.equals(joinGameRequest.playerColor(), "BLACK")) {
+                color = ChessGame.TeamColor.BLACK;
+            }
+            else {
+                throw new BadRequestResponse("Error: bad request");
             }
-            newGame = new GameData(
-                    game.gameID(),
-                    game.whiteUsername(),
-                    authData.username(),
-                    game.gameName(),
-                    game.game()
-            );
-        }
-        else {
-            throw new BadRequestResponse("Error: bad request");
-        }
 
-        gameDAO.updateGame(newGame);
+            // Only touches the seat, so a game in progress is never read or rewritten
+            return asyncGameDAO.claimSeat(joinGameRequest.gameID(), color, username).thenAccept(claimed -> {
+                if (!claimed) {
+                    throw new ForbiddenResponse("Error: already taken");
+                }
+                if (lobbyFeed != null) {
+                    lobbyFeed.seatClaimed(joinGameRequest.gameID(), color, username);
+                }
+            });
+        });
     }
 }
@@ -0,0 +1,172 @@
+package service;
+
+import io.javalin.http.ServiceUnavailableResponse;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and checks passwords with BCrypt on a pool of its own
+ * <p>
+ * Each hash takes tens of milliseconds of CPU, so running them on the request threads
+ * lets a burst of logins starve every other endpoint. Here they run on at most one
+ * thread per core, behind a short queue. Once the queue is full, further requests fail
+ * straight away with a 503 rather than waiting behind work that will take too long.
+ */
+public class PasswordHasher {
+    public static final String COST_PROPERTY = "chess.bcrypt.cost";
+    public static final String THREADS_PROPERTY = "chess.bcrypt.threads";
+    public static final String QUEUE_PROPERTY = "chess.bcrypt.queue";
+
+    public static final int DEFAULT_COST = 10;
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_CAPACITY = DEFAULT_THREADS * 16;
+
+    private static final Histogram HASH_TIME = MetricsRegistry.DEFAULT.histogram(
+            "chess_password_hash_seconds", "Time spent computing a BCrypt hash", "operation", "hash");
+    private static final Histogram CHECK_TIME = MetricsRegistry.DEFAULT.histogram(
+            "chess_password_hash_seconds", "Time spent computing a BCrypt hash", "operation", "check");
+    private static final Histogram QUEUE_WAIT = MetricsRegistry.DEFAULT.histogram(
+            "chess_password_queue_wait_seconds", "Time password hashes spent queued before starting");
+
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHasher() {
+        this(DEFAULT_COST, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param cost the BCrypt cost new hashes are made with. Each step doubles the time a hash takes.
+     * @param threads how many hashes may run at once
+     * @param queueCapacity how many hashes may wait to run before more are turned away
+     */
+    public PasswordHasher(int cost, int threads, int queueCapacity) {
+        this(cost, newExecutor(threads, queueCapacity));
+    }
+
+    PasswordHasher(int cost, ThreadPoolExecutor executor) {
+        this.cost = cost;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a hasher configured by the {@code chess.bcrypt.cost}, {@code chess.bcrypt.threads}
+     * and {@code chess.bcrypt.queue} system properties
+     */
+    public static PasswordHasher fromConfiguration() {
+        return new PasswordHasher(
+                Integer.getInteger(COST_PROPERTY, DEFAULT_COST),
+                Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS),
+                Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * @return A future for the hash, failing with ServiceUnavailableResponse if too many hashes are waiting
+     */
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)), HASH_TIME);
+    }
+
+    /**
+     * @return A future for whether the password matches the hash, failing with
+     * ServiceUnavailableResponse if too many hashes are waiting
+     */
+    public CompletableFuture<Boolean> check(String password, String hashedPassword) {
+        return submit(() -> BCrypt.checkpw(password, hashedPassword), CHECK_TIME);
+    }
+
+    /**
+     * @return True if the hash was made with a different cost than new hashes are
+     */
+    public boolean needsRehash(String hashedPassword) {
+        return costOf(hashedPassword) != cost;
+    }
+
+    /**
+     * Stops the hashing threads once the hashes already queued have run, turning away any more
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getQueueLength() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Reads the cost out of a hash of the form {@code $2a$10$...}
+     *
+     * @return The cost, or -1 if the hash is not in that form
+     */
+    static int costOf(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return -1;
+        }
+        int costStart = hashedPassword.indexOf('$', 1) + 1;
+        if (costStart == 0 || costStart + 2 > hashedPassword.length()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(costStart, costStart + 2));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work, Histogram workTime) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                QUEUE_WAIT.record(start - queued);
+                try {
+                    result.complete(work.get());
+                }
+                catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+                finally {
+                    workTime.recordSince(start);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(new ServiceUnavailableResponse("Error: server busy"));
+        }
+        return result;
+    }
+}
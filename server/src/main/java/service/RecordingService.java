@@ -0,0 +1,123 @@
+package service;
+
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ConflictResponse;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.UnauthorizedResponse;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import metrics.AuthLookupEvent;
+import metrics.BroadcastEvent;
+import metrics.CommandParseEvent;
+import metrics.GameWriteEvent;
+import metrics.MoveValidationEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Starts and stops flight recordings of the running server, so a slow stage of the
+ * move pipeline can be found without attaching a profiler
+ * <p>
+ * A recording holds the server's system properties and environment, database
+ * credentials included, so only an administrator may take one. Administrators present
+ * the token set by the {@code chess.adminToken} system property, and recordings cannot
+ * be taken at all if it is not set.
+ */
+public class RecordingService {
+    public static final String ADMIN_TOKEN_PROPERTY = "chess.adminToken";
+
+    private static final List<Class<? extends jdk.jfr.Event>> MOVE_PIPELINE_EVENTS = List.of(
+            CommandParseEvent.class,
+            AuthLookupEvent.class,
+            MoveValidationEvent.class,
+            GameWriteEvent.class,
+            BroadcastEvent.class
+    );
+
+    private final byte[] adminToken;
+    private Recording recording = null;
+
+    /**
+     * @param adminToken the token administrators present, or null to refuse every recording
+     */
+    public RecordingService(String adminToken) {
+        this.adminToken = adminToken == null || adminToken.isEmpty()
+                ? null : adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a service accepting the token set by the {@code chess.adminToken} system property
+     */
+    public static RecordingService fromConfiguration() {
+        return new RecordingService(System.getProperty(ADMIN_TOKEN_PROPERTY));
+    }
+
+    /**
+     * Starts a recording of every move pipeline event, along with the JDK's own events
+     *
+     * @param settings the JDK event settings to use, "default" or "profile". Null selects "default".
+     */
+    public synchronized void startRecording(String settings, String adminToken)
+            throws UnauthorizedResponse, ForbiddenResponse, BadRequestResponse, ConflictResponse {
+        authorize(adminToken);
+        if (recording != null) {
+            throw new ConflictResponse("Error: recording already in progress");
+        }
+
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? "default" : settings);
+        }
+        catch (IOException | ParseException e) {
+            throw new BadRequestResponse("Error: bad request");
+        }
+
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("chess");
+        for (Class<? extends jdk.jfr.Event> eventType : MOVE_PIPELINE_EVENTS) {
+            newRecording.enable(eventType).withoutThreshold();
+        }
+        newRecording.start();
+        recording = newRecording;
+    }
+
+    /**
+     * Stops the recording in progress
+     *
+     * @return The recording, in the JFR file format
+     */
+    public synchronized byte[] stopRecording(String adminToken)
+            throws UnauthorizedResponse, ForbiddenResponse, ConflictResponse, IOException {
+        authorize(adminToken);
+        if (recording == null) {
+            throw new ConflictResponse("Error: no recording in progress");
+        }
+
+        Path file = Files.createTempFile("chess-", ".jfr");
+        try {
+            recording.stop();
+            recording.dump(file);
+            return Files.readAllBytes(file);
+        }
+        finally {
+            recording.close();
+            recording = null;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void authorize(String token) throws UnauthorizedResponse, ForbiddenResponse {
+        if (adminToken == null) {
+            throw new ForbiddenResponse("Error: recording is disabled");
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new UnauthorizedResponse("Error: unauthorized");
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package service;
 
+import dataaccess.AsyncAuthDAO;
+import dataaccess.AsyncDAOs;
+import dataaccess.AsyncUserDAO;
 import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.UserDAO;
@@ -8,68 +11,103 @@ import io.javalin.http.ForbiddenResponse;
 import io.javalin.http.UnauthorizedResponse;
 import model.AuthData;
 import model.UserData;
-import org.mindrot.jbcrypt.BCrypt;
 import serviceobjects.*;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class UserService {
     private final AuthDAO authDAO;
     private final UserDAO userDAO;
+    private final AsyncAuthDAO asyncAuthDAO;
+    private final AsyncUserDAO asyncUserDAO;
+    private final PasswordHasher passwordHasher;
 
     public UserService(AuthDAO authDAO, UserDAO userDAO) {
+        this(authDAO, userDAO, AsyncDAOs.DIRECT, new PasswordHasher());
+    }
+
+    /**
+     * @param daoExecutor where DAO calls made asynchronously run
+     * @param passwordHasher hashes and checks passwords off the request threads
+     */
+    public UserService(AuthDAO authDAO, UserDAO userDAO, Executor daoExecutor, PasswordHasher passwordHasher) {
         this.authDAO = authDAO;
         this.userDAO = userDAO;
+        this.asyncAuthDAO = AsyncDAOs.auth(authDAO, daoExecutor);
+        this.asyncUserDAO = AsyncDAOs.user(userDAO, daoExecutor);
+        this.passwordHasher = passwordHasher;
     }
 
     public RegisterResult register(RegisterRequest registerRequest)
             throws ForbiddenResponse, DataAccessException, BadRequestResponse {
+        return AsyncDAOs.await(registerAsync(registerRequest));
+    }
+
+    /**
+     * Registers a user without blocking while their password is hashed
+     *
+     * @return A future failing with the same exceptions {@link #register} throws, or with
+     * ServiceUnavailableResponse if too many passwords are waiting to be hashed
+     */
+    public CompletableFuture<RegisterResult> registerAsync(RegisterRequest registerRequest) {
         if (
                 registerRequest.username() == null ||
                 registerRequest.password() == null ||
                 registerRequest.email() == null
         ) {
-            throw new BadRequestResponse("Error: bad request");
-        }
-
-        UserData user = userDAO.getUser(registerRequest.username());
-        if (user != null) {
-            throw new ForbiddenResponse("Error: already taken");
+            return CompletableFuture.failedFuture(new BadRequestResponse("Error: bad request"));
         }
 
-        String hashedPassword = BCrypt.hashpw(registerRequest.password(), BCrypt.gensalt());
-        userDAO.createUser(new UserData(
+        return asyncUserDAO.getUser(registerRequest.username()).thenCompose(user -> {
+            if (user != null) {
+                throw new ForbiddenResponse("Error: already taken");
+            }
+            return passwordHasher.hash(registerRequest.password());
+        }).thenCompose(hashedPassword -> asyncUserDAO.createUser(new UserData(
                 registerRequest.username(),
                 hashedPassword,
-                registerRequest.email()));
-
-        String authToken = generateToken();
-        authDAO.createAuth(new AuthData(authToken, registerRequest.username()));
-
-        return new RegisterResult(registerRequest.username(), authToken);
+                registerRequest.email()))
+        ).thenCompose(ignored -> createAuth(registerRequest.username()))
+                .thenApply(authToken -> new RegisterResult(registerRequest.username(), authToken));
     }
 
     public LoginResult login(LoginRequest loginRequest)
             throws UnauthorizedResponse, DataAccessException {
+        return AsyncDAOs.await(loginAsync(loginRequest));
+    }
+
+    /**
+     * Logs a user in without blocking while their password is checked. If their password
+     * was hashed at a different cost than is configured, it is rehashed in the background.
+     *
+     * @return A future failing with the same exceptions {@link #login} throws, or with
+     * ServiceUnavailableResponse if too many passwords are waiting to be checked
+     */
+    public CompletableFuture<LoginResult> loginAsync(LoginRequest loginRequest) {
         if (
                 loginRequest.username() == null ||
                 loginRequest.password() == null
         ) {
-            throw new BadRequestResponse("Error: bad request");
+            return CompletableFuture.failedFuture(new BadRequestResponse("Error: bad request"));
         }
 
-        UserData user = userDAO.getUser(loginRequest.username());
-        if (user == null) {
-            throw new UnauthorizedResponse("Error: unauthorized");
-        }
-        else if (!BCrypt.checkpw(loginRequest.password(), user.password())) {
-            throw new UnauthorizedResponse("Error: unauthorized");
-        }
-
-        String authToken = generateToken();
-        authDAO.createAuth(new AuthData(authToken, loginRequest.username()));
-
-        return new LoginResult(loginRequest.username(), authToken);
+        return asyncUserDAO.getUser(loginRequest.username()).thenCompose(user -> {
+            if (user == null) {
+                throw new UnauthorizedResponse("Error: unauthorized");
+            }
+            return passwordHasher.check(loginRequest.password(), user.password()).thenApply(matches -> {
+                if (!matches) {
+                    throw new UnauthorizedResponse("Error: unauthorized");
+                }
+                if (passwordHasher.needsRehash(user.password())) {
+                    rehash(user.username(), loginRequest.password());
+                }
+                return user;
+            });
+        }).thenCompose(user -> createAuth(loginRequest.username()))
+                .thenApply(authToken -> new LoginResult(loginRequest.username(), authToken));
     }
 
     public void logout(LogoutRequest logoutRequest, String authToken)
@@ -81,6 +119,24 @@ public class UserService {
         authDAO.deleteAuth(authToken);
     }
 
+    /**
+     * Replaces a password hash made at an old cost. The login does not wait for it, and it
+     * is skipped if the hasher is busy, since it will be tried again on the next login.
+     */
+    private void rehash(String username, String password) {
+        passwordHasher.hash(password)
+                .thenCompose(hashedPassword -> asyncUserDAO.updatePassword(username, hashedPassword))
+                .exceptionally(failure -> false);
+    }
+
+    /**
+     * @return A future for a new auth token for the user
+     */
+    private CompletableFuture<String> createAuth(String username) {
+        String authToken = generateToken();
+        return asyncAuthDAO.createAuth(new AuthData(authToken, username)).thenApply(ignored -> authToken);
+    }
+
     private String generateToken() {
         return UUID.randomUUID().toString();
     }
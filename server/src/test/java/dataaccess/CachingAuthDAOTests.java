@@ -0,0 +1,78 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class CachingAuthDAOTests {
+
+    private MemoryAuthDAO memoryAuthDAO;
+    private CachingAuthDAO cachingAuthDAO;
+
+    private final String authToken = "authToken";
+    private final AuthData defaultAuth = new AuthData(authToken, "username");
+
+    @BeforeEach
+    public void resetCache() {
+        memoryAuthDAO = new MemoryAuthDAO();
+        cachingAuthDAO = new CachingAuthDAO(memoryAuthDAO, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void getAuthHitsCache() throws DataAccessException {
+        cachingAuthDAO.createAuth(defaultAuth);
+
+        cachingAuthDAO.getAuth(authToken);
+        memoryAuthDAO.clear();
+
+        Assertions.assertEquals(defaultAuth, cachingAuthDAO.getAuth(authToken),
+                "Second lookup did not come from the cache");
+        Assertions.assertEquals(1, cachingAuthDAO.getHits(), "Incorrect hit count");
+        Assertions.assertEquals(1, cachingAuthDAO.getMisses(), "Incorrect miss count");
+    }
+
+    @Test
+    public void unknownTokenCachedThenReplacedOnCreate() throws DataAccessException {
+        Assertions.assertNull(cachingAuthDAO.getAuth(authToken), "Unknown token was found");
+        Assertions.assertNull(cachingAuthDAO.getAuth(authToken), "Unknown token was found");
+        Assertions.assertEquals(1, cachingAuthDAO.getHits(), "Unknown token was not cached");
+
+        cachingAuthDAO.createAuth(defaultAuth);
+
+        Assertions.assertEquals(defaultAuth, cachingAuthDAO.getAuth(authToken),
+                "Created token was hidden by the cached lookup");
+    }
+
+    @Test
+    public void deleteAuthInvalidates() throws DataAccessException {
+        cachingAuthDAO.createAuth(defaultAuth);
+        cachingAuthDAO.getAuth(authToken);
+
+        cachingAuthDAO.deleteAuth(authToken);
+
+        Assertions.assertNull(cachingAuthDAO.getAuth(authToken), "Deleted token was still cached");
+    }
+
+    @Test
+    public void clearInvalidates() throws DataAccessException {
+        cachingAuthDAO.createAuth(defaultAuth);
+        cachingAuthDAO.getAuth(authToken);
+
+        cachingAuthDAO.clear();
+
+        Assertions.assertNull(cachingAuthDAO.getAuth(authToken), "Cleared token was still cached");
+    }
+
+    @Test
+    public void cacheIsBounded() throws DataAccessException {
+        for (int i = 0; i < 5; i++) {
+            cachingAuthDAO.getAuth(authToken + i);
+        }
+
+        Assertions.assertEquals(2, cachingAuthDAO.getSize(), "Cache grew past its maximum size");
+        Assertions.assertEquals(3, cachingAuthDAO.getEvictions(), "Incorrect eviction count");
+    }
+}
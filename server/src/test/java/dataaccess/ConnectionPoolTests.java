@@ -0,0 +1,140 @@
+package dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectionPoolTests {
+
+    private final List<FakeConnection> physicalConnections = new ArrayList<>();
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void resetPool() {
+        physicalConnections.clear();
+        pool = new ConnectionPool(this::connect, 0, 1, Duration.ofMinutes(1), Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void returnedConnectionIsReused() throws SQLException {
+        pool.getConnection().close();
+        pool.getConnection().close();
+
+        Assertions.assertEquals(1, pool.getCreated(), "Returned connection was not reused");
+        Assertions.assertEquals(1, pool.getIdle(), "Connection was not returned to the pool");
+    }
+
+    @Test
+    public void acquireTimesOutWhenExhausted() throws SQLException {
+        try (Connection ignored = pool.getConnection()) {
+            Assertions.assertThrows(SQLTransientConnectionException.class, pool::getConnection,
+                    "Acquiring past the maximum size did not time out");
+        }
+
+        Assertions.assertEquals(1, pool.getTimeouts(), "Timeout was not counted");
+        pool.getConnection().close();
+    }
+
+    @Test
+    public void uncommittedWorkIsRolledBack() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+        }
+
+        FakeConnection physical = physicalConnections.getFirst();
+        Assertions.assertTrue(physical.rolledBack, "Uncommitted work was not rolled back");
+        Assertions.assertTrue(physical.autoCommit, "Auto commit was not restored");
+    }
+
+    @Test
+    public void returnedConnectionRejectsCalls() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        Assertions.assertTrue(connection.isClosed(), "Returned connection was not closed");
+        Assertions.assertThrows(SQLException.class, () -> connection.setAutoCommit(false),
+                "Returned connection could still be used");
+    }
+
+    @Test
+    public void prewarmOpensMinimumSize() throws SQLException {
+        try (ConnectionPool warmed = new ConnectionPool(this::connect, 2, 3, Duration.ofMinutes(1),
+                Duration.ofMillis(50))) {
+            warmed.prewarm();
+            Assertions.assertEquals(2, warmed.getCreated(), "Minimum connections were not opened");
+            Assertions.assertEquals(2, warmed.getIdle(), "Opened connections were not pooled");
+
+            warmed.getConnection().close();
+            warmed.prewarm();
+            Assertions.assertEquals(2, warmed.getCreated(), "Prewarmed connection was not reused");
+        }
+    }
+
+    @Test
+    public void brokenConnectionIsNotReused() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            physicalConnections.getFirst().valid = false;
+            Assertions.assertThrows(SQLException.class, connection::commit, "Broken connection did not fail");
+        }
+
+        Assertions.assertEquals(0, pool.getIdle(), "Broken connection was returned to the pool");
+        Assertions.assertTrue(physicalConnections.getFirst().closed, "Broken connection was not closed");
+        pool.getConnection().close();
+        Assertions.assertEquals(2, pool.getCreated(), "Broken connection was handed out again");
+    }
+
+    @Test
+    public void failedStatementKeepsValidConnection() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            Assertions.assertThrows(SQLException.class, connection::commit, "Failing call did not fail");
+        }
+
+        Assertions.assertEquals(1, pool.getIdle(), "Valid connection was not returned to the pool");
+    }
+
+    private Connection connect() {
+        FakeConnection fake = new FakeConnection();
+        physicalConnections.add(fake);
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAutoCommit" -> fake.autoCommit;
+                    case "setAutoCommit" -> {
+                        fake.autoCommit = (Boolean) args[0];
+                        yield null;
+                    }
+                    case "rollback" -> {
+                        fake.rolledBack = true;
+                        yield null;
+                    }
+                    case "isValid" -> fake.valid;
+                    case "commit" -> throw new SQLException("Error: commit failed");
+                    case "isClosed" -> fake.closed;
+                    case "close" -> {
+                        fake.closed = true;
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static class FakeConnection {
+        private boolean autoCommit = true;
+        private boolean rolledBack = false;
+        private boolean closed = false;
+        private boolean valid = true;
+    }
+}
@@ -0,0 +1,119 @@
+package dataaccess;
+
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class FileStoreTests {
+
+    private Path dataDirectory;
+    private Path file;
+
+    private final UserData alice = new UserData("alice", "password", "alice@mail.com");
+    private final UserData bob = new UserData("bob", "password", "bob@mail.com");
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        dataDirectory = Files.createTempDirectory("data");
+        file = dataDirectory.resolve("user.log");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dataDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void reopenRecoversChanges() throws DataAccessException {
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            store.put("alice", new UserData("alice", "old", "old@mail.com"));
+            store.putAll(Map.of("alice", alice, "bob", bob));
+            store.remove("bob");
+        }
+
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            Assertions.assertEquals(alice, store.get("alice"), "Latest value was not recovered");
+            Assertions.assertNull(store.get("bob"), "Removed value was recovered");
+        }
+    }
+
+    @Test
+    public void damagedTailIsDropped() throws DataAccessException, IOException {
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            store.put("alice", alice);
+            store.put("bob", bob);
+        }
+        long intactSize;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // Corrupt the last byte of bob's record, as a torn write would
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+            intactSize = raf.length();
+        }
+
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            Assertions.assertEquals(alice, store.get("alice"), "Intact record was not recovered");
+            Assertions.assertNull(store.get("bob"), "Damaged record was recovered");
+            Assertions.assertTrue(Files.size(file) < intactSize, "Damaged record was not truncated");
+            store.put("bob", bob);
+        }
+
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            Assertions.assertEquals(bob, store.get("bob"), "Write after recovery was not kept");
+        }
+    }
+
+    @Test
+    public void compactionKeepsCurrentValues() throws DataAccessException, IOException {
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, true)) {
+            for (int i = 0; i < 20000; i++) {
+                store.put("alice", new UserData("alice", "password" + i, "alice@mail.com"));
+            }
+            store.put("alice", alice);
+            store.put("bob", bob);
+            Assertions.assertTrue(Files.size(file) < 1024 * 1024 + 1024, "Log was not compacted");
+        }
+
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            Assertions.assertEquals(alice, store.get("alice"), "Value was lost in compaction");
+            Assertions.assertEquals(bob, store.get("bob"), "Value was lost in compaction");
+            store.clear();
+        }
+
+        try (FileStore<UserData> store = new FileStore<>(file, UserData.class, false)) {
+            Assertions.assertTrue(store.values().isEmpty(), "Cleared values were recovered");
+        }
+    }
+
+    @Test
+    public void gameNamesStayUniqueAfterReopen() throws DataAccessException {
+        try (FileGameDAO gameDAO = new FileGameDAO(dataDirectory, false)) {
+            gameDAO.createGame("opening");
+            Assertions.assertThrows(DataAccessException.class, () -> gameDAO.createGame("opening"),
+                    "Duplicate game name was accepted");
+        }
+
+        try (FileGameDAO gameDAO = new FileGameDAO(dataDirectory, false)) {
+            Assertions.assertThrows(DataAccessException.class, () -> gameDAO.createGame("opening"),
+                    "Duplicate game name was accepted after reopening");
+            gameDAO.clear();
+            Assertions.assertEquals(1, gameDAO.createGame("opening").gameID(), "Cleared game name was kept");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import serviceobjects.ListGameData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MemoryDAOTests {
+
+    private MemoryGameDAO memoryGameDAO;
+
+    @BeforeEach
+    public void resetDAO() {
+        memoryGameDAO = new MemoryGameDAO();
+    }
+
+    @Test
+    public void concurrentCreatesGetUniqueIDs() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String gameName = "game" + i;
+                results.add(executor.submit(() -> memoryGameDAO.createGame(gameName).gameID()));
+            }
+            Set<Integer> gameIDs = new HashSet<>();
+            for (int i = 0; i < results.size(); i++) {
+                int gameID = results.get(i).get();
+                gameIDs.add(gameID);
+                Assertions.assertEquals(gameID, (int) memoryGameDAO.getGameID("game" + i), "Name index is wrong");
+            }
+
+            Assertions.assertEquals(1000, gameIDs.size(), "Game IDs were reused");
+            Assertions.assertEquals(1000, memoryGameDAO.listGames().size(), "Games were lost");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void onlyOneClaimWins() throws Exception {
+        int gameID = memoryGameDAO.createGame("gameName").gameID();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String username = "user" + i;
+                results.add(executor.submit(() ->
+                        memoryGameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, username)));
+            }
+            int wins = 0;
+            for (Future<Boolean> result : results) {
+                wins += result.get() ? 1 : 0;
+            }
+
+            Assertions.assertEquals(1, wins, "Seat was claimed more than once");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void listingIsASnapshot() throws DataAccessException {
+        int gameID = memoryGameDAO.createGame("gameName").gameID();
+        Collection<ListGameData> before = memoryGameDAO.listGames();
+
+        memoryGameDAO.claimSeat(gameID, ChessGame.TeamColor.BLACK, "username");
+        memoryGameDAO.createGame("otherGame");
+
+        Assertions.assertEquals(List.of(new ListGameData(gameID, null, null, "gameName")), before,
+                "Earlier listing changed");
+        Assertions.assertEquals(new ListGameData(gameID, null, "username", "gameName"),
+                memoryGameDAO.listGames().iterator().next(), "Listing was not refreshed");
+        Assertions.assertEquals(2, memoryGameDAO.listGames().size(), "Listing was not refreshed");
+    }
+
+    @Test
+    public void staleUpdateConflicts() throws DataAccessException {
+        int gameID = memoryGameDAO.createGame("gameName").gameID();
+        GameData read = memoryGameDAO.getGame(gameID);
+        memoryGameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "username");
+
+        UpdateResult stale = memoryGameDAO.updateGame(read);
+        Assertions.assertTrue(stale.isConflict(), "Update from a stale read was applied");
+        Assertions.assertEquals("username", memoryGameDAO.getGame(gameID).whiteUsername(), "Seat was overwritten");
+
+        GameData reread = memoryGameDAO.getGame(gameID);
+        Assertions.assertEquals(reread.version(), stale.version(), "Conflict did not report the current version");
+        UpdateResult fresh = memoryGameDAO.updateGame(reread);
+        Assertions.assertFalse(fresh.isConflict(), "Update from a fresh read was refused");
+        Assertions.assertEquals(reread.version() + 1, memoryGameDAO.getGame(gameID).version(),
+                "Version was not bumped");
+    }
+
+    @Test
+    public void catalogVersionCountsListedChanges() throws DataAccessException {
+        long start = memoryGameDAO.getCatalogVersion();
+        int gameID = memoryGameDAO.createGame("gameName").gameID();
+        long created = memoryGameDAO.getCatalogVersion();
+        Assertions.assertTrue(created > start, "Creating a game did not change the version");
+
+        memoryGameDAO.updateGameStates(Map.of(gameID, new ChessGame()));
+        memoryGameDAO.releaseSeat(gameID, ChessGame.TeamColor.WHITE, "username");
+        Assertions.assertEquals(created, memoryGameDAO.getCatalogVersion(), "Unlisted change bumped the version");
+
+        memoryGameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "username");
+        long claimed = memoryGameDAO.getCatalogVersion();
+        Assertions.assertTrue(claimed > created, "Claiming a seat did not change the version");
+
+        memoryGameDAO.clear();
+        Assertions.assertTrue(memoryGameDAO.getCatalogVersion() > claimed, "Clearing did not change the version");
+    }
+}
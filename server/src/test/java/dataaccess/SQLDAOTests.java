@@ -8,6 +8,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
 public class SQLDAOTests {
 
     private final SQLAuthDAO sqlAuthDAO = new SQLAuthDAO();
@@ -46,6 +50,30 @@ public class SQLDAOTests {
         memoryUserDAO.clear();
     }
 
+    @Test
+    public void reloadedPropertiesReplaceThePool() throws DataAccessException, SQLException {
+        DatabaseManager.getConnection().close();
+
+        Properties unreachable = new Properties();
+        unreachable.setProperty("db.name", "chess");
+        unreachable.setProperty("db.user", "nobody");
+        unreachable.setProperty("db.password", "wrong");
+        unreachable.setProperty("db.host", "localhost");
+        unreachable.setProperty("db.port", "100000");
+        DatabaseManager.loadProperties(unreachable);
+        try {
+            Assertions.assertThrows(DataAccessException.class, DatabaseManager::getConnection,
+                    "Connection was taken from the pool opened with the old properties");
+        }
+        finally {
+            DatabaseManager.loadPropertiesFromResources();
+        }
+
+        try (Connection connection = DatabaseManager.getConnection()) {
+            Assertions.assertTrue(connection.isValid(1), "Connection with the restored properties was not usable");
+        }
+    }
+
     @Test
     public void createAuth() throws DataAccessException {
         sqlAuthDAO.createAuth(defaultAuth);
@@ -187,6 +215,53 @@ public class SQLDAOTests {
                 "SQL Exception not thrown");
     }
 
+    @Test
+    public void updateGameConflict() throws DataAccessException {
+        sqlGameDAO.createGame(gameName);
+        sqlGameDAO.updateGame(defaultGame);
+
+        UpdateResult result = sqlGameDAO.updateGame(defaultGame);
+
+        Assertions.assertTrue(result.isConflict(), "Update with a stale version was applied");
+        Assertions.assertEquals(1, result.version(), "Conflict did not report the current version");
+    }
+
+    @Test
+    public void claimSeat() throws DataAccessException {
+        sqlGameDAO.createGame(gameName);
+        memoryGameDAO.createGame(gameName);
+
+        Assertions.assertTrue(sqlGameDAO.claimSeat(1, ChessGame.TeamColor.WHITE, username),
+                "Empty seat was not claimed");
+        memoryGameDAO.claimSeat(1, ChessGame.TeamColor.WHITE, username);
+
+        Assertions.assertEquals(memoryGameDAO.getGameMetadata(1), sqlGameDAO.getGameMetadata(1),
+                "SQL DAO did not give same results as Memory DAO");
+    }
+
+    @Test
+    public void claimSeatBadRequest() throws DataAccessException {
+        sqlGameDAO.createGame(gameName);
+        sqlGameDAO.claimSeat(1, ChessGame.TeamColor.BLACK, username);
+
+        Assertions.assertFalse(sqlGameDAO.claimSeat(1, ChessGame.TeamColor.BLACK, "other"),
+                "Taken seat was claimed");
+        Assertions.assertEquals(username, sqlGameDAO.getGameMetadata(1).blackUsername(),
+                "Taken seat was overwritten");
+    }
+
+    @Test
+    public void releaseSeat() throws DataAccessException {
+        sqlGameDAO.createGame(gameName);
+        sqlGameDAO.claimSeat(1, ChessGame.TeamColor.WHITE, username);
+
+        Assertions.assertFalse(sqlGameDAO.releaseSeat(1, ChessGame.TeamColor.WHITE, "other"),
+                "Seat was released by a player who did not hold it");
+        Assertions.assertTrue(sqlGameDAO.releaseSeat(1, ChessGame.TeamColor.WHITE, username),
+                "Seat was not released");
+        Assertions.assertNull(sqlGameDAO.getGameMetadata(1).whiteUsername(), "Seat was not emptied");
+    }
+
     @Test
     public void clearGame() throws DataAccessException {
         sqlGameDAO.createGame(gameName);
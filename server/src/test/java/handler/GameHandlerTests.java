@@ -0,0 +1,86 @@
+package handler;
+
+import dataaccess.DataAccessException;
+import dataaccess.MemoryAuthDAO;
+import dataaccess.MemoryGameDAO;
+import io.javalin.http.Context;
+import model.AuthData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.GameService;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GameHandlerTests {
+    private final String authToken = "authToken";
+
+    private MemoryGameDAO gameDAO;
+    private GameHandler gameHandler;
+
+    @BeforeEach
+    public void setUp() throws DataAccessException {
+        MemoryAuthDAO authDAO = new MemoryAuthDAO();
+        authDAO.createAuth(new AuthData(authToken, "username"));
+        gameDAO = new MemoryGameDAO();
+        gameDAO.createGame("first");
+        gameHandler = new GameHandler(new GameService(authDAO, gameDAO));
+    }
+
+    @Test
+    public void heldListingIsNotSentAgain() throws DataAccessException {
+        Map<String, Object> first = listGames(null);
+        Assertions.assertEquals(200, first.get("status"), "Listing was not sent");
+        String etag = (String) first.get("ETag");
+        Assertions.assertNotNull(etag, "Listing had no ETag");
+
+        Map<String, Object> second = listGames(etag);
+        Assertions.assertEquals(304, second.get("status"), "Held listing was sent again");
+        Assertions.assertNull(second.get("result"), "Held listing was sent again");
+        Assertions.assertEquals(etag, second.get("ETag"), "ETag changed without a change to the games");
+    }
+
+    @Test
+    public void changedListingIsSentAgain() throws DataAccessException {
+        String etag = (String) listGames(null).get("ETag");
+
+        gameDAO.createGame("second");
+
+        Map<String, Object> response = listGames(etag);
+        Assertions.assertEquals(200, response.get("status"), "Changed listing was not sent");
+        Assertions.assertNotEquals(etag, response.get("ETag"), "ETag did not change with the games");
+        Assertions.assertTrue(((String) response.get("result")).contains("second"), "New game was not listed");
+    }
+
+    /**
+     * @return The status, result and headers the handler set
+     */
+    private Map<String, Object> listGames(String ifNoneMatch) throws DataAccessException {
+        Map<String, String> requestHeaders = new HashMap<>();
+        requestHeaders.put("Authorization", authToken);
+        requestHeaders.put("If-None-Match", ifNoneMatch);
+        Map<String, Object> response = new HashMap<>();
+        Context ctx = (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[]{Context.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "header" -> {
+                            if (args.length == 1) {
+                                return requestHeaders.get((String) args[0]);
+                            }
+                            response.put((String) args[0], args[1]);
+                        }
+                        case "body" -> {
+                            return "{}";
+                        }
+                        case "status" -> response.put("status", args[0]);
+                        case "result" -> response.put("result", args[0]);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    return proxy;
+                });
+        gameHandler.listGames(ctx);
+        return response;
+    }
+}
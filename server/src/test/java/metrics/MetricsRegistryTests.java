@@ -0,0 +1,48 @@
+package metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTests {
+
+    @Test
+    public void histogramCountsAreCumulative() {
+        Histogram histogram = new Histogram();
+        histogram.record(500);
+        histogram.record(2_000_000);
+        histogram.record(2_000_000_000L);
+
+        long[] counts = histogram.cumulativeCounts(new long[]{1_000, 10_000_000, 1_000_000_000});
+
+        Assertions.assertArrayEquals(new long[]{1, 2, 2, 3}, counts, "Incorrect cumulative counts");
+        Assertions.assertEquals(2_002_000_500L, histogram.getSum(), "Incorrect sum");
+    }
+
+    @Test
+    public void scrapeUsesExpositionFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("test_duration_seconds", "Test durations", "route", "/game").record(1_000_000);
+        registry.gauge("test_sessions", "Test sessions", () -> 3);
+
+        String scraped = registry.scrape();
+
+        Assertions.assertTrue(scraped.contains("# TYPE test_duration_seconds histogram\n"),
+                "Histogram type was not declared");
+        Assertions.assertTrue(scraped.contains("test_duration_seconds_bucket{route=\"/game\",le=\"+Inf\"} 1\n"),
+                "Histogram buckets were not written");
+        Assertions.assertTrue(scraped.contains("test_duration_seconds_count{route=\"/game\"} 1\n"),
+                "Histogram count was not written");
+        Assertions.assertTrue(scraped.contains("# TYPE test_sessions gauge\ntest_sessions 3\n"),
+                "Gauge was not written");
+    }
+
+    @Test
+    public void histogramsAreSharedByLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        Assertions.assertSame(registry.histogram("test_seconds", "Test", "dao", "game"),
+                registry.histogram("test_seconds", "Test", "dao", "game"), "Same labels gave different histograms");
+        Assertions.assertNotSame(registry.histogram("test_seconds", "Test", "dao", "game"),
+                registry.histogram("test_seconds", "Test", "dao", "auth"), "Different labels shared a histogram");
+    }
+}
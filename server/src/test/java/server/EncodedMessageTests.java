@@ -0,0 +1,84 @@
+package server;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.GsonBuilder;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import websocket.BinaryProtocol;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MessageDeserializer;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class EncodedMessageTests {
+
+    private Path logDirectory;
+    private WriteBehindQueue writeQueue;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        logDirectory = Files.createTempDirectory("wal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException, DataAccessException {
+        if (writeQueue != null) {
+            writeQueue.shutdown();
+        }
+        MoveLogTests.deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void encodedMessageIsSentUnderAnySequence() throws ProtocolException {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        EncodedMessage encoded = EncodedMessage.of(new LoadGameMessage(board));
+        var gson = new GsonBuilder().registerTypeAdapter(ServerMessage.class, new MessageDeserializer()).create();
+
+        ServerMessage text = gson.fromJson(encoded.toJson(42), ServerMessage.class);
+        Assertions.assertEquals(42, text.getSequence(), "Text was not numbered");
+        Assertions.assertEquals(board, ((LoadGameMessage) text).getGameBoard(), "Text board was changed");
+        Assertions.assertEquals(0, gson.fromJson(encoded.toJson(0), ServerMessage.class).getSequence(),
+                "Unnumbered text was numbered");
+
+        ServerMessage frame = BinaryProtocol.decodeMessage(encoded.toFrame(7));
+        Assertions.assertEquals(7, frame.getSequence(), "Frame was not numbered");
+        Assertions.assertEquals(board, ((LoadGameMessage) frame).getGameBoard(), "Frame board was changed");
+        Assertions.assertEquals(8, BinaryProtocol.decodeMessage(encoded.toFrame(8)).getSequence(),
+                "Numbering a frame changed the encoded copy");
+    }
+
+    @Test
+    public void boardSnapshotIsReusedUntilMove() throws DataAccessException, InvalidMoveException, IOException {
+        MemoryGameDAO gameDAO = new MemoryGameDAO();
+        int gameID = gameDAO.createGame("gameName").gameID();
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "white");
+        MoveLog moveLog = new MoveLog(logDirectory, 4096);
+        writeQueue = new WriteBehindQueue(gameDAO, moveLog, 100, Duration.ofHours(1));
+        GameTracker tracker = new GameTracker(gameDAO.getGame(gameID), gameDAO, writeQueue, moveLog);
+
+        EncodedMessage before = tracker.getBoardSnapshot();
+        Assertions.assertSame(before, tracker.getBoardSnapshot(), "Unchanged board was encoded again");
+
+        tracker.makeMove(null, new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), "white");
+
+        EncodedMessage after = tracker.getBoardSnapshot();
+        Assertions.assertNotSame(before, after, "Board was not encoded again after a move");
+        Assertions.assertEquals(tracker.getGame().getBoard(),
+                ((LoadGameMessage) BinaryProtocol.decodeMessage(after.toFrame(1))).getGameBoard(),
+                "Snapshot did not show the move");
+    }
+}
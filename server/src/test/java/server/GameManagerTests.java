@@ -0,0 +1,129 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class GameManagerTests {
+
+    private final ChessMove firstMove = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    private Path logDirectory;
+    private MemoryGameDAO gameDAO;
+    private GameManager gameManager;
+
+    @BeforeEach
+    public void setUp() throws IOException, DataAccessException {
+        logDirectory = Files.createTempDirectory("wal");
+        gameDAO = new MemoryGameDAO();
+        gameManager = new GameManager(gameDAO, 10, Duration.ofHours(1), logDirectory);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException, DataAccessException {
+        gameManager.shutdown();
+        MoveLogTests.deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void clearDiscardsTrackersInUse() throws DataAccessException, InvalidMoveException {
+        int gameID = createGame("cleared");
+        gameManager.getGame(gameID);
+        GameTracker tracker = gameManager.gameTrackers.get(gameID);
+
+        gameManager.clear();
+
+        Assertions.assertTrue(tracker.isEvicted(), "Cleared tracker was not evicted");
+        Assertions.assertEquals(0, gameManager.getResidentGames(), "Cleared tracker was kept");
+        Assertions.assertThrows(DataAccessException.class, () -> tracker.makeMove(null, firstMove, "white"),
+                "Move was made in a cleared game");
+        Assertions.assertEquals(0, gameManager.getPendingWrites(), "Cleared game was queued for writing");
+    }
+
+    @Test
+    public void joiningDeletedGameDiscardsTracker() throws DataAccessException {
+        int gameID = createGame("deleted");
+        gameManager.getGame(gameID);
+        GameTracker tracker = gameManager.gameTrackers.get(gameID);
+
+        gameDAO.clear();
+
+        Assertions.assertThrows(GameNotFoundException.class, () -> gameManager.joinPerson(gameID, null),
+                "Joined a deleted game");
+        Assertions.assertTrue(tracker.isEvicted(), "Deleted game's tracker was not evicted");
+        Assertions.assertFalse(gameManager.gameTrackers.containsKey(gameID), "Deleted game's tracker was kept");
+    }
+
+    @Test
+    public void idleGamesAreEvicted() throws DataAccessException, InterruptedException {
+        restart(10, Duration.ofMillis(1));
+        int gameID = createGame("idle");
+        gameManager.getGame(gameID);
+        GameTracker tracker = gameManager.gameTrackers.get(gameID);
+
+        Thread.sleep(10);
+        gameManager.evictIdle();
+
+        Assertions.assertTrue(tracker.isEvicted(), "Idle tracker was not evicted");
+        Assertions.assertEquals(0, gameManager.getResidentGames(), "Idle tracker was kept");
+    }
+
+    @Test
+    public void leastRecentlyUsedGameIsEvictedOverCap() throws DataAccessException {
+        restart(2, Duration.ofHours(1));
+        int first = createGame("first");
+        int second = createGame("second");
+        int third = createGame("third");
+        gameManager.getGame(first);
+        gameManager.getGame(second);
+        gameManager.getGame(first);
+
+        gameManager.getGame(third);
+
+        Assertions.assertEquals(2, gameManager.getResidentGames(), "Resident cap was exceeded");
+        Assertions.assertTrue(gameManager.gameTrackers.containsKey(first), "Recently used game was evicted");
+        Assertions.assertFalse(gameManager.gameTrackers.containsKey(second), "Least recently used game was kept");
+        Assertions.assertTrue(gameManager.gameTrackers.containsKey(third), "Loaded game was evicted");
+    }
+
+    @Test
+    public void evictedGameIsReloaded() throws DataAccessException, InvalidMoveException, InterruptedException {
+        restart(10, Duration.ofMillis(1));
+        int gameID = createGame("reloaded");
+        gameManager.makeMove(gameID, null, firstMove, "white");
+
+        Thread.sleep(10);
+        gameManager.evictIdle();
+        Assertions.assertEquals(0, gameManager.getResidentGames(), "Idle tracker was kept");
+
+        ChessGame reloaded = gameManager.getGame(gameID);
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, reloaded.getTeamTurn(), "Move was lost on eviction");
+        Assertions.assertNotNull(reloaded.getBoard().getPiece(firstMove.getEndPosition()),
+                "Moved piece was lost on eviction");
+        Assertions.assertEquals(0, gameManager.getPendingWrites(), "Evicted game was not written");
+    }
+
+    private void restart(int maxResidentGames, Duration idleTimeout) throws DataAccessException {
+        gameManager.shutdown();
+        gameManager = new GameManager(gameDAO, maxResidentGames, idleTimeout, logDirectory);
+    }
+
+    private int createGame(String name) throws DataAccessException {
+        int gameID = gameDAO.createGame(name).gameID();
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "white");
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.BLACK, "black");
+        return gameID;
+    }
+}
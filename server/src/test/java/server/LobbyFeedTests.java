@@ -0,0 +1,181 @@
+package server;
+
+import chess.ChessGame;
+import com.google.gson.GsonBuilder;
+import dataaccess.MemoryGameDAO;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import serviceobjects.ListGameData;
+import serviceobjects.ListGamesRequest;
+import websocket.messages.LobbyEventMessage;
+import websocket.messages.LobbySnapshotMessage;
+import websocket.messages.MessageDeserializer;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LobbyFeedTests {
+
+    private MemoryGameDAO gameDAO;
+    private LobbyFeed lobbyFeed;
+
+    @BeforeEach
+    public void setUp() {
+        gameDAO = new MemoryGameDAO();
+        lobbyFeed = new LobbyFeed(gameDAO, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        lobbyFeed.shutdown();
+    }
+
+    @Test
+    public void snapshotThenEvents() throws Exception {
+        int gameID = gameDAO.createGame("gameName").gameID();
+        BlockingQueue<ServerMessage> received = new LinkedBlockingQueue<>();
+
+        lobbyFeed.subscribe(session(received), null, null);
+        int otherID = gameDAO.createGame("otherGame").gameID();
+        lobbyFeed.gameCreated(otherID, "otherGame");
+        lobbyFeed.seatClaimed(gameID, ChessGame.TeamColor.WHITE, "username");
+        lobbyFeed.gameFinished(otherID);
+
+        var snapshot = (LobbySnapshotMessage) next(received);
+        Map<Integer, ListGameData> games = new TreeMap<>();
+        snapshot.getGames().forEach(game -> games.put(game.gameID(), game));
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            var event = (LobbyEventMessage) next(received);
+            Assertions.assertEquals(sequence, event.getSequence(), "Events were out of order");
+            event.applyTo(games);
+        }
+
+        Assertions.assertEquals(List.of(new ListGameData(gameID, "username", null, "gameName")),
+                List.copyOf(games.values()), "Lobby was not kept current");
+    }
+
+    @Test
+    public void resumeSendsOnlyMissedEvents() throws Exception {
+        BlockingQueue<ServerMessage> first = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(first), null, null);
+        var snapshot = (LobbySnapshotMessage) next(first);
+        lobbyFeed.gameCreated(1, "gameName");
+        lobbyFeed.seatClaimed(1, ChessGame.TeamColor.BLACK, "username");
+        next(first);
+        next(first);
+
+        BlockingQueue<ServerMessage> resumed = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(resumed), snapshot.getEpoch(), 1L);
+
+        var event = (LobbyEventMessage) next(resumed);
+        Assertions.assertEquals(LobbyEventMessage.EventType.SEAT_CLAIMED, event.getEventType(),
+                "Resumed session was not sent the event it missed");
+        Assertions.assertNull(resumed.poll(100, TimeUnit.MILLISECONDS), "Resumed session was sent too much");
+    }
+
+    @Test
+    public void resumeTooFarBackGetsSnapshot() throws Exception {
+        BlockingQueue<ServerMessage> first = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(first), null, null);
+        var snapshot = (LobbySnapshotMessage) next(first);
+        for (int i = 1; i <= 3; i++) {
+            lobbyFeed.gameFinished(i);
+        }
+
+        BlockingQueue<ServerMessage> resumed = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(resumed), snapshot.getEpoch(), 0L);
+
+        var resent = (LobbySnapshotMessage) next(resumed);
+        Assertions.assertEquals(3, resent.getSequence(), "Snapshot did not include every event");
+    }
+
+    @Test
+    public void slowSnapshotDoesNotHoldUpEvents() throws Exception {
+        AtomicBoolean slow = new AtomicBoolean(false);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lobbyFeed.shutdown();
+        lobbyFeed = new LobbyFeed(new MemoryGameDAO() {
+            @Override
+            public List<ListGameData> listGames(ListGamesRequest request, int limit) {
+                if (slow.get()) {
+                    reading.countDown();
+                    try {
+                        release.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                // Game 1 was finished, but its final state is not yet written
+                return List.of(new ListGameData(1, null, null, "finishing"));
+            }
+        }, 2);
+        BlockingQueue<ServerMessage> subscribed = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(subscribed), null, null);
+        next(subscribed);
+
+        slow.set(true);
+        BlockingQueue<ServerMessage> joining = new LinkedBlockingQueue<>();
+        lobbyFeed.subscribe(session(joining), null, null);
+        Assertions.assertTrue(reading.await(5, TimeUnit.SECONDS), "Snapshot was not read");
+        for (int i = 0; i < 3; i++) {
+            lobbyFeed.gameCreated(10 + i, "game" + i);
+        }
+        lobbyFeed.gameFinished(1);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertInstanceOf(LobbyEventMessage.class, next(subscribed),
+                    "Events waited on another subscriber's snapshot");
+        }
+        release.countDown();
+
+        var snapshot = (LobbySnapshotMessage) next(joining);
+        Assertions.assertEquals(0, snapshot.getSequence(), "Snapshot was numbered past what it read");
+        Assertions.assertTrue(snapshot.getGames().isEmpty(), "Game finished by an event was in the snapshot");
+        for (long sequence = 1; sequence <= 4; sequence++) {
+            Assertions.assertEquals(sequence, next(joining).getSequence(),
+                    "Events published while the snapshot was read were not all sent");
+        }
+    }
+
+    private static ServerMessage next(BlockingQueue<ServerMessage> received) throws InterruptedException {
+        ServerMessage message = received.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(message, "No message was sent");
+        return message;
+    }
+
+    /**
+     * @return An open session whose messages are decoded into the given queue
+     */
+    private Session session(BlockingQueue<ServerMessage> received) {
+        var gson = new GsonBuilder().registerTypeAdapter(ServerMessage.class, new MessageDeserializer()).create();
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("sendString")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    received.add(gson.fromJson((String) args[0], ServerMessage.class));
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,158 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class MoveLogTests {
+
+    private MemoryGameDAO gameDAO;
+    private Path logDirectory;
+    private int gameID;
+
+    private final ChessMove firstMove = move(2, 5, 4, 5);
+    private final ChessMove secondMove = move(7, 5, 5, 5);
+
+    @BeforeEach
+    public void resetLog() throws DataAccessException, IOException {
+        gameDAO = new MemoryGameDAO();
+        gameID = gameDAO.createGame("gameName").gameID();
+        logDirectory = Files.createTempDirectory("wal");
+    }
+
+    @AfterEach
+    public void deleteLog() throws IOException {
+        deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void replayAppliesLoggedMoves() throws IOException, DataAccessException, InvalidMoveException {
+        MoveLog moveLog = new MoveLog(logDirectory, 4096);
+        moveLog.appendMove(gameID, 1, firstMove);
+        moveLog.appendMove(gameID, 2, secondMove);
+        moveLog.appendResign(gameID, 2, ChessGame.TeamColor.WHITE);
+
+        Assertions.assertEquals(1, new MoveLog(logDirectory, 4096).replay(gameDAO), "Game was not replayed");
+
+        ChessGame expected = new ChessGame();
+        expected.makeMove(firstMove);
+        expected.makeMove(secondMove);
+        expected.resign(ChessGame.TeamColor.WHITE);
+        ChessGame stored = gameDAO.getGame(gameID).game();
+        Assertions.assertEquals(expected, stored, "Replayed game does not match the logged moves");
+        Assertions.assertTrue(stored.isOver(), "Resignation was not replayed");
+        Assertions.assertEquals(1, countSegments(), "Replayed segment was not deleted");
+    }
+
+    @Test
+    public void replaySkipsStoredMoves() throws IOException, DataAccessException, InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(firstMove);
+        gameDAO.updateGame(new GameData(gameID, null, null, "gameName", game));
+
+        MoveLog moveLog = new MoveLog(logDirectory, 4096);
+        moveLog.appendMove(gameID, 1, firstMove);
+        moveLog.appendMove(gameID, 2, secondMove);
+        new MoveLog(logDirectory, 4096).replay(gameDAO);
+
+        ChessGame expected = new ChessGame();
+        expected.makeMove(firstMove);
+        expected.makeMove(secondMove);
+        Assertions.assertEquals(expected, gameDAO.getGame(gameID).game(), "Stored move was applied twice");
+    }
+
+    @Test
+    public void replayStopsAtCorruptRecord() throws IOException, DataAccessException, InvalidMoveException {
+        MoveLog moveLog = new MoveLog(logDirectory, 4096);
+        moveLog.appendMove(gameID, 1, firstMove);
+        moveLog.appendMove(gameID, 2, secondMove);
+        moveLog.close();
+
+        // Flip a byte in the body of the second record, so its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(19 + 8);
+            file.write(file.read() ^ 0xFF);
+        }
+        new MoveLog(logDirectory, 4096).replay(gameDAO);
+
+        ChessGame expected = new ChessGame();
+        expected.makeMove(firstMove);
+        Assertions.assertEquals(expected, gameDAO.getGame(gameID).game(), "Corrupt record was replayed");
+    }
+
+    @Test
+    public void segmentsRollAndAreDeleted() throws IOException {
+        // Room for three records per segment
+        MoveLog moveLog = new MoveLog(logDirectory, 64);
+        for (int i = 1; i <= 7; i++) {
+            moveLog.appendMove(gameID, i, firstMove);
+        }
+        Assertions.assertEquals(3, countSegments(), "Segments did not roll over");
+
+        moveLog.deleteSegmentsThrough(moveLog.getLastClosedSegment());
+        Assertions.assertEquals(1, countSegments(), "Closed segments were not deleted");
+    }
+
+    @Test
+    public void unloggedMoveIsNotMade() throws IOException, DataAccessException, InvalidMoveException {
+        // Room for one record per segment, so the second move needs a new segment
+        MoveLog moveLog = new MoveLog(logDirectory, 40);
+        GameTracker tracker = new GameTracker(
+                new GameData(gameID, "white", "black", "gameName", new ChessGame()), gameDAO,
+                new WriteBehindQueue(gameDAO, moveLog, 100, Duration.ofHours(1)), moveLog);
+        tracker.makeMove(null, firstMove, "white");
+
+        // Without its directory the log cannot start another segment
+        deleteDirectory(logDirectory);
+        try {
+            Assertions.assertThrows(MoveLogException.class, () -> tracker.makeMove(null, secondMove, "black"),
+                    "Move was accepted without being logged");
+        }
+        finally {
+            Files.createDirectories(logDirectory);
+        }
+        Assertions.assertEquals(1, tracker.getGame().getMoveCount(), "Unlogged move was made");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, tracker.getGame().getTeamTurn(),
+                "Turn passed without the move being logged");
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(logDirectory)) {
+            return paths.count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> paths = Files.list(logDirectory)) {
+            return paths.findFirst().orElseThrow();
+        }
+    }
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+}
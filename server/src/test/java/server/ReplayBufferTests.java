@@ -0,0 +1,162 @@
+package server;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.GsonBuilder;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MessageDeserializer;
+import websocket.messages.MoveResultMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static websocket.messages.ServerMessage.ServerMessageType.LOAD_GAME;
+import static websocket.messages.ServerMessage.ServerMessageType.NOTIFICATION;
+
+public class ReplayBufferTests {
+
+    @Test
+    public void missedMessagesAreReplayed() {
+        ReplayBuffer replay = new ReplayBuffer(4);
+        long first = replay.record(new NotificationMessage("first"));
+        replay.record(new NotificationMessage("second"));
+        replay.record(new NotificationMessage("third"));
+
+        List<ReplayBuffer.Entry> missed = replay.since(first);
+
+        Assertions.assertNotNull(missed, "Kept messages could not be replayed");
+        Assertions.assertEquals(List.of("second", "third"), missed.stream()
+                .map(entry -> ((NotificationMessage) entry.message()).getMessage()).toList(),
+                "Wrong messages replayed");
+        Assertions.assertEquals(List.of(), replay.since(replay.getSequence()), "Up to date session was sent messages");
+    }
+
+    @Test
+    public void gapsTooLargeAreNotReplayed() {
+        ReplayBuffer replay = new ReplayBuffer(2);
+        long first = replay.record(new NotificationMessage("first"));
+        for (int i = 0; i < 3; i++) {
+            replay.record(new NotificationMessage("later"));
+        }
+
+        Assertions.assertNull(replay.since(first), "Replayed messages that were no longer kept");
+        Assertions.assertNull(replay.since(0), "Replayed from a sequence the buffer never handed out");
+    }
+
+    @Test
+    public void resumedSessionIsSentOnlyWhatItMissed() throws Exception {
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager();
+        List<ServerMessage> first = new ArrayList<>();
+        Session firstSession = session(first);
+        connections.sendSnapshot(1, firstSession, false, ReplayBufferTests::snapshot);
+        connections.broadcast(1, null, new NotificationMessage("seen"));
+        long lastSeen = first.getLast().getSequence();
+
+        connections.forget(firstSession);
+        connections.broadcast(1, null, new NotificationMessage("missed"));
+        Assertions.assertEquals(2, first.size(), "Closed session was still sent messages");
+
+        List<ServerMessage> resumed = new ArrayList<>();
+        connections.resume(1, session(resumed), lastSeen, false, ReplayBufferTests::snapshot);
+
+        Assertions.assertEquals(1, resumed.size(), "Resumed session was sent more than it missed");
+        Assertions.assertEquals("missed", ((NotificationMessage) resumed.getFirst()).getMessage(),
+                "Resumed session was not sent what it missed");
+    }
+
+    @Test
+    public void resumedSessionIsNotSentWhatItsUserWasSpared() throws Exception {
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager();
+        List<ServerMessage> first = new ArrayList<>();
+        Session firstSession = session(first);
+        connections.getSessions().identify(firstSession, "white");
+        connections.sendSnapshot(1, firstSession, false, ReplayBufferTests::snapshot);
+        long lastSeen = first.getLast().getSequence();
+
+        // The connection drops before the session receives any of these
+        connections.broadcast(1, firstSession, new NotificationMessage("white joined the game"));
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        connections.broadcastMove(1, firstSession, new MoveResultMessage("white", move, new ChessBoard(),
+                "white made the move", ChessGame.GameState.CHECK, "black is in check!", null));
+        connections.forget(firstSession);
+        connections.broadcast(1, null, new NotificationMessage("black left the game"));
+
+        List<ServerMessage> resumed = new ArrayList<>();
+        Session resumedSession = session(resumed);
+        connections.getSessions().identify(resumedSession, "white");
+        connections.resume(1, resumedSession, lastSeen, false, ReplayBufferTests::snapshot);
+
+        Assertions.assertEquals(List.of(LOAD_GAME, NOTIFICATION, NOTIFICATION), resumed.stream()
+                .map(ServerMessage::getServerMessageType).toList(), "Resumed session was sent the wrong messages");
+        Assertions.assertEquals("black is in check!", ((NotificationMessage) resumed.get(1)).getMessage(),
+                "Resumed session was told of its user's own move");
+        Assertions.assertEquals("black left the game", ((NotificationMessage) resumed.get(2)).getMessage(),
+                "Resumed session was not sent what it missed");
+
+        List<ServerMessage> other = new ArrayList<>();
+        connections.resume(1, session(other), lastSeen, true, ReplayBufferTests::snapshot);
+        Assertions.assertEquals(List.of(NOTIFICATION, LOAD_GAME, NOTIFICATION, NOTIFICATION, NOTIFICATION),
+                other.stream().map(ServerMessage::getServerMessageType).toList(),
+                "Other resumed session was not sent every message");
+    }
+
+    @Test
+    public void moveResultIsSplitForJsonSessions() throws Exception {
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager();
+        List<ServerMessage> mover = new ArrayList<>();
+        List<ServerMessage> watcher = new ArrayList<>();
+        Session moverSession = session(mover);
+        connections.add(1, moverSession);
+        connections.add(1, session(watcher));
+
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        connections.broadcastMove(1, moverSession, new MoveResultMessage("white", move, new ChessBoard(),
+                "white made the move", ChessGame.GameState.CHECK, "black is in check!", null));
+
+        Assertions.assertEquals(List.of(LOAD_GAME, NOTIFICATION), mover.stream()
+                .map(ServerMessage::getServerMessageType).toList(), "Mover was sent the wrong messages");
+        Assertions.assertEquals(List.of(LOAD_GAME, NOTIFICATION, NOTIFICATION), watcher.stream()
+                .map(ServerMessage::getServerMessageType).toList(), "Others were sent the wrong messages");
+        Assertions.assertEquals("black is in check!", ((NotificationMessage) mover.getLast()).getMessage(),
+                "Mover was told of its own move");
+        Assertions.assertEquals(1, watcher.stream().map(ServerMessage::getSequence).distinct().count(),
+                "Split messages were numbered separately");
+    }
+
+    private static List<EncodedMessage> snapshot() {
+        return List.of(EncodedMessage.of(new LoadGameMessage(new ChessBoard())));
+    }
+
+    /**
+     * @return An open session whose messages are decoded into the given list
+     */
+    private Session session(List<ServerMessage> received) {
+        var gson = new GsonBuilder().registerTypeAdapter(ServerMessage.class, new MessageDeserializer()).create();
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    // Only queued sends are accepted, since a blocking send would hold the game's lock
+                    if (!method.getName().equals("sendString") || args.length != 2) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    received.add(gson.fromJson((String) args[0], ServerMessage.class));
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
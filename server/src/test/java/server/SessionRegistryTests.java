@@ -0,0 +1,84 @@
+package server;
+
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SessionRegistryTests {
+
+    private Path logDirectory;
+    private GameManager gameManager;
+    private GameManager.ConnectionManager connections;
+
+    @BeforeEach
+    public void setUp() throws IOException, DataAccessException {
+        logDirectory = Files.createTempDirectory("wal");
+        gameManager = new GameManager(new MemoryGameDAO(), 10, Duration.ofHours(1), logDirectory);
+        connections = gameManager.getConnections();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException, DataAccessException {
+        gameManager.shutdown();
+        MoveLogTests.deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void closeRemovesSessionFromEveryGame() {
+        Session session = session(new AtomicBoolean(true));
+        Session other = session(new AtomicBoolean(true));
+        connections.register(session, false);
+        connections.register(other, true);
+        connections.add(1, session);
+        connections.add(2, session);
+        connections.add(2, other);
+
+        Assertions.assertTrue(gameManager.dropSession(session), "Session was not registered");
+
+        Assertions.assertFalse(connections.connections.containsKey(1), "Empty game was kept");
+        Assertions.assertEquals(Set.of(other), connections.connections.get(2).keySet(),
+                "Session was not removed from its games");
+        Assertions.assertFalse(gameManager.dropSession(session), "Session was removed twice");
+        Assertions.assertTrue(connections.getSessions().isBinary(other), "Other session was forgotten");
+    }
+
+    @Test
+    public void reaperRemovesSessionsThatVanished() {
+        AtomicBoolean open = new AtomicBoolean(true);
+        Session session = session(open);
+        connections.register(session, false);
+        connections.getSessions().identify(session, "username");
+        connections.add(1, session);
+
+        open.set(false);
+        Assertions.assertEquals(1, connections.getSessions().getLeaked(), "Closed session was not counted");
+        gameManager.reapSessions();
+
+        Assertions.assertEquals(1, gameManager.getReapedSessions(), "Session was not reaped");
+        Assertions.assertEquals(0, connections.getSessions().getLeaked(), "Reaped session was still registered");
+        Assertions.assertNull(connections.getSessions().getUsername(session), "Reaped session kept its user");
+        Assertions.assertTrue(connections.connections.isEmpty(), "Reaped session was kept in its game");
+    }
+
+    private Session session(AtomicBoolean open) {
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> open.get();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
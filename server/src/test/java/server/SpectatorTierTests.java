@@ -0,0 +1,156 @@
+package server;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.GsonBuilder;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.messages.ClockMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MessageDeserializer;
+import websocket.messages.MoveResultMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SpectatorTierTests {
+
+    private SpectatorTier tier;
+
+    @AfterEach
+    public void tearDown() {
+        tier.shutdown();
+    }
+
+    @Test
+    public void spectatorsOfLargeAudiencesAreSentLatestClockAndEveryNotification() throws Exception {
+        // The window never closes by itself, so each flush is run by the test
+        tier = new SpectatorTier(Integer.MAX_VALUE, 2, 1 << 20);
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager(tier);
+        List<ServerMessage> player = new ArrayList<>();
+        List<ServerMessage> spectator = new ArrayList<>();
+        connections.sendSnapshot(1, session(player), false, SpectatorTierTests::snapshot);
+        connections.sendSnapshot(1, session(spectator), true, SpectatorTierTests::snapshot);
+        connections.sendSnapshot(1, session(new ArrayList<>()), true, SpectatorTierTests::snapshot);
+
+        connections.broadcast(1, null, new NotificationMessage("first"));
+        connections.broadcast(1, null, new ClockMessage(1000, 1000, null));
+        connections.broadcast(1, null, new ClockMessage(900, 1000, null));
+        connections.broadcast(1, null, new NotificationMessage("second"));
+
+        Assertions.assertEquals(5, player.size(), "Player was not sent every message straight away");
+        Assertions.assertEquals(1, spectator.size(), "Spectator was sent messages before the window closed");
+
+        connections.flushSpectators(1);
+
+        Assertions.assertEquals(List.of(ServerMessage.ServerMessageType.NOTIFICATION,
+                        ServerMessage.ServerMessageType.CLOCK, ServerMessage.ServerMessageType.NOTIFICATION),
+                spectator.subList(1, spectator.size()).stream().map(ServerMessage::getServerMessageType).toList(),
+                "Spectator was not sent the latest clock and every notification");
+        Assertions.assertEquals(900, ((ClockMessage) spectator.get(2)).getWhiteMillis(),
+                "Spectator was sent a superseded clock");
+        Assertions.assertEquals("second", ((NotificationMessage) spectator.getLast()).getMessage(),
+                "Spectator was not sent the latest notification");
+        Assertions.assertEquals(player.getLast().getSequence(), spectator.getLast().getSequence(),
+                "Spectator was not numbered with the latest broadcast");
+
+        connections.flushSpectators(1);
+        Assertions.assertEquals(4, spectator.size(), "Spectator was sent the same messages twice");
+    }
+
+    @Test
+    public void heldMovesKeepTheirNotifications() throws Exception {
+        tier = new SpectatorTier(Integer.MAX_VALUE, 1, 1 << 20);
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager(tier);
+        List<ServerMessage> spectator = new ArrayList<>();
+        connections.sendSnapshot(1, session(spectator), true, SpectatorTierTests::snapshot);
+
+        ChessMove first = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        ChessMove second = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        connections.broadcastMove(1, null, new MoveResultMessage("white", first, new ChessBoard(),
+                "white moved", ChessGame.GameState.NONE, null, null));
+        connections.broadcastMove(1, null, new MoveResultMessage("black", second, new ChessBoard(),
+                "black moved", ChessGame.GameState.NONE, null, null));
+        connections.flushSpectators(1);
+
+        Assertions.assertEquals(List.of(ServerMessage.ServerMessageType.NOTIFICATION,
+                        ServerMessage.ServerMessageType.LOAD_GAME, ServerMessage.ServerMessageType.NOTIFICATION),
+                spectator.subList(1, spectator.size()).stream().map(ServerMessage::getServerMessageType).toList(),
+                "Spectator was not sent the latest board and every move's notification");
+        Assertions.assertEquals("white moved", ((NotificationMessage) spectator.get(1)).getMessage(),
+                "Superseded move's notification was dropped");
+    }
+
+    @Test
+    public void nothingIsScheduledAfterShutdown() {
+        tier = new SpectatorTier(1, 1, 1);
+        tier.shutdown();
+        Assertions.assertDoesNotThrow(() -> tier.schedule(() -> { }), "Scheduling after shutdown failed");
+    }
+
+    @Test
+    public void spectatorsOverBudgetAreSkipped() throws Exception {
+        tier = new SpectatorTier(Integer.MAX_VALUE, 1, 1);
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager(tier);
+        List<ServerMessage> spectator = new ArrayList<>();
+        connections.sendSnapshot(1, session(spectator), true, SpectatorTierTests::snapshot);
+
+        connections.broadcast(1, null, new NotificationMessage("first"));
+        connections.flushSpectators(1);
+        Assertions.assertEquals(2, spectator.size(), "Spectator with budget left was not sent the message");
+
+        connections.broadcast(1, null, new NotificationMessage("second"));
+        connections.flushSpectators(1);
+        Assertions.assertEquals(2, spectator.size(), "Spectator over its budget was sent a message");
+        Assertions.assertEquals(1, tier.getDeferred(), "Skipped spectator was not counted");
+    }
+
+    @Test
+    public void smallAudiencesAreSentEverything() throws Exception {
+        tier = new SpectatorTier(Integer.MAX_VALUE, 2, 1);
+        GameManager.ConnectionManager connections = new GameManager.ConnectionManager(tier);
+        List<ServerMessage> spectator = new ArrayList<>();
+        connections.sendSnapshot(1, session(spectator), true, SpectatorTierTests::snapshot);
+
+        connections.broadcast(1, null, new NotificationMessage("first"));
+        connections.broadcast(1, null, new NotificationMessage("second"));
+
+        Assertions.assertEquals(3, spectator.size(), "Lone spectator was not sent every message straight away");
+    }
+
+    private static List<EncodedMessage> snapshot() {
+        return List.of(EncodedMessage.of(new LoadGameMessage(new ChessBoard())));
+    }
+
+    /**
+     * @return An open session whose messages are decoded into the given list
+     */
+    private Session session(List<ServerMessage> received) {
+        var gson = new GsonBuilder().registerTypeAdapter(ServerMessage.class, new MessageDeserializer()).create();
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    // Only queued sends are accepted, since a blocking send would hold the game's lock
+                    if (!method.getName().equals("sendString") || args.length != 2) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    received.add(gson.fromJson((String) args[0], ServerMessage.class));
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
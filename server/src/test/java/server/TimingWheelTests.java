@@ -0,0 +1,123 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.TimeControl;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TimingWheelTests {
+
+    private TimingWheel wheel;
+    private Path logDirectory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // A small wheel, so tasks wait through several turns of it
+        wheel = new TimingWheel(5, 4, "test-wheel");
+        logDirectory = Files.createTempDirectory("wal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        wheel.shutdown();
+        MoveLogTests.deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void tasksRunAfterTheirDelay() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(ran::countDown, 100);
+
+        Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS), "Task did not run");
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100),
+                "Task ran before its delay");
+        Assertions.assertEquals(0, wheel.getPending(), "Task was still counted as pending");
+    }
+
+    @Test
+    public void cancelledTasksNeverRun() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean(false);
+        CountDownLatch later = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 50);
+        wheel.schedule(later::countDown, 100);
+
+        Assertions.assertTrue(timeout.cancel(), "Task could not be cancelled");
+        Assertions.assertTrue(later.await(5, TimeUnit.SECONDS), "Later task did not run");
+        Assertions.assertFalse(ran.get(), "Cancelled task ran");
+        Assertions.assertFalse(timeout.cancel(), "Task was cancelled twice");
+        Assertions.assertEquals(0, wheel.getPending(), "Cancelled task was still counted as pending");
+    }
+
+    @Test
+    public void playerLosesOnTime() throws DataAccessException, InvalidMoveException, IOException,
+            InterruptedException {
+        MemoryGameDAO gameDAO = new MemoryGameDAO();
+        ChessGame game = new ChessGame();
+        game.setTimeControl(new TimeControl(200, 0));
+        int gameID = gameDAO.createGame("gameName", game).gameID();
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "white");
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.BLACK, "black");
+
+        MoveLog moveLog = new MoveLog(logDirectory, 4096);
+        WriteBehindQueue writeQueue = new WriteBehindQueue(gameDAO, moveLog, 100, Duration.ofHours(1));
+        GameClocks clocks = new GameClocks(wheel, Runnable::run);
+        CountDownLatch flagFell = new CountDownLatch(1);
+        clocks.setFlagListener((fellID, team) -> {
+            if (fellID == gameID && team == ChessGame.TeamColor.BLACK) {
+                flagFell.countDown();
+            }
+        });
+        GameTracker tracker = new GameTracker(gameDAO.getGame(gameID), gameDAO, writeQueue, moveLog, null, clocks);
+
+        tracker.makeMove(null, new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), "white");
+
+        Assertions.assertTrue(flagFell.await(5, TimeUnit.SECONDS), "Black did not run out of time");
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, tracker.getGame().getWinner(), "White did not win");
+        Assertions.assertEquals(0, tracker.getClock().getBlackMillis(), "Black's clock did not reach zero");
+        Assertions.assertNull(tracker.getClock().getRunning(), "Clock kept running after the game ended");
+    }
+
+    @Test
+    public void slowListenerDoesNotDelayChecks() throws InterruptedException {
+        GameClocks clocks = new GameClocks(wheel, Executors.newSingleThreadExecutor(),
+                Executors.newSingleThreadExecutor());
+        CountDownLatch release = new CountDownLatch(1);
+        clocks.setFlagListener((gameID, team) -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            clocks.flagFell(1, ChessGame.TeamColor.WHITE);
+            CountDownLatch checked = new CountDownLatch(1);
+            clocks.schedule(checked::countDown, 10);
+
+            Assertions.assertTrue(checked.await(5, TimeUnit.SECONDS), "Check waited on a slow listener");
+        }
+        finally {
+            release.countDown();
+            clocks.shutdown();
+        }
+    }
+}
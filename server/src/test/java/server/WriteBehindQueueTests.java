@@ -0,0 +1,84 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryGameDAO;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class WriteBehindQueueTests {
+
+    private MemoryGameDAO gameDAO;
+    private Path logDirectory;
+    private MoveLog moveLog;
+    private WriteBehindQueue writeQueue;
+    private GameTracker tracker;
+
+    private final String white = "white";
+    private final String black = "black";
+
+    @BeforeEach
+    public void resetQueue() throws DataAccessException, IOException {
+        gameDAO = new MemoryGameDAO();
+        int gameID = gameDAO.createGame("gameName").gameID();
+        gameDAO.updateGame(new GameData(gameID, white, black, "gameName", new ChessGame()));
+
+        // Flush only when asked, so tests can observe pending writes
+        logDirectory = Files.createTempDirectory("wal");
+        moveLog = new MoveLog(logDirectory, 4096);
+        writeQueue = new WriteBehindQueue(gameDAO, moveLog, 100, Duration.ofHours(1));
+        GameData stored = gameDAO.getGame(gameID);
+        tracker = new GameTracker(new GameData(
+                gameID, white, black, stored.gameName(), stored.game().copy()), gameDAO, writeQueue, moveLog);
+    }
+
+    @AfterEach
+    public void deleteLog() throws IOException {
+        MoveLogTests.deleteDirectory(logDirectory);
+    }
+
+    @Test
+    public void movesAreWrittenOnFlush() throws DataAccessException, InvalidMoveException {
+        tracker.makeMove(null, move(2, 5, 4, 5), white);
+
+        Assertions.assertEquals(new ChessGame(), gameDAO.getGame(tracker.getGameID()).game(),
+                "Move was written before the flush");
+        Assertions.assertEquals(1, writeQueue.getPendingGames(), "Move was not queued");
+
+        writeQueue.flush();
+
+        Assertions.assertEquals(tracker.getGame(), gameDAO.getGame(tracker.getGameID()).game(),
+                "Flushed game does not match the game in memory");
+        Assertions.assertEquals(0, writeQueue.getPendingGames(), "Game was still pending after the flush");
+    }
+
+    @Test
+    public void updatesAreCoalesced() throws DataAccessException, InvalidMoveException {
+        tracker.makeMove(null, move(2, 5, 4, 5), white);
+        tracker.makeMove(null, move(7, 5, 5, 5), black);
+        tracker.resign(white);
+
+        Assertions.assertEquals(1, writeQueue.getPendingGames(), "Updates to one game were not coalesced");
+
+        writeQueue.flush(tracker.getGameID());
+
+        ChessGame stored = gameDAO.getGame(tracker.getGameID()).game();
+        Assertions.assertEquals(tracker.getGame(), stored, "Latest state was not written");
+        Assertions.assertTrue(stored.isOver(), "Resignation was not written");
+    }
+
+    private ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+}
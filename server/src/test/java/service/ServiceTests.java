@@ -1,16 +1,33 @@
 package service;
 
+import chess.ChessGame;
+import chess.TimeControl;
 import dataaccess.*;
 import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ConflictResponse;
 import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.ServiceUnavailableResponse;
 import io.javalin.http.UnauthorizedResponse;
+import jdk.jfr.consumer.RecordingFile;
+import metrics.MoveValidationEvent;
 import model.GameData;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import serviceobjects.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 class ServiceTests {
     private MemoryAuthDAO authDAO;
@@ -19,9 +36,11 @@ class ServiceTests {
     private AdminService adminService;
     private GameService gameService;
     private UserService userService;
+    private RecordingService recordingService;
 
     private String authToken;
     private final String badAuthToken = "badAuthToken";
+    private final String adminToken = "adminToken";
 
     private final CreateGameRequest basicCreateGameRequest =
             new CreateGameRequest("gameName");
@@ -76,6 +95,56 @@ class ServiceTests {
                 "List does not match GameTable");
     }
 
+    @Test
+    void listGamesPages() throws DataAccessException {
+        for (int i = 0; i < 5; i++) {
+            gameService.createGame(new CreateGameRequest("game" + i), authToken);
+        }
+
+        var gameIDs = new ArrayList<Integer>();
+        Integer cursor = null;
+        int pages = 0;
+        do {
+            ListGamesResult page = gameService.listGames(new ListGamesRequest(cursor, 2, null, null, null), authToken);
+            page.games().forEach(game -> gameIDs.add(game.gameID()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        Assertions.assertEquals(List.of(1, 2, 3, 4, 5), gameIDs, "Pages skipped or repeated games");
+        Assertions.assertEquals(3, pages, "Wrong number of pages");
+    }
+
+    @Test
+    void listGamesFilters() throws DataAccessException {
+        for (int i = 0; i < 3; i++) {
+            gameService.createGame(new CreateGameRequest("game" + i), authToken);
+        }
+        gameDAO.claimSeat(1, ChessGame.TeamColor.WHITE, "username");
+        gameDAO.claimSeat(1, ChessGame.TeamColor.BLACK, "other");
+        gameDAO.claimSeat(2, ChessGame.TeamColor.BLACK, "username");
+        ChessGame finished = new ChessGame();
+        finished.resign(ChessGame.TeamColor.WHITE);
+        gameDAO.updateGameStates(Map.of(3, finished));
+
+        Assertions.assertEquals(List.of(2, 3), gameIDsOf(new ListGamesRequest(null, null, true, null, null)),
+                "Full game was listed as open");
+        Assertions.assertEquals(List.of(1, 2), gameIDsOf(new ListGamesRequest(null, null, null, "username", null)),
+                "Player's games were not listed");
+        Assertions.assertEquals(List.of(3), gameIDsOf(new ListGamesRequest(null, null, null, null, true)),
+                "Finished games were not listed");
+        Assertions.assertEquals(List.of(2), gameIDsOf(new ListGamesRequest(1, null, true, "username", false)),
+                "Filters were not combined");
+    }
+
+    @Test
+    void listGamesBadPageSize() {
+        Assertions.assertThrows(
+                BadRequestResponse.class,
+                () -> gameService.listGames(new ListGamesRequest(null, 0, null, null, null), authToken),
+                "Bad request exception not thrown");
+    }
+
     @Test
     void listGamesUnauthorized() throws DataAccessException {
         gameService.createGame(basicCreateGameRequest, authToken);
@@ -104,6 +173,24 @@ class ServiceTests {
                 "Data exception not thrown");
     }
 
+    @Test
+    void createTimedGame() throws DataAccessException {
+        int gameID = gameService.createGame(new CreateGameRequest("timedGame", 300, 2), authToken).gameID();
+
+        Assertions.assertEquals(new TimeControl(300_000, 2_000), gameDAO.getGame(gameID).game().getTimeControl(),
+                "Game was not timed");
+        Assertions.assertEquals(300_000, gameDAO.getGame(gameID).game().getRemainingMillis(ChessGame.TeamColor.BLACK),
+                "Clock did not start at the base time");
+    }
+
+    @Test
+    void createTimedGameBadTimeControl() {
+        Assertions.assertThrows(
+                BadRequestResponse.class,
+                () -> gameService.createGame(new CreateGameRequest("timedGame", 0, null), authToken),
+                "Bad request exception not thrown");
+    }
+
     @Test
     void joinGame() throws DataAccessException {
         int gameID = gameService.createGame(basicCreateGameRequest, authToken).gameID();
@@ -126,6 +213,81 @@ class ServiceTests {
                 "Forbidden exception not thrown");
     }
 
+    @Test
+    void joinGameAsyncOnDAOExecutor() throws DataAccessException {
+        int gameID = gameService.createGame(basicCreateGameRequest, authToken).gameID();
+        ExecutorService daoExecutor = AsyncDAOs.newBlockingExecutor(2);
+        try {
+            GameService asyncGameService = new GameService(authDAO, gameDAO, daoExecutor);
+
+            asyncGameService.joinGameAsync(basicJoinGameRequest, authToken).join();
+            CompletionException failure = Assertions.assertThrows(
+                    CompletionException.class,
+                    () -> asyncGameService.joinGameAsync(basicJoinGameRequest, badAuthToken).join(),
+                    "Future did not fail");
+
+            Assertions.assertInstanceOf(UnauthorizedResponse.class, failure.getCause(),
+                    "Unauthorized exception not thrown");
+            Assertions.assertEquals("username", gameDAO.getGame(gameID).whiteUsername(),
+                    "User was not added to game");
+        }
+        finally {
+            daoExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loginRehashesAtNewCost() throws DataAccessException, InterruptedException {
+        UserService oldCostService = new UserService(authDAO, userDAO, AsyncDAOs.DIRECT,
+                new PasswordHasher(4, 1, 1));
+        UserService newCostService = new UserService(authDAO, userDAO, AsyncDAOs.DIRECT,
+                new PasswordHasher(5, 1, 1));
+        oldCostService.register(new RegisterRequest("rehashed", "password", "email"));
+        Assertions.assertEquals(4, PasswordHasher.costOf(userDAO.getUser("rehashed").password()),
+                "Password was not hashed at the configured cost");
+
+        newCostService.login(new LoginRequest("rehashed", "password"));
+
+        // The rehash finishes after the login returns
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (PasswordHasher.costOf(userDAO.getUser("rehashed").password()) != 5
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(5, PasswordHasher.costOf(userDAO.getUser("rehashed").password()),
+                "Password was not rehashed at the new cost");
+        newCostService.login(new LoginRequest("rehashed", "password"));
+    }
+
+    @Test
+    void registerRejectedWhenHasherSaturated() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(1));
+        UserService saturatedService = new UserService(authDAO, userDAO, AsyncDAOs.DIRECT,
+                new PasswordHasher(4, executor));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Occupy the only hashing thread and the only queue slot
+            executor.execute(() -> {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            saturatedService.registerAsync(new RegisterRequest("queued", "password", "email"));
+
+            Assertions.assertThrows(
+                    ServiceUnavailableResponse.class,
+                    () -> saturatedService.register(new RegisterRequest("rejected", "password", "email")),
+                    "Service unavailable exception not thrown");
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
     @Test
     void register() {
         Assertions.assertFalse(userDAO.getUserTable().isEmpty(),
@@ -181,6 +343,63 @@ class ServiceTests {
                 "Unauthorized exception not thrown");
     }
 
+    @Test
+    void recordingCapturesMovePipelineEvents() throws IOException {
+        recordingService.startRecording(null, adminToken);
+
+        MoveValidationEvent event = new MoveValidationEvent();
+        event.gameID = 7;
+        event.commit();
+
+        Path file = Files.createTempFile("recording", ".jfr");
+        try {
+            Files.write(file, recordingService.stopRecording(adminToken));
+            boolean found = RecordingFile.readAllEvents(file).stream()
+                    .anyMatch(recorded -> recorded.getEventType().getName().equals("chess.MoveValidation")
+                            && recorded.getInt("gameID") == 7);
+            Assertions.assertTrue(found, "Move validation event was not recorded");
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void stopRecordingWithoutStartFails() {
+        Assertions.assertThrows(
+                ConflictResponse.class,
+                () -> recordingService.stopRecording(adminToken),
+                "Conflict exception not thrown");
+    }
+
+    @Test
+    void startRecordingUnauthorized() {
+        Assertions.assertThrows(
+                UnauthorizedResponse.class,
+                () -> recordingService.startRecording(null, badAuthToken),
+                "Unauthorized exception not thrown");
+    }
+
+    @Test
+    void userCannotRecord() {
+        Assertions.assertThrows(
+                UnauthorizedResponse.class,
+                () -> recordingService.startRecording(null, authToken),
+                "Unauthorized exception not thrown");
+    }
+
+    @Test
+    void recordingDisabledWithoutAdminToken() {
+        Assertions.assertThrows(
+                ForbiddenResponse.class,
+                () -> new RecordingService(null).startRecording(null, adminToken),
+                "Forbidden exception not thrown");
+    }
+
+    private List<Integer> gameIDsOf(ListGamesRequest request) throws DataAccessException {
+        return gameService.listGames(request, authToken).games().stream().map(ListGameData::gameID).toList();
+    }
+
     private void resetServiceAndDAO() {
         authDAO = new MemoryAuthDAO();
         gameDAO = new MemoryGameDAO();
@@ -188,5 +407,6 @@ class ServiceTests {
         adminService = new AdminService(authDAO, gameDAO, userDAO);
         gameService = new GameService(authDAO, gameDAO);
         userService = new UserService(authDAO, userDAO);
+        recordingService = new RecordingService(adminToken);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package websocket;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.commands.GetValidMovesCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.StandardGameCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ClockMessage;
+import websocket.messages.MoveResultMessage;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+public class BinaryProtocolTests {
+
+    @Test
+    public void commandsSurviveRoundTrip() throws ProtocolException {
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1),
+                ChessPiece.PieceType.KNIGHT);
+        MakeMoveCommand makeMove = (MakeMoveCommand) BinaryProtocol.decodeCommand(
+                BinaryProtocol.encodeCommand(new MakeMoveCommand("token", 12, promotion), 3));
+        Assertions.assertEquals("token", makeMove.getAuthToken(), "Auth token was changed");
+        Assertions.assertEquals(12, (int) makeMove.getGameID(), "Game ID was changed");
+        Assertions.assertEquals(promotion, makeMove.getMove(), "Move was changed");
+
+        StandardGameCommand connect = (StandardGameCommand) BinaryProtocol.decodeCommand(
+                BinaryProtocol.encodeCommand(new StandardGameCommand(
+                        UserGameCommand.CommandType.CONNECT, "token", 12, ChessGame.TeamColor.BLACK), 1));
+        Assertions.assertEquals(UserGameCommand.CommandType.CONNECT, connect.getCommandType(),
+                "Command type was changed");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, connect.getTeam(), "Team was changed");
+
+        GetValidMovesCommand validMoves = (GetValidMovesCommand) BinaryProtocol.decodeCommand(
+                BinaryProtocol.encodeCommand(new GetValidMovesCommand("token", 12, new ChessPosition(8, 8)), 2));
+        Assertions.assertEquals(new ChessPosition(8, 8), validMoves.getOrigin(), "Origin was changed");
+    }
+
+    @Test
+    public void moveResultSurvivesRoundTrip() throws ProtocolException {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        MoveResultMessage sent = new MoveResultMessage("white", move, board, "white moved",
+                ChessGame.GameState.CHECK, "black is in check",
+                new ClockMessage(60_000, 59_000, ChessGame.TeamColor.BLACK));
+        sent.setSequence(9);
+
+        MoveResultMessage received = (MoveResultMessage) BinaryProtocol.decodeMessage(
+                ByteBuffer.wrap(BinaryProtocol.encodeMessage(sent)));
+
+        Assertions.assertEquals(9, received.getSequence(), "Sequence was changed");
+        Assertions.assertEquals("white", received.getUsername(), "Username was changed");
+        Assertions.assertEquals(move, received.getMove(), "Move was changed");
+        Assertions.assertEquals(board, received.getGameBoard(), "Board was changed");
+        Assertions.assertEquals("white moved", received.getMessage(), "Message was changed");
+        Assertions.assertEquals(ChessGame.GameState.CHECK, received.getState(), "State was changed");
+        Assertions.assertEquals("black is in check", received.getStateMessage(), "State message was changed");
+        Assertions.assertEquals(59_000, received.getClock().getBlackMillis(), "Clock was changed");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, received.getClock().getRunning(),
+                "Running clock was changed");
+    }
+
+    @Test
+    public void malformedCommandsAreRejected() {
+        ByteBuffer offBoard = BinaryProtocol.encodeCommand(
+                new GetValidMovesCommand("token", 1, new ChessPosition(1, 1)), 1);
+        offBoard.put(offBoard.limit() - 1, (byte) -1);
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeCommand(offBoard),
+                "Square off the board was accepted");
+
+        ByteBuffer pastBoard = BinaryProtocol.encodeCommand(
+                new GetValidMovesCommand("token", 1, new ChessPosition(1, 1)), 1);
+        pastBoard.put(pastBoard.limit() - 1, (byte) 64);
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeCommand(pastBoard),
+                "Square past the board was accepted");
+
+        ChessMove move = new ChessMove(new ChessPosition(2, 1), new ChessPosition(3, 1), null);
+        ByteBuffer badPromotion = BinaryProtocol.encodeCommand(new MakeMoveCommand("token", 1, move), 1);
+        short encoded = badPromotion.getShort(badPromotion.limit() - 2);
+        badPromotion.putShort(badPromotion.limit() - 2, (short) (encoded | 0x7 << 12));
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeCommand(badPromotion),
+                "Unknown promotion piece was accepted");
+
+        ByteBuffer badTeam = BinaryProtocol.encodeCommand(
+                new StandardGameCommand(UserGameCommand.CommandType.CONNECT, "token", 1, null), 1);
+        badTeam.put(badTeam.limit() - 1, (byte) 9);
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeCommand(badTeam),
+                "Unknown team was accepted");
+
+        ByteBuffer truncated = BinaryProtocol.encodeCommand(new MakeMoveCommand("token", 1, move), 1);
+        truncated.limit(truncated.limit() - 1);
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeCommand(truncated),
+                "Truncated frame was accepted");
+
+        Assertions.assertThrows(ProtocolException.class,
+                () -> BinaryProtocol.decodeCommand(ByteBuffer.wrap(new byte[]{0x7F, 0, 0, 0, 0, 0, 0, 0, 0,
+                        0, 0, 0, 0, 0, 0})),
+                "Unknown frame type was accepted");
+    }
+
+    @Test
+    public void malformedMoveResultsAreRejected() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        byte[] frame = BinaryProtocol.encodeMessage(new MoveResultMessage("white", move, board, "white moved",
+                ChessGame.GameState.NONE, null, null));
+
+        byte[] badState = frame.clone();
+        badState[BinaryProtocol.HEADER_SIZE + 2 + BinaryProtocol.BOARD_SIZE] = 100;
+        Assertions.assertThrows(ProtocolException.class,
+                () -> BinaryProtocol.decodeMessage(ByteBuffer.wrap(badState)), "Unknown game state was accepted");
+
+        byte[] negativeState = frame.clone();
+        negativeState[BinaryProtocol.HEADER_SIZE + 2 + BinaryProtocol.BOARD_SIZE] = -1;
+        Assertions.assertThrows(ProtocolException.class,
+                () -> BinaryProtocol.decodeMessage(ByteBuffer.wrap(negativeState)),
+                "Negative game state was accepted");
+
+        byte[] badPiece = frame.clone();
+        badPiece[BinaryProtocol.HEADER_SIZE + 2] = 0x77;
+        Assertions.assertThrows(ProtocolException.class,
+                () -> BinaryProtocol.decodeMessage(ByteBuffer.wrap(badPiece)), "Unknown piece was accepted");
+
+        Assertions.assertThrows(ProtocolException.class,
+                () -> BinaryProtocol.decodeMessage(ByteBuffer.wrap(frame, 0, frame.length - 1)),
+                "Truncated frame was accepted");
+    }
+}
@@ -22,6 +22,17 @@ public class ChessBoard {
         }
     }
 
+    /**
+     * @return A new board holding the same pieces as this one
+     */
+    public ChessBoard copy() {
+        ChessBoard copy = new ChessBoard();
+        for (int i = 0; i < squares.length; i++) {
+            copy.squares[i] = squares[i].clone();
+        }
+        return copy;
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -3,7 +3,9 @@ package chess;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * For a class that can manage a chess game, making moves on a board
@@ -17,32 +19,66 @@ public class ChessGame {
     private TeamColor teamTurn = TeamColor.WHITE;
     private TeamColor winner = null;
     private boolean isOver = false;
+    private int moveCount = 0;
+
+    // The time each player had left when their last turn ended, if the game is timed
+    private TimeControl timeControl = null;
+    private long whiteMillis = 0;
+    private long blackMillis = 0;
 
     // Maps to track which squares are attacked along which lines
     private transient HashMap<ChessPosition, HashSet<MovementLine>> movementLinesByOrigin;
     private transient final HashMap<ChessPosition, HashSet<MovementLine>> underAttackByWhite = new HashMap<>();
     private transient final HashMap<ChessPosition, HashSet<MovementLine>> underAttackByBlack = new HashMap<>();
 
-    // Store precalculated valid moves
-    private transient final HashMap<ChessPosition, HashSet<ChessMove>> validMovesFrom = new HashMap<>();
+    // Whether the attack maps are behind the board, because the position's analysis was cached
+    private transient boolean attacksStale = false;
+
+    // Precalculated valid moves and state of the current position, shared with other games in it
+    private transient PositionCache.Analysis analysis;
 
     // Track king positions to determine check
     private transient ChessPosition kingPosWhite;
     private transient ChessPosition kingPosBlack;
 
     // Indicates validity of special moves
-    private final SpecialMoveValidator validator = new SpecialMoveValidator();
+    private final SpecialMoveValidator validator;
 
     public ChessGame() {
+        validator = new SpecialMoveValidator();
         board.resetBoard();
         startup();
     }
 
+    /**
+     * Creates an independent copy of another game
+     *
+     * @param other the game to copy
+     */
+    private ChessGame(ChessGame other) {
+        board = other.board.copy();
+        teamTurn = other.teamTurn;
+        winner = other.winner;
+        isOver = other.isOver;
+        moveCount = other.moveCount;
+        timeControl = other.timeControl;
+        whiteMillis = other.whiteMillis;
+        blackMillis = other.blackMillis;
+        validator = other.validator.copy();
+        startup();
+    }
+
     public void startup() {
         movementLinesByOrigin = board.getMovementLines();
-        resetAllAttacks();
         setKingPositions();
-        findAllValidMoves();
+        analyzePosition();
+    }
+
+    /**
+     * @return A copy of this game that is unaffected by further moves in this game
+     */
+    public ChessGame copy() {
+        return new ChessGame(this);
     }
 
     public boolean isOver() {
@@ -53,6 +89,45 @@ public class ChessGame {
         return winner;
     }
 
+    /**
+     * @return How many moves have been made in this game
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return The game's time control, or null if the game is untimed
+     */
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * Times the game, giving each player the time control's base time
+     */
+    public void setTimeControl(TimeControl timeControl) {
+        this.timeControl = timeControl;
+        whiteMillis = timeControl == null ? 0 : timeControl.baseMillis();
+        blackMillis = whiteMillis;
+    }
+
+    /**
+     * @return The time the team had left when its last turn ended
+     */
+    public long getRemainingMillis(TeamColor team) {
+        return team == TeamColor.WHITE ? whiteMillis : blackMillis;
+    }
+
+    public void setRemainingMillis(TeamColor team, long millis) {
+        if (team == TeamColor.WHITE) {
+            whiteMillis = millis;
+        }
+        else {
+            blackMillis = millis;
+        }
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -67,6 +142,7 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         teamTurn = team;
+        analyzePosition();
     }
 
     /**
@@ -77,6 +153,16 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Whether the team to move is in check, checkmate or stalemate
+     */
+    public enum GameState {
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        NONE
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -88,7 +174,19 @@ public class ChessGame {
         if (board.getPiece(startPosition) == null) {
             return null;
         }
-        return validMovesFrom.get(startPosition);
+        return analysis.validMovesFrom().get(startPosition);
+    }
+
+    /**
+     * @return True if the move can be made by the team whose turn it is, in a game that is not over
+     */
+    public boolean isLegalMove(ChessMove move) {
+        if (isOver) {
+            return false;
+        }
+        ChessPiece piece = board.getPiece(move.getStartPosition());
+        return piece != null && piece.getTeamColor() == teamTurn
+                && validMoves(move.getStartPosition()).contains(move);
     }
 
     /**
@@ -98,28 +196,33 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        if (isOver) {
+        if (!isLegalMove(move)) {
             throw new InvalidMoveException();
         }
-
         ChessPiece piece = board.getPiece(move.getStartPosition());
-        if (piece == null || piece.getTeamColor() != teamTurn) {
-            throw new InvalidMoveException();
-        }
-        if (!validMoves(move.getStartPosition()).contains(move)) {
-            throw new InvalidMoveException();
-        }
-
-        // Update the board with the move
-        board.makeMove(move);
 
         ChessPosition origin = move.getStartPosition();
         ChessPosition destination = move.getEndPosition();
         ChessPiece.PieceType type = piece.getPieceType();
 
-        // Find new movement lines available to the piece after it is moved
-        movementLinesByOrigin.get(origin).clear();
-        movementLinesByOrigin.put(destination, piece.getMovementLines(board, destination));
+        // Castling and en passant also move or take a piece off the move's squares
+        boolean movesOtherPiece = (type == ChessPiece.PieceType.KING
+                && Math.abs(destination.getColumn() - origin.getColumn()) == 2)
+                || (type == ChessPiece.PieceType.PAWN && origin.getColumn() != destination.getColumn()
+                && board.getPiece(destination) == null);
+
+        // Update the board with the move
+        board.makeMove(move);
+
+        // Find new movement lines available to the pieces after they are moved, so the lines
+        // only depend on the position and the position's analysis can be shared
+        if (movesOtherPiece) {
+            movementLinesByOrigin = board.getMovementLines();
+        }
+        else {
+            movementLinesByOrigin.get(origin).clear();
+            movementLinesByOrigin.put(destination, board.getPiece(destination).getMovementLines(board, destination));
+        }
 
         // Update king position
         if (type == ChessPiece.PieceType.KING) {
@@ -135,20 +238,19 @@ public class ChessGame {
         validator.updateCastlingValidity(move, piece);
         validator.updateEnPassantValidity(move, piece);
 
-        // Update attacked squares and precalculate valid moves
-        resetAllAttacks();
-        findAllValidMoves();
+        TeamColor mover = teamTurn;
+        teamTurn = enemyTeam(teamTurn);
+        moveCount++;
 
-        // Determine if the game was won
-        if (isInCheckmate(enemyTeam(teamTurn))) {
-            winner = teamTurn;
+        // Precalculate valid moves, and determine if the game was won
+        analyzePosition();
+        if (analysis.state() == GameState.CHECKMATE) {
+            winner = mover;
             isOver = true;
         }
-        else if (isInStalemate(enemyTeam(teamTurn))) {
+        else if (analysis.state() == GameState.STALEMATE) {
             isOver = true;
         }
-
-        teamTurn = enemyTeam(teamTurn);
     }
 
     public void resign(TeamColor team) {
@@ -165,6 +267,9 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
+        if (teamColor == teamTurn && analysis != null) {
+            return analysis.state() == GameState.CHECK || analysis.state() == GameState.CHECKMATE;
+        }
         return !isSafe(kingPos(teamColor), teamColor);
     }
 
@@ -201,6 +306,14 @@ public class ChessGame {
         return isInStalemate(teamTurn);
     }
 
+    /**
+     * @return Whether the team to move is in check, checkmate or stalemate, which was worked
+     * out along with the position's valid moves
+     */
+    public GameState getGameState() {
+        return analysis.state();
+    }
+
 
     /**
      * Sets this game's chessboard with a given board
@@ -211,9 +324,8 @@ public class ChessGame {
         this.board = board;
         movementLinesByOrigin = board.getMovementLines();
         validator.reinitializeCastlingValidity(board);
-        resetAllAttacks();
         setKingPositions();
-        findAllValidMoves();
+        analyzePosition();
     }
 
     /**
@@ -225,10 +337,40 @@ public class ChessGame {
         return board;
     }
 
+    /**
+     * Finds the valid moves in the current position and whether the team to move is in
+     * check, checkmate or stalemate, reusing the analysis of any game that reached the
+     * same position. The attack maps are only brought up to date if the position has to
+     * be analyzed, or once something asks which squares are attacked.
+     */
+    private void analyzePosition() {
+        PositionCache.Key key = PositionCache.Key.of(board, teamTurn, validator);
+        analysis = PositionCache.SHARED.get(key);
+        if (analysis != null) {
+            attacksStale = true;
+            return;
+        }
+
+        resetAllAttacks();
+        HashMap<ChessPosition, Set<ChessMove>> validMovesFrom = findAllValidMoves();
+        boolean check = isInCheck(teamTurn);
+        GameState state;
+        if (hasNoValidMoves(teamTurn, validMovesFrom)) {
+            state = check ? GameState.CHECKMATE : GameState.STALEMATE;
+        }
+        else {
+            state = check ? GameState.CHECK : GameState.NONE;
+        }
+        analysis = new PositionCache.Analysis(validMovesFrom, state);
+        PositionCache.SHARED.put(key, analysis);
+    }
+
     /**
      * Find which squares are under attack on which lines
      */
     private void resetAllAttacks() {
+        attacksStale = false;
+
         // Clear current attacks on all positions
         for (ChessPosition position : board.getPositions()) {
             underAttackByWhite.put(position, new HashSet<>());
@@ -273,6 +415,9 @@ public class ChessGame {
      * @param team the attacking team
      */
     private HashMap<ChessPosition, HashSet<MovementLine>> underAttackByTeam(TeamColor team) {
+        if (attacksStale) {
+            resetAllAttacks();
+        }
         if (team == TeamColor.WHITE) {
             return underAttackByWhite;
         }
@@ -332,6 +477,15 @@ public class ChessGame {
      * @return True if the specified team has no valid moves for any piece
      */
     private boolean hasNoValidMoves(TeamColor team) {
+        return hasNoValidMoves(team, analysis.validMovesFrom());
+    }
+
+    /**
+     * @param team the player's team
+     * @param validMovesFrom the valid moves of the piece on each occupied square
+     * @return True if the specified team has no valid moves for any piece
+     */
+    private boolean hasNoValidMoves(TeamColor team, Map<ChessPosition, Set<ChessMove>> validMovesFrom) {
         ChessPiece piece;
         for (ChessPosition position : validMovesFrom.keySet()) {
             piece = board.getPiece(position);
@@ -343,12 +497,19 @@ public class ChessGame {
     }
 
     /**
-     * Precalculates all valid moves for each location and stores in a map
+     * Precalculates all valid moves for each occupied location
+     *
+     * @return A map from each occupied location to the valid moves of the piece there
      */
-    private void findAllValidMoves() {
+    private HashMap<ChessPosition, Set<ChessMove>> findAllValidMoves() {
+        HashMap<ChessPosition, Set<ChessMove>> validMovesFrom = new HashMap<>();
         for (ChessPosition position : board.getPositions()) {
-            validMovesFrom.put(position, validMovesPrecalculate(position));
+            HashSet<ChessMove> moves = validMovesPrecalculate(position);
+            if (moves != null) {
+                validMovesFrom.put(position, moves);
+            }
         }
+        return validMovesFrom;
     }
 
     /**
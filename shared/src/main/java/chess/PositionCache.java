@@ -0,0 +1,146 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the analysis of a position between every game that reaches it
+ * <p>
+ * Finding the valid moves in a position means tracing every piece's movement lines and
+ * the squares they attack, yet many games pass through the same positions, above all in
+ * the opening. Positions are keyed by everything the analysis depends on: the piece on
+ * each square, the team to move, the castling rights and the en passant square. An
+ * analysis never changes once made, so games share it without copying.
+ * <p>
+ * The cache holds at most a fixed number of positions. It is split into stripes that
+ * each evict their least recently used position, so games on different threads rarely
+ * wait on one another.
+ */
+public class PositionCache {
+    public static final int DEFAULT_MAX_SIZE = 4096;
+    private static final int STRIPES = 16;
+
+    /**
+     * The cache every game looks its positions up in
+     */
+    public static final PositionCache SHARED = new PositionCache(DEFAULT_MAX_SIZE);
+
+    private final List<Map<Key, Analysis>> stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize how many positions may be kept before the least recently used are evicted
+     */
+    public PositionCache(int maxSize) {
+        int stripeSize = Math.max(1, maxSize / STRIPES);
+        stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Analysis> eldest) {
+                    return size() > stripeSize;
+                }
+            });
+        }
+    }
+
+    /**
+     * @return The analysis of the position, or null if it has not been analyzed
+     */
+    public Analysis get(Key key) {
+        Map<Key, Analysis> stripe = stripe(key);
+        Analysis analysis;
+        synchronized (stripe) {
+            analysis = stripe.get(key);
+        }
+        if (analysis == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return analysis;
+    }
+
+    public void put(Key key, Analysis analysis) {
+        Map<Key, Analysis> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, analysis);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Map<Key, Analysis> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<Key, Analysis> stripe(Key key) {
+        int hash = key.hashCode();
+        return stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+    }
+
+    /**
+     * A whole position, with the board packed into four longs holding one nibble per square
+     *
+     * @param rights the team to move in the lowest bit, then the castling rights and en passant square
+     */
+    public record Key(long ranks12, long ranks34, long ranks56, long ranks78, int rights) {
+
+        /**
+         * @return The key of the position on a board, with the team to move and the
+         * castling and en passant rights of a validator
+         */
+        public static Key of(ChessBoard board, ChessGame.TeamColor teamTurn, SpecialMoveValidator validator) {
+            long[] ranks = new long[4];
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    ChessPiece piece = board.getPiece(new ChessPosition(row, col));
+                    if (piece == null) {
+                        continue;
+                    }
+                    long nibble = piece.getPieceType().ordinal() + 1
+                            | (piece.getTeamColor() == ChessGame.TeamColor.BLACK ? 8 : 0);
+                    int square = (row - 1) % 2 * 8 + col - 1;
+                    ranks[(row - 1) / 2] |= nibble << (square * 4);
+                }
+            }
+            int rights = validator.encodeRights() << 1 | (teamTurn == ChessGame.TeamColor.BLACK ? 1 : 0);
+            return new Key(ranks[0], ranks[1], ranks[2], ranks[3], rights);
+        }
+    }
+
+    /**
+     * What is known about a position: the valid moves of each piece in it, and whether
+     * the team to move is in check, checkmate or stalemate
+     *
+     * @param validMovesFrom the valid moves of the piece on each occupied square
+     */
+    public record Analysis(Map<ChessPosition, Set<ChessMove>> validMovesFrom, ChessGame.GameState state) {
+        public Analysis {
+            // Every game in the position shares the analysis, so none of them may change it
+            HashMap<ChessPosition, Set<ChessMove>> frozen = new HashMap<>();
+            validMovesFrom.forEach((position, moves) -> frozen.put(position, Collections.unmodifiableSet(moves)));
+            validMovesFrom = Collections.unmodifiableMap(frozen);
+        }
+    }
+}
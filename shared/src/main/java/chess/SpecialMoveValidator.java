@@ -17,6 +17,33 @@ public class SpecialMoveValidator {
     public SpecialMoveValidator() {
     }
 
+    /**
+     * @return A new validator with the same castling and en passant validity as this one
+     */
+    public SpecialMoveValidator copy() {
+        SpecialMoveValidator copy = new SpecialMoveValidator();
+        copy.canCastleWhiteQ = canCastleWhiteQ;
+        copy.canCastleWhiteK = canCastleWhiteK;
+        copy.canCastleBlackQ = canCastleBlackQ;
+        copy.canCastleBlackK = canCastleBlackK;
+        copy.enPassantSquare = enPassantSquare;
+        return copy;
+    }
+
+    /**
+     * @return The castling rights in the lowest four bits, then the en passant square
+     * numbered from one, or zero if there is none, so positions differing only in their
+     * special moves can be told apart
+     */
+    public int encodeRights() {
+        int rights = (canCastleWhiteQ ? 1 : 0) | (canCastleWhiteK ? 2 : 0)
+                | (canCastleBlackQ ? 4 : 0) | (canCastleBlackK ? 8 : 0);
+        if (enPassantSquare != null) {
+            rights |= ((enPassantSquare.getRow() - 1) * 8 + enPassantSquare.getColumn()) << 4;
+        }
+        return rights;
+    }
+
     /**
      * Check if a moved piece was a king or rook and
      * update castling validity accordingly
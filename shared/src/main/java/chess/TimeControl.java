@@ -0,0 +1,10 @@
+package chess;
+
+/**
+ * How much time each player has for a game
+ *
+ * @param baseMillis the time each player starts with
+ * @param incrementMillis the time added to a player's clock after each of their moves
+ */
+public record TimeControl(long baseMillis, long incrementMillis) {
+}
@@ -1,4 +1,11 @@
 package serviceobjects;
 
-public record CreateGameRequest(String gameName) {
+/**
+ * @param baseSeconds the time each player starts with, or null for an untimed game
+ * @param incrementSeconds the time added to a player's clock after each of their moves, or null for none
+ */
+public record CreateGameRequest(String gameName, Integer baseSeconds, Integer incrementSeconds) {
+    public CreateGameRequest(String gameName) {
+        this(gameName, null, null);
+    }
 }
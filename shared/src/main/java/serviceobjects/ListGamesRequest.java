@@ -1,4 +1,16 @@
 package serviceobjects;
 
-public record ListGamesRequest() {
+/**
+ * Asks for one page of games, in order of ID. Every field is optional.
+ *
+ * @param cursor the nextCursor of the previous page, or null for the first page
+ * @param pageSize the most games to return
+ * @param openSeats if true, only games with a seat nobody has claimed
+ * @param player only games the given user plays in
+ * @param finished if set, only games that are over, or only games that are not
+ */
+public record ListGamesRequest(Integer cursor, Integer pageSize, Boolean openSeats, String player, Boolean finished) {
+    public ListGamesRequest() {
+        this(null, null, null, null, null);
+    }
 }
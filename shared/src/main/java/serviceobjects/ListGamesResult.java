@@ -2,5 +2,11 @@ package serviceobjects;
 
 import java.util.Collection;
 
-public record ListGamesResult(Collection<ListGameData> games) {
+/**
+ * @param nextCursor the cursor for the page after this one, or null if this is the last page
+ */
+public record ListGamesResult(Collection<ListGameData> games, Integer nextCursor) {
+    public ListGamesResult(Collection<ListGameData> games) {
+        this(games, null);
+    }
 }
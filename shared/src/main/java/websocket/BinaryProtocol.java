@@ -0,0 +1,409 @@
+package websocket;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import websocket.commands.GetValidMovesCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.ResumeCommand;
+import websocket.commands.StandardGameCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ClockMessage;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveResultMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+import websocket.messages.ValidMovesMessage;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Encodes and decodes the optional binary websocket subprotocol
+ * <p>
+ * Every frame starts with a one byte frame type and an eight byte sequence number,
+ * followed by a payload specific to the frame type. Frames from the server carry the
+ * message's sequence number within its game, or zero if it has none. A move's result
+ * is sent as a single frame holding the move, the board, the game state, the clocks
+ * if the game is timed, and the texts describing them. Moves are packed into two bytes
+ * and boards into 32 bytes, holding one nibble per square. Clocks are sent as each
+ * player's remaining milliseconds in four bytes, then the team whose clock is running.
+ */
+public class BinaryProtocol {
+
+    /**
+     * Name of the subprotocol a client offers when connecting to use binary frames
+     */
+    public static final String SUBPROTOCOL = "chess-binary-v3";
+
+    // Frame types sent from the client to the server
+    public static final byte CONNECT = 0x01;
+    public static final byte MAKE_MOVE = 0x02;
+    public static final byte LEAVE = 0x03;
+    public static final byte RESIGN = 0x04;
+    public static final byte GET_VALID_MOVES = 0x05;
+    public static final byte RESUME = 0x06;
+
+    // Frame types sent from the server to the client
+    public static final byte LOAD_GAME = 0x11;
+    public static final byte ERROR = 0x12;
+    public static final byte NOTIFICATION = 0x13;
+    public static final byte VALID_MOVES = 0x14;
+    public static final byte CLOCK = 0x15;
+    public static final byte MOVE_RESULT = 0x16;
+
+    public static final int HEADER_SIZE = 9;
+    public static final int BOARD_SIZE = 32;
+
+    private static final ChessPiece.PieceType[] PIECE_TYPES = ChessPiece.PieceType.values();
+    private static final ChessGame.GameState[] GAME_STATES = ChessGame.GameState.values();
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Encodes a command into a complete binary frame
+     *
+     * @param command the command to encode
+     * @param sequence the sender's sequence number for this frame
+     * @return A buffer holding the frame, ready to be sent
+     */
+    public static ByteBuffer encodeCommand(UserGameCommand command, long sequence) {
+        byte[] token = encodeString(command.getAuthToken());
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + 4 + 2 + token.length + 8);
+        frame.put(commandFrameType(command.getCommandType()));
+        frame.putLong(sequence);
+        frame.putInt(command.getGameID() == null ? 0 : command.getGameID());
+        frame.putShort((short) token.length);
+        frame.put(token);
+
+        switch (command) {
+            case MakeMoveCommand makeMove -> frame.putShort(encodeMove(makeMove.getMove()));
+            case GetValidMovesCommand getValidMoves -> frame.put(encodePosition(getValidMoves.getOrigin()));
+            case ResumeCommand resume -> frame.putLong(resume.getLastSequence());
+            case StandardGameCommand standard -> frame.put(encodeTeam(standard.getTeam()));
+            default -> frame.put((byte) 0);
+        }
+        return frame.flip();
+    }
+
+    /**
+     * Decodes a binary frame sent by a client
+     *
+     * @param frame the received frame
+     * @return The command held in the frame
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer frame) throws ProtocolException {
+        try {
+            byte type = frame.get();
+            frame.getLong();
+            int gameID = frame.getInt();
+            String authToken = decodeString(frame);
+
+            return switch (type) {
+                case CONNECT -> new StandardGameCommand(
+                        UserGameCommand.CommandType.CONNECT, authToken, gameID, decodeTeam(frame.get()));
+                case LEAVE -> new StandardGameCommand(
+                        UserGameCommand.CommandType.LEAVE, authToken, gameID, decodeTeam(frame.get()));
+                case RESIGN -> new StandardGameCommand(
+                        UserGameCommand.CommandType.RESIGN, authToken, gameID, decodeTeam(frame.get()));
+                case MAKE_MOVE -> new MakeMoveCommand(authToken, gameID, decodeMove(frame.getShort()));
+                case GET_VALID_MOVES -> new GetValidMovesCommand(authToken, gameID, decodePosition(frame.get()));
+                case RESUME -> new ResumeCommand(authToken, gameID, frame.getLong());
+                default -> throw new ProtocolException("Error: unknown command frame type " + type);
+            };
+        }
+        catch (BufferUnderflowException e) {
+            throw new ProtocolException("Error: truncated command frame");
+        }
+        catch (IllegalArgumentException e) {
+            throw new ProtocolException("Error: malformed command frame, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies an encoded server frame, numbering the copy with a different sequence number,
+     * so a frame encoded once can be sent under each number it is needed with
+     *
+     * @param frame a complete frame from {@link #encodeMessage}, which is left unchanged
+     * @return The renumbered copy, ready to send
+     */
+    public static ByteBuffer withSequence(byte[] frame, long sequence) {
+        return ByteBuffer.wrap(frame.clone()).putLong(1, sequence);
+    }
+
+    /**
+     * Encodes a message into a complete binary frame. Since nothing in the frame depends
+     * on the recipient, a message being broadcast should be encoded once and shared.
+     *
+     * @param message the message to encode
+     * @return The encoded frame
+     */
+    public static byte[] encodeMessage(ServerMessage message) {
+        ByteBuffer frame;
+        switch (message) {
+            case LoadGameMessage loadGame -> {
+                frame = ByteBuffer.allocate(HEADER_SIZE + BOARD_SIZE);
+                frame.put(LOAD_GAME).putLong(message.getSequence());
+                encodeBoard(loadGame.getGameBoard(), frame);
+            }
+            case ValidMovesMessage validMoves -> {
+                Collection<ChessMove> moves = validMoves.getValidMoves();
+                int count = moves == null ? 0 : moves.size();
+                frame = ByteBuffer.allocate(HEADER_SIZE + 1 + 2 * count);
+                frame.put(VALID_MOVES).putLong(message.getSequence()).put((byte) count);
+                if (moves != null) {
+                    for (ChessMove move : moves) {
+                        frame.putShort(encodeMove(move));
+                    }
+                }
+            }
+            case ClockMessage clock -> {
+                frame = ByteBuffer.allocate(HEADER_SIZE + 4 + 4 + 1);
+                frame.put(CLOCK).putLong(message.getSequence())
+                        .putInt(clampMillis(clock.getWhiteMillis()))
+                        .putInt(clampMillis(clock.getBlackMillis()))
+                        .put(encodeTeam(clock.getRunning()));
+            }
+            case MoveResultMessage moveResult -> frame = encodeMoveResult(moveResult);
+            case ErrorMessage error -> frame = encodeText(ERROR, message.getSequence(), error.getMessage());
+            case NotificationMessage notification ->
+                    frame = encodeText(NOTIFICATION, message.getSequence(), notification.getMessage());
+            default -> throw new IllegalArgumentException(
+                    "Error: no binary encoding for " + message.getServerMessageType());
+        }
+        return frame.array();
+    }
+
+    /**
+     * Decodes a binary frame sent by the server
+     *
+     * @param frame the received frame
+     * @return The message held in the frame
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static ServerMessage decodeMessage(ByteBuffer frame) throws ProtocolException {
+        try {
+            byte type = frame.get();
+            long sequence = frame.getLong();
+
+            ServerMessage message = switch (type) {
+                case LOAD_GAME -> new LoadGameMessage(decodeBoard(frame));
+                case VALID_MOVES -> {
+                    int count = Byte.toUnsignedInt(frame.get());
+                    Collection<ChessMove> moves = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        moves.add(decodeMove(frame.getShort()));
+                    }
+                    yield new ValidMovesMessage(moves);
+                }
+                case CLOCK -> decodeClock(frame);
+                case MOVE_RESULT -> decodeMoveResult(frame);
+                case ERROR -> new ErrorMessage(decodeString(frame));
+                case NOTIFICATION -> new NotificationMessage(decodeString(frame));
+                default -> throw new ProtocolException("Error: unknown message frame type " + type);
+            };
+            message.setSequence(sequence);
+            return message;
+        }
+        catch (BufferUnderflowException e) {
+            throw new ProtocolException("Error: truncated message frame");
+        }
+        catch (IllegalArgumentException e) {
+            throw new ProtocolException("Error: malformed message frame, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Packs a move into two bytes. The low six bits hold the start square,
+     * the next six bits the end square, and the top bits the promotion piece.
+     */
+    public static short encodeMove(ChessMove move) {
+        int promotion = move.getPromotionPiece() == null ? 0 : move.getPromotionPiece().ordinal() + 1;
+        return (short) (encodePosition(move.getStartPosition())
+                | encodePosition(move.getEndPosition()) << 6
+                | promotion << 12);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the promotion bits name no piece type
+     */
+    public static ChessMove decodeMove(short encoded) {
+        int promotion = (encoded >> 12) & 0x7;
+        return new ChessMove(
+                decodePosition(encoded & 0x3F),
+                decodePosition((encoded >> 6) & 0x3F),
+                promotion == 0 ? null : decodePieceType(promotion)
+        );
+    }
+
+    /**
+     * Packs a board into 32 bytes, two squares per byte. Each nibble holds the
+     * piece type plus one in its low three bits, with the high bit set for black.
+     * Empty squares are zero.
+     */
+    public static void encodeBoard(ChessBoard board, ByteBuffer out) {
+        for (int square = 0; square < 64; square += 2) {
+            out.put((byte) (encodePiece(board, square) | encodePiece(board, square + 1) << 4));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a nibble names no piece type
+     */
+    public static ChessBoard decodeBoard(ByteBuffer in) {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int packed = in.get();
+            board.addPiece(decodePosition(square), decodePiece(packed & 0xF));
+            board.addPiece(decodePosition(square + 1), decodePiece((packed >> 4) & 0xF));
+        }
+        return board;
+    }
+
+    private static byte encodePosition(ChessPosition position) {
+        return (byte) ((position.getRow() - 1) * 8 + position.getColumn() - 1);
+    }
+
+    private static ChessPosition decodePosition(int encoded) {
+        if (encoded < 0 || encoded >= 64) {
+            throw new IllegalArgumentException("square " + encoded + " is off the board");
+        }
+        return new ChessPosition(encoded / 8 + 1, encoded % 8 + 1);
+    }
+
+    private static ChessPiece.PieceType decodePieceType(int encoded) {
+        if (encoded < 1 || encoded > PIECE_TYPES.length) {
+            throw new IllegalArgumentException("no piece type " + encoded);
+        }
+        return PIECE_TYPES[encoded - 1];
+    }
+
+    private static int encodePiece(ChessBoard board, int square) {
+        ChessPiece piece = board.getPiece(decodePosition(square));
+        if (piece == null) {
+            return 0;
+        }
+        int encoded = piece.getPieceType().ordinal() + 1;
+        if (piece.getTeamColor() == ChessGame.TeamColor.BLACK) {
+            encoded |= 0x8;
+        }
+        return encoded;
+    }
+
+    private static ChessPiece decodePiece(int encoded) {
+        if (encoded == 0) {
+            return null;
+        }
+        ChessGame.TeamColor team = (encoded & 0x8) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        return new ChessPiece(team, decodePieceType(encoded & 0x7));
+    }
+
+    private static ByteBuffer encodeMoveResult(MoveResultMessage moveResult) {
+        byte[] username = encodeString(moveResult.getUsername());
+        byte[] text = encodeString(moveResult.getMessage());
+        byte[] stateText = encodeString(moveResult.getStateMessage());
+        ClockMessage clock = moveResult.getClock();
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + 2 + BOARD_SIZE + 1 + 1 + (clock == null ? 0 : 9)
+                + 2 + username.length + 2 + text.length + 2 + stateText.length);
+        frame.put(MOVE_RESULT).putLong(moveResult.getSequence());
+        frame.putShort(encodeMove(moveResult.getMove()));
+        encodeBoard(moveResult.getGameBoard(), frame);
+        frame.put((byte) moveResult.getState().ordinal());
+        if (clock == null) {
+            frame.put((byte) 0);
+        }
+        else {
+            frame.put((byte) 1)
+                    .putInt(clampMillis(clock.getWhiteMillis()))
+                    .putInt(clampMillis(clock.getBlackMillis()))
+                    .put(encodeTeam(clock.getRunning()));
+        }
+        frame.putShort((short) username.length).put(username);
+        frame.putShort((short) text.length).put(text);
+        frame.putShort((short) stateText.length).put(stateText);
+        return frame;
+    }
+
+    private static MoveResultMessage decodeMoveResult(ByteBuffer frame) {
+        ChessMove move = decodeMove(frame.getShort());
+        ChessBoard board = decodeBoard(frame);
+        ChessGame.GameState state = decodeState(frame.get());
+        ClockMessage clock = frame.get() == 0 ? null : decodeClock(frame);
+        String username = decodeString(frame);
+        String text = decodeString(frame);
+        String stateText = decodeString(frame);
+        return new MoveResultMessage(username, move, board, text, state, stateText.isEmpty() ? null : stateText,
+                clock);
+    }
+
+    private static ChessGame.GameState decodeState(byte encoded) {
+        if (encoded < 0 || encoded >= GAME_STATES.length) {
+            throw new IllegalArgumentException("no game state " + encoded);
+        }
+        return GAME_STATES[encoded];
+    }
+
+    private static ClockMessage decodeClock(ByteBuffer frame) {
+        return new ClockMessage(frame.getInt(), frame.getInt(), decodeTeam(frame.get()));
+    }
+
+    private static int clampMillis(long millis) {
+        return Math.clamp(millis, 0, Integer.MAX_VALUE);
+    }
+
+    private static byte encodeTeam(ChessGame.TeamColor team) {
+        if (team == null) {
+            return 0;
+        }
+        return (byte) (team.ordinal() + 1);
+    }
+
+    private static ChessGame.TeamColor decodeTeam(byte encoded) {
+        return switch (encoded) {
+            case 1 -> ChessGame.TeamColor.WHITE;
+            case 2 -> ChessGame.TeamColor.BLACK;
+            case 0 -> null;
+            default -> throw new IllegalArgumentException("no team " + encoded);
+        };
+    }
+
+    private static byte commandFrameType(UserGameCommand.CommandType commandType) {
+        return switch (commandType) {
+            case CONNECT -> CONNECT;
+            case MAKE_MOVE -> MAKE_MOVE;
+            case LEAVE -> LEAVE;
+            case RESIGN -> RESIGN;
+            case GET_VALID_MOVES -> GET_VALID_MOVES;
+            case RESUME -> RESUME;
+        };
+    }
+
+    private static ByteBuffer encodeText(byte type, long sequence, String text) {
+        byte[] encoded = encodeString(text);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + 2 + encoded.length);
+        frame.put(type).putLong(sequence).putShort((short) encoded.length).put(encoded);
+        return frame;
+    }
+
+    private static byte[] encodeString(String text) {
+        if (text == null) {
+            return new byte[0];
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decodeString(ByteBuffer in) {
+        byte[] encoded = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
@@ -21,6 +21,8 @@ public class CommandDeserializer implements JsonDeserializer<UserGameCommand> {
                     jsonDeserializationContext.deserialize(jsonElement, MakeMoveCommand.class);
             case "GET_VALID_MOVES" ->
                     jsonDeserializationContext.deserialize(jsonElement, GetValidMovesCommand.class);
+            case "RESUME" ->
+                    jsonDeserializationContext.deserialize(jsonElement, ResumeCommand.class);
             default ->
                     jsonDeserializationContext.deserialize(jsonElement, UserGameCommand.class);
         };
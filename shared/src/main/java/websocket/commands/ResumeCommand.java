@@ -0,0 +1,21 @@
+package websocket.commands;
+
+/**
+ * Reconnects a session to a game it was connected to before its connection dropped
+ */
+public class ResumeCommand extends UserGameCommand {
+
+    private final long lastSequence;
+
+    /**
+     * @param lastSequence the sequence number of the last message received from the game
+     */
+    public ResumeCommand(String authToken, Integer gameID, long lastSequence) {
+        super(CommandType.RESUME, authToken, gameID);
+        this.lastSequence = lastSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
@@ -27,7 +27,8 @@ public class UserGameCommand {
         MAKE_MOVE,
         LEAVE,
         RESIGN,
-        GET_VALID_MOVES
+        GET_VALID_MOVES,
+        RESUME
     }
 
     public CommandType getCommandType() {
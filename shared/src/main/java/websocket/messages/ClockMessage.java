@@ -0,0 +1,32 @@
+package websocket.messages;
+
+import chess.ChessGame;
+
+public class ClockMessage extends ServerMessage {
+
+    private final long whiteMillis;
+    private final long blackMillis;
+    private final ChessGame.TeamColor running;
+
+    /**
+     * @param running the team whose clock is running, or null if neither is
+     */
+    public ClockMessage(long whiteMillis, long blackMillis, ChessGame.TeamColor running) {
+        super(ServerMessageType.CLOCK);
+        this.whiteMillis = whiteMillis;
+        this.blackMillis = blackMillis;
+        this.running = running;
+    }
+
+    public long getWhiteMillis() {
+        return whiteMillis;
+    }
+
+    public long getBlackMillis() {
+        return blackMillis;
+    }
+
+    public ChessGame.TeamColor getRunning() {
+        return running;
+    }
+}
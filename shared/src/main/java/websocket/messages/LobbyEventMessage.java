@@ -0,0 +1,111 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import serviceobjects.ListGameData;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One change to the lobby. Events carry only what changed, and applying an event a
+ * second time leaves the lobby as it was, so a client may safely see an event whose
+ * change its snapshot already included.
+ */
+public class LobbyEventMessage extends ServerMessage {
+
+    public enum EventType {
+        GAME_CREATED,
+        SEAT_CLAIMED,
+        SEAT_RELEASED,
+        GAME_FINISHED
+    }
+
+    private final EventType eventType;
+    private final int gameID;
+    private final String gameName;
+    private final ChessGame.TeamColor color;
+    private final String username;
+
+    private LobbyEventMessage(long sequence, EventType eventType, int gameID, String gameName,
+                              ChessGame.TeamColor color, String username) {
+        super(ServerMessageType.LOBBY_EVENT);
+        setSequence(sequence);
+        this.eventType = eventType;
+        this.gameID = gameID;
+        this.gameName = gameName;
+        this.color = color;
+        this.username = username;
+    }
+
+    public static LobbyEventMessage gameCreated(long sequence, int gameID, String gameName) {
+        return new LobbyEventMessage(sequence, EventType.GAME_CREATED, gameID, gameName, null, null);
+    }
+
+    public static LobbyEventMessage seatClaimed(long sequence, int gameID, ChessGame.TeamColor color,
+                                                String username) {
+        return new LobbyEventMessage(sequence, EventType.SEAT_CLAIMED, gameID, null, color, username);
+    }
+
+    public static LobbyEventMessage seatReleased(long sequence, int gameID, ChessGame.TeamColor color,
+                                                 String username) {
+        return new LobbyEventMessage(sequence, EventType.SEAT_RELEASED, gameID, null, color, username);
+    }
+
+    public static LobbyEventMessage gameFinished(long sequence, int gameID) {
+        return new LobbyEventMessage(sequence, EventType.GAME_FINISHED, gameID, null, null, null);
+    }
+
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public ChessGame.TeamColor getColor() {
+        return color;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Applies the change to a lobby held by a client
+     *
+     * @param games the lobby's games, keyed by ID
+     */
+    public void applyTo(Map<Integer, ListGameData> games) {
+        ListGameData game = games.get(gameID);
+        switch (eventType) {
+            case GAME_CREATED -> games.putIfAbsent(gameID, new ListGameData(gameID, null, null, gameName));
+            case SEAT_CLAIMED -> {
+                if (game != null) {
+                    games.put(gameID, withSeat(game, username));
+                }
+            }
+            case SEAT_RELEASED -> {
+                if (game != null && Objects.equals(username, seatHolder(game))) {
+                    games.put(gameID, withSeat(game, null));
+                }
+            }
+            case GAME_FINISHED -> games.remove(gameID);
+        }
+    }
+
+    private String seatHolder(ListGameData game) {
+        return color == ChessGame.TeamColor.WHITE ? game.whiteUsername() : game.blackUsername();
+    }
+
+    private ListGameData withSeat(ListGameData game, String player) {
+        if (color == ChessGame.TeamColor.WHITE) {
+            return new ListGameData(game.gameID(), player, game.blackUsername(), game.gameName());
+        }
+        return new ListGameData(game.gameID(), game.whiteUsername(), player, game.gameName());
+    }
+}
@@ -0,0 +1,35 @@
+package websocket.messages;
+
+import serviceobjects.ListGameData;
+
+import java.util.Collection;
+
+/**
+ * Every game in the lobby that is not finished, sent when a session subscribes to the
+ * lobby. The events that follow it are numbered from one past its sequence.
+ */
+public class LobbySnapshotMessage extends ServerMessage {
+
+    private final String epoch;
+    private final Collection<ListGameData> games;
+
+    /**
+     * @param epoch names this run of the feed. Sequence numbers from another epoch cannot be resumed from.
+     * @param sequence the sequence of the last event the snapshot includes
+     */
+    public LobbySnapshotMessage(String epoch, long sequence, Collection<ListGameData> games) {
+        super(ServerMessageType.LOBBY_SNAPSHOT);
+        this.epoch = epoch;
+        // Set directly, since setSequence may be overridden
+        this.sequence = sequence == 0 ? null : sequence;
+        this.games = games;
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public Collection<ListGameData> getGames() {
+        return games;
+    }
+}
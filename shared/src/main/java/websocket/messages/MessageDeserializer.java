@@ -23,6 +23,14 @@ public class MessageDeserializer implements JsonDeserializer<ServerMessage> {
                     jsonDeserializationContext.deserialize(jsonElement, NotificationMessage.class);
             case "VALID_MOVES" ->
                     jsonDeserializationContext.deserialize(jsonElement, ValidMovesMessage.class);
+            case "LOBBY_SNAPSHOT" ->
+                    jsonDeserializationContext.deserialize(jsonElement, LobbySnapshotMessage.class);
+            case "LOBBY_EVENT" ->
+                    jsonDeserializationContext.deserialize(jsonElement, LobbyEventMessage.class);
+            case "CLOCK" ->
+                    jsonDeserializationContext.deserialize(jsonElement, ClockMessage.class);
+            case "MOVE_RESULT" ->
+                    jsonDeserializationContext.deserialize(jsonElement, MoveResultMessage.class);
             default ->
                     jsonDeserializationContext.deserialize(jsonElement, ServerMessage.class);
         };
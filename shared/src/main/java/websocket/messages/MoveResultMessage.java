@@ -0,0 +1,67 @@
+package websocket.messages;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+
+/**
+ * Everything that follows a move, sent as one message: the move and the board after it,
+ * the text telling others about it, whether the next player is in check, checkmate or
+ * stalemate, and the clocks if the game is timed
+ */
+public class MoveResultMessage extends ServerMessage {
+
+    private final String username;
+    private final ChessMove move;
+    private final ChessBoard game;
+    private final String message;
+    private final ChessGame.GameState state;
+    private final String stateMessage;
+    private final ClockMessage clock;
+
+    /**
+     * @param username the player who made the move
+     * @param message what other sessions are told about the move
+     * @param stateMessage what every session is told about the state, or null if the state is NONE
+     * @param clock the clocks after the move, or null if the game is untimed
+     */
+    public MoveResultMessage(String username, ChessMove move, ChessBoard game, String message,
+                             ChessGame.GameState state, String stateMessage, ClockMessage clock) {
+        super(ServerMessageType.MOVE_RESULT);
+        this.username = username;
+        this.move = move;
+        this.game = game;
+        this.message = message;
+        this.state = state;
+        this.stateMessage = stateMessage;
+        this.clock = clock;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public ChessBoard getGameBoard() {
+        return game;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public ChessGame.GameState getState() {
+        return state;
+    }
+
+    public String getStateMessage() {
+        return stateMessage;
+    }
+
+    public ClockMessage getClock() {
+        return clock;
+    }
+}
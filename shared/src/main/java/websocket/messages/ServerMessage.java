@@ -11,11 +11,18 @@ import java.util.Objects;
 public class ServerMessage {
     ServerMessageType serverMessageType;
 
+    // The message's place in its game's stream or the lobby's, left out of the JSON if it is in neither
+    Long sequence;
+
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
         NOTIFICATION,
-        VALID_MOVES
+        VALID_MOVES,
+        LOBBY_SNAPSHOT,
+        LOBBY_EVENT,
+        CLOCK,
+        MOVE_RESULT
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -26,6 +33,20 @@ public class ServerMessage {
         return this.serverMessageType;
     }
 
+    /**
+     * @return The message's sequence number within its game or the lobby, or zero if it is in neither
+     */
+    public long getSequence() {
+        return sequence == null ? 0 : sequence;
+    }
+
+    /**
+     * @param sequence the message's sequence number, or zero to leave it out
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence == 0 ? null : sequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
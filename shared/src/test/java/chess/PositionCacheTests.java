@@ -0,0 +1,120 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PositionCacheTests {
+
+    private final PositionCache.Analysis analysis = new PositionCache.Analysis(Map.of(), ChessGame.GameState.NONE);
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        PositionCache cache = new PositionCache(PositionCache.DEFAULT_MAX_SIZE);
+        PositionCache.Key key = startingKey(ChessGame.TeamColor.WHITE, new SpecialMoveValidator());
+
+        Assertions.assertNull(cache.get(key), "Position was found before it was analyzed");
+        cache.put(key, analysis);
+        Assertions.assertSame(analysis, cache.get(key), "Analyzed position was not found");
+        Assertions.assertSame(analysis, cache.get(startingKey(ChessGame.TeamColor.WHITE, new SpecialMoveValidator())),
+                "Same position on another board was not found");
+
+        Assertions.assertEquals(2, cache.getHits(), "Wrong number of hits");
+        Assertions.assertEquals(1, cache.getMisses(), "Wrong number of misses");
+        Assertions.assertEquals(1, cache.getSize(), "Wrong number of positions");
+    }
+
+    @Test
+    public void rightsAndTurnAreKeyed() {
+        SpecialMoveValidator validator = new SpecialMoveValidator();
+        PositionCache.Key key = startingKey(ChessGame.TeamColor.WHITE, validator);
+
+        SpecialMoveValidator castled = validator.copy();
+        castled.updateCastlingValidity(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 6), null),
+                new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        SpecialMoveValidator enPassant = validator.copy();
+        enPassant.updateEnPassantValidity(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+
+        PositionCache cache = new PositionCache(PositionCache.DEFAULT_MAX_SIZE);
+        cache.put(key, analysis);
+
+        Assertions.assertNull(cache.get(startingKey(ChessGame.TeamColor.BLACK, validator)),
+                "Position with the other team to move shared an analysis");
+        Assertions.assertNull(cache.get(startingKey(ChessGame.TeamColor.WHITE, castled)),
+                "Position without castling rights shared an analysis");
+        Assertions.assertNull(cache.get(startingKey(ChessGame.TeamColor.WHITE, enPassant)),
+                "Position with an en passant square shared an analysis");
+    }
+
+    @Test
+    public void leastRecentlyUsedPositionsAreEvicted() {
+        int maxSize = 32;
+        PositionCache cache = new PositionCache(maxSize);
+        PositionCache.Key kept = new PositionCache.Key(0, 0, 0, 0, -1);
+        cache.put(kept, analysis);
+
+        List<PositionCache.Key> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            PositionCache.Key key = new PositionCache.Key(i, i * 31L, 0, 0, i);
+            keys.add(key);
+            cache.put(key, analysis);
+            cache.get(kept);
+        }
+
+        Assertions.assertTrue(cache.getSize() <= maxSize, "Cache grew past its size: " + cache.getSize());
+        Assertions.assertSame(analysis, cache.get(kept), "Recently used position was evicted");
+        Assertions.assertSame(analysis, cache.get(keys.getLast()), "Latest position was evicted");
+        Assertions.assertNull(cache.get(keys.getFirst()), "Least recently used position was kept");
+    }
+
+    @Test
+    public void concurrentGamesShareTheCache() throws InterruptedException, ExecutionException {
+        int threads = 8;
+        int lookups = 10_000;
+        int maxSize = 256;
+        PositionCache cache = new PositionCache(maxSize);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < lookups; i++) {
+                        PositionCache.Key key = new PositionCache.Key((i + seed) % 512, 0, 0, 0, 0);
+                        PositionCache.Analysis found = cache.get(key);
+                        if (found == null) {
+                            cache.put(key, analysis);
+                        }
+                        else {
+                            Assertions.assertSame(analysis, found, "Wrong analysis was found");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals((long) threads * lookups, cache.getHits() + cache.getMisses(),
+                "Lookups were not all counted");
+        Assertions.assertTrue(cache.getSize() <= maxSize, "Cache grew past its size: " + cache.getSize());
+    }
+
+    private PositionCache.Key startingKey(ChessGame.TeamColor teamTurn, SpecialMoveValidator validator) {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        return PositionCache.Key.of(board, teamTurn, validator);
+    }
+}